@@ -0,0 +1,216 @@
+package com.wuhao.redis.benchmark;
+
+import com.wuhao.redis.config.RedisProperties;
+import com.wuhao.redis.utils.RedisUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 18:00
+ * @Description: RedisUtils常用方法的基准测试，按线程数(Threads1/Threads8/Threads64)和连接池大小(maxTotal)组合。
+ * 先在项目根目录执行mvn install，再在benchmarks目录执行mvn package，然后：
+ * java -jar target/benchmarks.jar -rf json                                    使用进程内的RESP桩服务
+ * java -jar target/benchmarks.jar -p target=redis -p host=127.0.0.1 -p port=6379   使用本地的redis
+ * 每次运行的fork、预热、测量次数都是固定的，相同的机器和参数可以得到可比较的结果
+ * @Version: 1.0
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+public abstract class RedisUtilsBenchmark {
+
+    private static final String PREFIX = "benchmark:";
+
+    private static final String HASH_KEY = PREFIX + "hash";
+
+    private static final String ZSET_KEY = PREFIX + "zset";
+
+    /**
+     * 一次mDel删除的key数
+     */
+    private static final int DEL_KEYS = 16;
+
+    @State(Scope.Benchmark)
+    public static class Redis {
+
+        /**
+         * stub：进程内的RESP桩服务，redis：使用host/port指定的redis
+         */
+        @Param({"stub"})
+        public String target;
+
+        @Param({"127.0.0.1"})
+        public String host;
+
+        @Param({"6379"})
+        public int port;
+
+        /**
+         * 连接池最大连接数，对应RedisProperties.maxTotal
+         */
+        @Param({"8", "64"})
+        public int maxTotal;
+
+        RedisUtils redisUtils;
+
+        private RespStubServer stub;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+
+            RedisProperties properties = new RedisProperties();
+            properties.setHost(host);
+            properties.setPort(port);
+            properties.setTimeOut(3000);
+            properties.setMaxTotal(maxTotal);
+            properties.setMaxIdLe(maxTotal);
+            properties.setMaxWaitMillis(5000);
+            if ("stub".equals(target)) {
+                stub = new RespStubServer();
+                properties.setHost("127.0.0.1");
+                properties.setPort(stub.getPort());
+            }
+            //与RedisConfiguration中的连接池配置方式一致
+            JedisPoolConfig poolConfig = new JedisPoolConfig();
+            poolConfig.setMaxTotal(properties.getMaxTotal());
+            poolConfig.setMaxIdle(properties.getMaxIdLe());
+            poolConfig.setMaxWaitMillis(properties.getMaxWaitMillis());
+            redisUtils = new RedisUtils(poolConfig, properties.getHost(), properties.getPort(), properties.getTimeOut(), null, 0);
+
+            Map<String, String> hash = new HashMap<>();
+            for (int i = 0; i < 20; i++) {
+                hash.put("field" + i, "value" + i);
+            }
+            redisUtils.del(HASH_KEY, ZSET_KEY);
+            redisUtils.hmset(HASH_KEY, hash);
+            Map<String, Double> scores = new HashMap<>();
+            for (int i = 0; i < 100; i++) {
+                scores.put("member" + i, (double) i);
+            }
+            redisUtils.zadd(ZSET_KEY, scores);
+            redisUtils.set(PREFIX + "string", "value");
+
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+
+            redisUtils.del(HASH_KEY, ZSET_KEY, PREFIX + "string");
+            redisUtils.close();
+            if (stub != null) {
+                stub.close();
+            }
+
+        }
+    }
+
+    /**
+     * 每个线程独立的key，避免线程之间互相干扰
+     */
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+        String key;
+
+        String lockKey;
+
+        String lockValue;
+
+        List<String> delKeys;
+
+        long counter;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+
+            int id = SEQUENCE.incrementAndGet();
+            key = PREFIX + "thread:" + id;
+            lockKey = PREFIX + "lock:" + id;
+            lockValue = "owner-" + id;
+            delKeys = new ArrayList<>(DEL_KEYS);
+            for (int i = 0; i < DEL_KEYS; i++) {
+                delKeys.add(key + ":" + i);
+            }
+
+        }
+    }
+
+    @Benchmark
+    public String get(Redis redis) {
+        return redis.redisUtils.get(PREFIX + "string");
+    }
+
+    @Benchmark
+    public String set(Redis redis, ThreadKeys keys) {
+        return redis.redisUtils.set(keys.key, String.valueOf(keys.counter++));
+    }
+
+    @Benchmark
+    public Map<String, String> hgetAll(Redis redis) {
+        return redis.redisUtils.hgetAll(HASH_KEY);
+    }
+
+    @Benchmark
+    public Long zadd(Redis redis, ThreadKeys keys) {
+        return redis.redisUtils.zadd(keys.key + ":zset", keys.counter++ % 100, "member" + keys.counter % 100);
+    }
+
+    @Benchmark
+    public Set<String> zrange(Redis redis) {
+        return redis.redisUtils.zrange(ZSET_KEY, 0, 9);
+    }
+
+    @Benchmark
+    public List<String> mDel(Redis redis, ThreadKeys keys) {
+
+        redis.redisUtils.mDel(keys.delKeys);
+        return keys.delKeys;
+
+    }
+
+    @Benchmark
+    public boolean lockAndRelease(Redis redis, ThreadKeys keys) {
+        return redis.redisUtils.lock(keys.lockKey, keys.lockValue, 10) && redis.redisUtils.releaseLock(keys.lockKey, keys.lockValue);
+    }
+
+    @Threads(1)
+    public static class Threads1 extends RedisUtilsBenchmark {
+    }
+
+    @Threads(8)
+    public static class Threads8 extends RedisUtilsBenchmark {
+    }
+
+    @Threads(64)
+    public static class Threads64 extends RedisUtilsBenchmark {
+    }
+}
@@ -0,0 +1,517 @@
+package com.wuhao.redis.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 18:00
+ * @Description: 进程内的RESP协议桩服务，只实现基准测试用到的命令，让基准测试在没有redis的环境下也能跑。
+ * 所有命令在一把锁下串行执行，模拟redis单线程的执行模型。不能执行lua，
+ * EVALSHA只能识别RedisUtils的加锁/释放锁和批量删除的脚本并按同样的语义模拟执行。
+ * 它的结果只能用来比较客户端这一侧(连接池、pipeline、序列化)的开销，不能代替真实redis的数据
+ * @Version: 1.0
+ **/
+public final class RespStubServer implements Closeable {
+
+    private static final byte[] OK = "+OK\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] NULL_BULK = "$-1\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ServerSocket serverSocket;
+
+    private final Map<String, Object> data = new HashMap<>();
+
+    /**
+     * key的过期时间，毫秒时间戳
+     */
+    private final Map<String, Long> expires = new HashMap<>();
+
+    /**
+     * SCRIPT LOAD加载的脚本，key为sha1
+     */
+    private final Map<String, String> scripts = new ConcurrentHashMap<>();
+
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    /**
+     * 在本机的随机端口上启动
+     */
+    public RespStubServer() throws IOException {
+
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "resp-stub-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        running = false;
+        serverSocket.close();
+        for (Socket client : clients) {
+            client.close();
+        }
+
+    }
+
+    private void accept() {
+
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                clients.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "resp-stub-client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                //关闭时accept会抛出异常，直接退出
+            }
+        }
+
+    }
+
+    private void serve(Socket socket) {
+
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            while (running) {
+                List<String> command = readCommand(in);
+                if (command == null) {
+                    break;
+                }
+                byte[] reply;
+                synchronized (this) {
+                    reply = execute(command);
+                }
+                out.write(reply);
+                //pipeline中还有没读的命令时先不flush，和redis一样一次写回多个结果
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            //客户端断开
+        } finally {
+            clients.remove(socket);
+        }
+
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+
+        int b = in.read();
+        if (b == -1) {
+            return null;
+        }
+        if (b != '*') {
+            throw new IOException("only RESP arrays are supported");
+        }
+        int count = (int) readNumber(in);
+        List<String> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("only bulk strings are supported");
+            }
+            int length = (int) readNumber(in);
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(bytes, read, length - read);
+                if (n == -1) {
+                    throw new EOFException();
+                }
+                read += n;
+            }
+            in.read();
+            in.read();
+            command.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return command;
+
+    }
+
+    private static long readNumber(InputStream in) throws IOException {
+
+        long value = 0;
+        boolean negative = false;
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b == '-') {
+                negative = true;
+            } else {
+                value = value * 10 + (b - '0');
+            }
+        }
+        in.read();
+        return negative ? -value : value;
+
+    }
+
+    /*########################  命令  #######################*/
+
+    private byte[] execute(List<String> command) {
+
+        String name = command.get(0).toUpperCase();
+        try {
+            switch (name) {
+                case "PING":
+                    return "+PONG\r\n".getBytes(StandardCharsets.UTF_8);
+                case "SELECT":
+                case "AUTH":
+                case "QUIT":
+                    return OK;
+                case "FLUSHALL":
+                case "FLUSHDB":
+                    data.clear();
+                    expires.clear();
+                    return OK;
+                case "GET":
+                    return bulk(getString(command.get(1)));
+                case "SET":
+                    return set(command);
+                case "SETEX":
+                    put(command.get(1), command.get(3), Long.parseLong(command.get(2)) * 1000);
+                    return OK;
+                case "SETNX":
+                    if (get(command.get(1)) != null) {
+                        return integer(0);
+                    }
+                    put(command.get(1), command.get(2), -1);
+                    return integer(1);
+                case "MGET":
+                    List<String> values = new ArrayList<>();
+                    for (int i = 1; i < command.size(); i++) {
+                        values.add(getString(command.get(i)));
+                    }
+                    return array(values);
+                case "DEL":
+                    int deleted = 0;
+                    for (int i = 1; i < command.size(); i++) {
+                        deleted += remove(command.get(i)) ? 1 : 0;
+                    }
+                    return integer(deleted);
+                case "EXPIRE":
+                    if (get(command.get(1)) == null) {
+                        return integer(0);
+                    }
+                    expires.put(command.get(1), System.currentTimeMillis() + Long.parseLong(command.get(2)) * 1000);
+                    return integer(1);
+                case "HSET":
+                case "HMSET":
+                    Map<String, String> hash = getOrCreate(command.get(1), LinkedHashMap::new);
+                    int added = 0;
+                    for (int i = 2; i + 1 < command.size(); i += 2) {
+                        added += hash.put(command.get(i), command.get(i + 1)) == null ? 1 : 0;
+                    }
+                    return "HMSET".equals(name) ? OK : integer(added);
+                case "HGET":
+                    Map<String, String> h = getOrNull(command.get(1));
+                    return bulk(h == null ? null : h.get(command.get(2)));
+                case "HGETALL":
+                    Map<String, String> all = getOrNull(command.get(1));
+                    List<String> flat = new ArrayList<>();
+                    if (all != null) {
+                        all.forEach((field, value) -> {
+                            flat.add(field);
+                            flat.add(value);
+                        });
+                    }
+                    return array(flat);
+                case "ZADD":
+                    return zadd(command);
+                case "ZRANGE":
+                    return zrange(command);
+                case "SCRIPT":
+                    String text = command.get(2);
+                    String sha1 = sha1(text);
+                    scripts.put(sha1, text);
+                    return bulk(sha1);
+                case "EVALSHA":
+                    return evalsha(command);
+                default:
+                    return error("ERR unknown command '" + name + "'");
+            }
+        } catch (ClassCastException e) {
+            return error("WRONGTYPE Operation against a key holding the wrong kind of value");
+        } catch (RuntimeException e) {
+            return error("ERR " + e.getMessage());
+        }
+
+    }
+
+    private byte[] set(List<String> command) {
+
+        long ttl = -1;
+        boolean nx = false;
+        boolean xx = false;
+        for (int i = 3; i < command.size(); i++) {
+            String option = command.get(i).toUpperCase();
+            if ("EX".equals(option)) {
+                ttl = Long.parseLong(command.get(++i)) * 1000;
+            } else if ("PX".equals(option)) {
+                ttl = Long.parseLong(command.get(++i));
+            } else if ("NX".equals(option)) {
+                nx = true;
+            } else if ("XX".equals(option)) {
+                xx = true;
+            }
+        }
+        boolean exists = get(command.get(1)) != null;
+        if ((nx && exists) || (xx && !exists)) {
+            return NULL_BULK;
+        }
+        put(command.get(1), command.get(2), ttl);
+        return OK;
+
+    }
+
+    private byte[] zadd(List<String> command) {
+
+        ZSet zset = getOrCreate(command.get(1), ZSet::new);
+        int added = 0;
+        for (int i = 2; i + 1 < command.size(); i += 2) {
+            added += zset.add(Double.parseDouble(command.get(i)), command.get(i + 1)) ? 1 : 0;
+        }
+        return integer(added);
+
+    }
+
+    private byte[] zrange(List<String> command) {
+
+        ZSet zset = getOrNull(command.get(1));
+        if (zset == null) {
+            return array(new ArrayList<>());
+        }
+        List<String> members = new ArrayList<>();
+        for (ZSet.Entry entry : zset.entries) {
+            members.add(entry.member);
+        }
+        int size = members.size();
+        int start = (int) Long.parseLong(command.get(2));
+        int stop = (int) Long.parseLong(command.get(3));
+        start = Math.max(start < 0 ? size + start : start, 0);
+        stop = Math.min(stop < 0 ? size + stop : stop, size - 1);
+        return array(start > stop ? new ArrayList<>() : members.subList(start, stop + 1));
+
+    }
+
+    /**
+     * 只模拟RedisUtils.lock/releaseLock和mDel用到的脚本
+     */
+    private byte[] evalsha(List<String> command) {
+
+        String text = scripts.get(command.get(1));
+        if (text == null) {
+            return error("NOSCRIPT No matching script. Please use EVAL.");
+        }
+        if (text.contains("'unlink'")) {
+            int keyCount = Integer.parseInt(command.get(2));
+            int deleted = 0;
+            for (int i = 0; i < keyCount; i++) {
+                deleted += remove(command.get(3 + i)) ? 1 : 0;
+            }
+            return bulk(String.valueOf(deleted));
+        }
+        String key = command.get(3);
+        if (text.contains("setnx")) {
+            if (get(key) != null) {
+                return integer(0);
+            }
+            put(key, command.get(4), Long.parseLong(command.get(5)) * 1000);
+            return integer(1);
+        }
+        if (text.contains("redis.call('del'")) {
+            if (command.get(4).equals(get(key))) {
+                remove(key);
+                return integer(1);
+            }
+            return integer(-1);
+        }
+        return error("ERR the stub server cannot run lua scripts");
+
+    }
+
+    /*########################  数据  #######################*/
+
+    private Object get(String key) {
+
+        Long expireAt = expires.get(key);
+        if (expireAt != null && expireAt <= System.currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return data.get(key);
+
+    }
+
+    private String getString(String key) {
+        return (String) get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getOrNull(String key) {
+        return (T) get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getOrCreate(String key, Supplier<T> creator) {
+
+        Object value = get(key);
+        if (value == null) {
+            value = creator.get();
+            data.put(key, value);
+        }
+        return (T) value;
+
+    }
+
+    private void put(String key, String value, long ttlMillis) {
+
+        data.put(key, value);
+        if (ttlMillis > 0) {
+            expires.put(key, System.currentTimeMillis() + ttlMillis);
+        } else {
+            expires.remove(key);
+        }
+
+    }
+
+    private boolean remove(String key) {
+
+        expires.remove(key);
+        return data.remove(key) != null;
+
+    }
+
+    /*########################  回复  #######################*/
+
+    private static byte[] bulk(String value) {
+
+        if (value == null) {
+            return NULL_BULK;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] header = ("$" + bytes.length + "\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] reply = new byte[header.length + bytes.length + 2];
+        System.arraycopy(header, 0, reply, 0, header.length);
+        System.arraycopy(bytes, 0, reply, header.length, bytes.length);
+        reply[reply.length - 2] = '\r';
+        reply[reply.length - 1] = '\n';
+        return reply;
+
+    }
+
+    private static byte[] array(List<String> values) {
+
+        StringBuilder reply = new StringBuilder("*").append(values.size()).append("\r\n");
+        for (String value : values) {
+            if (value == null) {
+                reply.append("$-1\r\n");
+            } else {
+                reply.append('$').append(value.getBytes(StandardCharsets.UTF_8).length).append("\r\n").append(value).append("\r\n");
+            }
+        }
+        return reply.toString().getBytes(StandardCharsets.UTF_8);
+
+    }
+
+    private static byte[] integer(long value) {
+        return (":" + value + "\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] error(String message) {
+        return ("-" + message + "\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String sha1(String text) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(40);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+    }
+
+    /**
+     * 按分数排序的集合
+     */
+    private static final class ZSet {
+
+        private final Map<String, Double> scores = new HashMap<>();
+
+        private final TreeSet<Entry> entries = new TreeSet<>();
+
+        boolean add(double score, String member) {
+
+            Double old = scores.put(member, score);
+            if (old != null) {
+                entries.remove(new Entry(old, member));
+            }
+            entries.add(new Entry(score, member));
+            return old == null;
+
+        }
+
+        private static final class Entry implements Comparable<Entry> {
+
+            private final double score;
+
+            private final String member;
+
+            Entry(double score, String member) {
+                this.score = score;
+                this.member = member;
+            }
+
+            @Override
+            public int compareTo(Entry o) {
+
+                int c = Double.compare(score, o.score);
+                return c != 0 ? c : member.compareTo(o.member);
+
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.wuhao.redis.bloom;
+
+import com.wuhao.redis.script.LuaScript;
+import com.wuhao.redis.utils.RedisUtils;
+import redis.clients.util.MurmurHash;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 15:00
+ * @Description: 基于redis位图(SETBIT/GETBIT)的布隆过滤器，用于判断元素是否可能存在(如防止缓存穿透)。
+ * 位数和哈希函数个数根据预计元素数和误判率计算，一个或多个元素的所有哈希位在一个脚本中完成，只需一次网络往返。
+ * 使用同一个key的所有实例必须使用相同的预计元素数和误判率
+ * @Version: 1.0
+ **/
+public final class RedisBloomFilter {
+
+    /**
+     * redis字符串最大512MB，即2^32位
+     */
+    static final long MAX_BITS = 1L << 32;
+
+    /**
+     * 一次脚本调用最多处理的元素数
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final int SEED1 = 0x1234ABCD;
+
+    private static final int SEED2 = 0x5BD1E995;
+
+    /**
+     * ARGV[1]为哈希函数个数k，之后每k个为一个元素的位置。返回每个元素是否有位从0变成1(即可能是新元素)
+     */
+    static final LuaScript ADD_SCRIPT = new LuaScript("redisBloomFilter.add",
+            "local k = tonumber(ARGV[1]) local result = {} "
+                    + "for i = 0, (#ARGV - 1) / k - 1 do local added = 0 "
+                    + "for j = 2 + i * k, 1 + (i + 1) * k do "
+                    + "if redis.call('setbit', KEYS[1], ARGV[j], 1) == 0 then added = 1 end end "
+                    + "result[i + 1] = added end "
+                    + "return result");
+
+    /**
+     * 参数同ADD_SCRIPT，返回每个元素的所有位是否都为1，遇到为0的位即停止检查该元素
+     */
+    static final LuaScript CONTAINS_SCRIPT = new LuaScript("redisBloomFilter.contains",
+            "local k = tonumber(ARGV[1]) local result = {} "
+                    + "for i = 0, (#ARGV - 1) / k - 1 do local found = 1 "
+                    + "for j = 2 + i * k, 1 + (i + 1) * k do "
+                    + "if redis.call('getbit', KEYS[1], ARGV[j]) == 0 then found = 0 break end end "
+                    + "result[i + 1] = found end "
+                    + "return result");
+
+    private final RedisUtils redisUtils;
+
+    private final String name;
+
+    /**
+     * 位数
+     */
+    private final long bits;
+
+    /**
+     * 哈希函数个数
+     */
+    private final int hashes;
+
+    /**
+     * @param name               redis中的key
+     * @param expectedInsertions 预计插入的元素数，超过后误判率会上升
+     * @param fpp                期望的误判率，取值(0, 1)
+     */
+    public RedisBloomFilter(RedisUtils redisUtils, String name, long expectedInsertions, double fpp) {
+
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expectedInsertions must be positive and fpp must be in (0, 1)");
+        }
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        if (m > MAX_BITS) {
+            throw new IllegalArgumentException("bloom filter needs " + m + " bits, more than the " + MAX_BITS + " bits a redis string can hold");
+        }
+        this.redisUtils = redisUtils;
+        this.name = name;
+        this.bits = m;
+        this.hashes = Math.max(1, (int) Math.round((double) m / expectedInsertions * Math.log(2)));
+        redisUtils.getScriptRegistry().register(ADD_SCRIPT);
+        redisUtils.getScriptRegistry().register(CONTAINS_SCRIPT);
+
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getBits() {
+        return bits;
+    }
+
+    public int getHashes() {
+        return hashes;
+    }
+
+    /**
+     * 添加元素
+     *
+     * @return 是否可能是新元素，为false时该元素一定已经添加过(或者被误判为已存在)
+     */
+    public boolean add(String element) {
+        return eval(ADD_SCRIPT, Collections.singletonList(element)).get(0);
+    }
+
+    /**
+     * 批量添加元素，每1000个元素一次网络往返
+     *
+     * @return 可能是新元素的个数
+     */
+    public long addAll(Collection<String> elements) {
+
+        long count = 0;
+        for (List<String> chunk : partition(elements)) {
+            for (Boolean added : eval(ADD_SCRIPT, chunk)) {
+                if (added) {
+                    count++;
+                }
+            }
+        }
+        return count;
+
+    }
+
+    /**
+     * 元素是否可能存在，为false时一定不存在
+     */
+    public boolean contains(String element) {
+        return eval(CONTAINS_SCRIPT, Collections.singletonList(element)).get(0);
+    }
+
+    /**
+     * 批量判断元素是否可能存在，结果顺序与元素的顺序一致，每1000个元素一次网络往返
+     */
+    public List<Boolean> containsEach(List<String> elements) {
+
+        List<Boolean> result = new ArrayList<>(elements.size());
+        for (List<String> chunk : partition(elements)) {
+            result.addAll(eval(CONTAINS_SCRIPT, chunk));
+        }
+        return result;
+
+    }
+
+    /**
+     * 删除整个过滤器
+     */
+    public void delete() {
+        redisUtils.del(name);
+    }
+
+    /**
+     * 计算元素的k个位置：h1 + i * h2(Kirsch-Mitzenmacher双重哈希)，两个64位哈希取自不同种子的MurmurHash
+     */
+    long[] offsets(String element) {
+
+        byte[] bytes = SafeEncoder.encode(element);
+        long h1 = MurmurHash.hash64A(bytes, SEED1);
+        long h2 = MurmurHash.hash64A(bytes, SEED2);
+        long[] offsets = new long[hashes];
+        for (int i = 0; i < hashes; i++) {
+            offsets[i] = ((h1 + i * h2) & Long.MAX_VALUE) % bits;
+        }
+        return offsets;
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Boolean> eval(LuaScript script, List<String> elements) {
+
+        List<String> args = new ArrayList<>(1 + elements.size() * hashes);
+        args.add(String.valueOf(hashes));
+        for (String element : elements) {
+            for (long offset : offsets(element)) {
+                args.add(String.valueOf(offset));
+            }
+        }
+        List<Long> res = (List<Long>) redisUtils.evalScript(script, Collections.singletonList(name), args);
+        List<Boolean> result = new ArrayList<>(res.size());
+        for (Long flag : res) {
+            result.add(flag == 1L);
+        }
+        return result;
+
+    }
+
+    private static List<List<String>> partition(Collection<String> elements) {
+
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>(Math.min(CHUNK_SIZE, elements.size()));
+        for (String element : elements) {
+            chunk.add(element);
+            if (chunk.size() == CHUNK_SIZE) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+
+    }
+}
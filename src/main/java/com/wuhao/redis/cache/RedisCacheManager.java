@@ -0,0 +1,209 @@
+package com.wuhao.redis.cache;
+
+import com.wuhao.redis.codec.RedisCodec;
+import com.wuhao.redis.utils.LocalLruCache;
+import com.wuhao.redis.utils.RedisSubscriber;
+import com.wuhao.redis.utils.RedisUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 09:00
+ * @Description: 基于RedisUtils的Spring CacheManager，配合@Cacheable等注解使用。每个缓存是一个TwoLevelRedisCache，
+ * 可以按缓存名配置过期时间；开启本地缓存后，写操作会往失效频道发布消息，其它实例收到后删除自己的本地缓存
+ * @Version: 1.0
+ **/
+public final class RedisCacheManager implements CacheManager, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCacheManager.class);
+
+    /**
+     * 失效消息格式为：实例id + 分隔符 + redis key，用于忽略自己发出的消息
+     */
+    private static final char MESSAGE_SEPARATOR = '|';
+
+    private final RedisUtils redisUtils;
+
+    private final RedisCodec<Object> codec;
+
+    private final String channel;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, TwoLevelRedisCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 按缓存名配置的过期时间，单位秒
+     */
+    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+
+    private String keyPrefix = "cache:";
+
+    private long defaultTtlSeconds = 3600;
+
+    private int localMaxSize;
+
+    private long localTtlSeconds = 60;
+
+    private boolean allowNullValues = true;
+
+    private RedisSubscriber subscriber;
+
+    /**
+     * @param codec   缓存值的编解码方式
+     * @param channel 本地缓存的失效频道
+     */
+    public RedisCacheManager(RedisUtils redisUtils, RedisCodec<Object> codec, String channel) {
+        this.redisUtils = redisUtils;
+        this.codec = codec;
+        this.channel = channel;
+    }
+
+    /**
+     * redis key的前缀，完整的key为：前缀 + 缓存名 + "::" + key
+     */
+    public RedisCacheManager keyPrefix(String keyPrefix) {
+
+        this.keyPrefix = keyPrefix == null ? "" : keyPrefix;
+        return this;
+
+    }
+
+    /**
+     * 没有单独配置的缓存使用的过期时间，单位秒，0表示不过期
+     */
+    public RedisCacheManager defaultTtl(long seconds) {
+
+        this.defaultTtlSeconds = seconds;
+        return this;
+
+    }
+
+    /**
+     * 单独配置某个缓存的过期时间，单位秒，0表示不过期。只对之后第一次获取的缓存生效
+     */
+    public RedisCacheManager ttl(String cacheName, long seconds) {
+
+        ttls.put(cacheName, seconds);
+        return this;
+
+    }
+
+    /**
+     * 开启本地缓存
+     *
+     * @param maxSize    每个缓存在本地最多保存的key个数，0表示不开启
+     * @param ttlSeconds 本地缓存的存活时间，单位秒，作为丢失失效消息时的兜底
+     */
+    public RedisCacheManager localCache(int maxSize, long ttlSeconds) {
+
+        this.localMaxSize = maxSize;
+        this.localTtlSeconds = ttlSeconds;
+        return this;
+
+    }
+
+    /**
+     * 是否缓存null值，不缓存时对应的方法每次返回null都会重新执行
+     */
+    public RedisCacheManager allowNullValues(boolean allowNullValues) {
+
+        this.allowNullValues = allowNullValues;
+        return this;
+
+    }
+
+    /**
+     * 开启了本地缓存时开始订阅失效频道
+     */
+    public synchronized void start() {
+
+        if (subscriber == null && localMaxSize > 0) {
+            //(重新)订阅成功前可能错过了失效消息，统一清空一次
+            subscriber = new RedisSubscriber(redisUtils, channel, this::onMessage, this::clearLocal);
+            subscriber.start();
+        }
+
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if (subscriber != null) {
+            subscriber.close();
+            subscriber = null;
+        }
+        clearLocal();
+
+    }
+
+    /**
+     * 通知其它实例删除本地缓存，没有开启本地缓存时不发布
+     */
+    void publishInvalidation(String redisKey) {
+
+        if (localMaxSize <= 0) {
+            return;
+        }
+        try {
+            redisUtils.publish(channel, instanceId + MESSAGE_SEPARATOR + redisKey);
+        } catch (RuntimeException e) {
+            //发布失败时其它实例只能等本地缓存过期
+            log.warn("publish cache invalidation of {} failed", redisKey, e);
+        }
+
+    }
+
+    private TwoLevelRedisCache createCache(String name) {
+
+        long ttl = ttls.getOrDefault(name, defaultTtlSeconds);
+        LocalLruCache<String, Object> local = localMaxSize > 0 ? new LocalLruCache<>(localMaxSize, localTtlSeconds * 1000) : null;
+        return new TwoLevelRedisCache(name, redisUtils, codec, keyPrefix + name + "::", (int) Math.min(ttl, Integer.MAX_VALUE),
+                local, allowNullValues, this);
+
+    }
+
+    private void onMessage(String message) {
+
+        int index = message.indexOf(MESSAGE_SEPARATOR);
+        if (index < 0 || index == instanceId.length() && message.startsWith(instanceId)) {
+            return;
+        }
+        String redisKey = message.substring(index + 1);
+        for (TwoLevelRedisCache cache : caches.values()) {
+            cache.onInvalidate(redisKey);
+        }
+
+    }
+
+    private void clearLocal() {
+
+        for (TwoLevelRedisCache cache : caches.values()) {
+            cache.clearLocal();
+        }
+
+    }
+}
@@ -0,0 +1,296 @@
+package com.wuhao.redis.cache;
+
+import com.wuhao.redis.codec.RedisCodec;
+import com.wuhao.redis.utils.LocalLruCache;
+import com.wuhao.redis.utils.RedisUtils;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 09:00
+ * @Description: 两级缓存。L1是本地的LRU缓存(可以不开启)，L2是redis，key为前缀 + 缓存名 + "::" + key.toString()。
+ * 读时先查L1，未命中再查L2并回填L1；写时先写L2，再更新自己的L1，并通知其它实例删除它们的L1
+ * @Version: 1.0
+ **/
+public final class TwoLevelRedisCache extends AbstractValueAdaptingCache {
+
+    /**
+     * 加载值时按key分段加锁，同一段的key同一时刻只有一个线程加载
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private final String name;
+
+    private final RedisUtils redisUtils;
+
+    private final RedisCodec<Object> codec;
+
+    private final String keyPrefix;
+
+    private final int ttlSeconds;
+
+    /**
+     * 本地缓存，为null表示只使用redis
+     */
+    private final LocalLruCache<String, Object> local;
+
+    private final RedisCacheManager manager;
+
+    /**
+     * 每次失效都会加1，读redis前后该值不一致说明期间可能有写入，读到的值不能放进本地缓存
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    TwoLevelRedisCache(String name, RedisUtils redisUtils, RedisCodec<Object> codec, String keyPrefix, int ttlSeconds,
+                       LocalLruCache<String, Object> local, boolean allowNullValues, RedisCacheManager manager) {
+
+        super(allowNullValues);
+        this.name = name;
+        this.redisUtils = redisUtils;
+        this.codec = codec;
+        this.keyPrefix = keyPrefix;
+        this.ttlSeconds = ttlSeconds;
+        this.local = local;
+        this.manager = manager;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisUtils;
+    }
+
+    /**
+     * 过期时间，单位秒，0表示不过期
+     */
+    public int getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+
+        String redisKey = redisKey(key);
+        if (local != null) {
+            Object value = local.get(redisKey);
+            if (value != null) {
+                return value;
+            }
+        }
+        long expectSequence = sequence.get();
+        //读到的值会放进本地缓存，从节点上复制延迟之前的旧值会一直保留到下次失效，所以从主节点读
+        Object value = redisUtils.readFromMaster(() -> redisUtils.get(redisKey, codec));
+        fillLocal(redisKey, value, expectSequence);
+        return value;
+
+    }
+
+    /**
+     * 批量查询，先查本地缓存，未命中的key通过MGET从redis读取(集群或分片模式下按节点并行读取)
+     *
+     * @return 命中的key和值，不包括不存在的key
+     */
+    public Map<Object, ValueWrapper> getAll(Collection<?> keys) {
+
+        Map<Object, ValueWrapper> result = new LinkedHashMap<>();
+        List<Object> misses = new ArrayList<>();
+        List<String> missKeys = new ArrayList<>();
+        for (Object key : keys) {
+            String redisKey = redisKey(key);
+            Object value = local == null ? null : local.get(redisKey);
+            if (value != null) {
+                result.put(key, toValueWrapper(value));
+            } else {
+                misses.add(key);
+                missKeys.add(redisKey);
+            }
+        }
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        long expectSequence = sequence.get();
+        List<Object> values = redisUtils.readFromMaster(() -> redisUtils.mGet(codec, missKeys.toArray(new String[0])));
+        for (int i = 0; i < misses.size(); i++) {
+            Object value = values.get(i);
+            if (value != null) {
+                result.put(misses.get(i), toValueWrapper(value));
+                fillLocal(missKeys.get(i), value, expectSequence);
+            }
+        }
+        return result;
+
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        synchronized (locks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES]) {
+            cached = get(key);
+            if (cached != null) {
+                return (T) cached.get();
+            }
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            put(key, value);
+            return value;
+        }
+
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+
+        Object storeValue = toStoreValue(value);
+        String redisKey = redisKey(key);
+        if (ttlSeconds > 0) {
+            redisUtils.set(redisKey, storeValue, ttlSeconds, codec);
+        } else {
+            redisUtils.set(redisKey, storeValue, codec);
+        }
+        //在redis写完之后、更新本地缓存之前递增，写之前开始的读取不能再回填旧值
+        sequence.incrementAndGet();
+        if (local != null) {
+            local.put(redisKey, storeValue);
+        }
+        manager.publishInvalidation(redisKey);
+
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+
+        Object storeValue = toStoreValue(value);
+        String redisKey = redisKey(key);
+        if (redisUtils.setIfAbsent(redisKey, storeValue, ttlSeconds, codec)) {
+            sequence.incrementAndGet();
+            if (local != null) {
+                local.put(redisKey, storeValue);
+            }
+            manager.publishInvalidation(redisKey);
+            return null;
+        }
+        Object existing = redisUtils.readFromMaster(() -> redisUtils.get(redisKey, codec));
+        return existing == null ? null : new SimpleValueWrapper(fromStoreValue(existing));
+
+    }
+
+    @Override
+    public void evict(Object key) {
+
+        String redisKey = redisKey(key);
+        redisUtils.del(redisKey);
+        //在redis删除之后、清理本地缓存之前递增，删除之前读到旧值的请求不能再回填
+        sequence.incrementAndGet();
+        if (local != null) {
+            local.remove(redisKey);
+        }
+        manager.publishInvalidation(redisKey);
+
+    }
+
+    /**
+     * 通过SCAN删除这个缓存在redis中的所有key，缓存中的key很多时比较耗时
+     */
+    @Override
+    public void clear() {
+
+        redisUtils.delByPattern(escape(keyPrefix) + "*");
+        sequence.incrementAndGet();
+        if (local != null) {
+            local.clear();
+        }
+        manager.publishInvalidation(keyPrefix);
+
+    }
+
+    /**
+     * 收到其它实例的失效通知
+     *
+     * @param redisKey 失效的key，等于keyPrefix时表示整个缓存失效
+     */
+    void onInvalidate(String redisKey) {
+
+        if (local == null || !redisKey.startsWith(keyPrefix)) {
+            return;
+        }
+        sequence.incrementAndGet();
+        if (redisKey.length() == keyPrefix.length()) {
+            local.clear();
+        } else {
+            local.remove(redisKey);
+        }
+
+    }
+
+    void clearLocal() {
+
+        if (local != null) {
+            sequence.incrementAndGet();
+            local.clear();
+        }
+
+    }
+
+    private void fillLocal(String redisKey, Object value, long expectSequence) {
+
+        if (local == null || value == null || sequence.get() != expectSequence) {
+            return;
+        }
+        local.putIfAbsent(redisKey, value);
+        //回填的同时发生了失效，回填的值可能是旧的，丢弃
+        if (sequence.get() != expectSequence) {
+            local.remove(redisKey);
+        }
+
+    }
+
+    private String redisKey(Object key) {
+        return keyPrefix + key;
+    }
+
+    /**
+     * 转义SCAN匹配规则中的特殊字符
+     */
+    private static String escape(String prefix) {
+
+        StringBuilder builder = new StringBuilder(prefix.length() + 8);
+        for (char c : prefix.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+
+    }
+}
@@ -0,0 +1,197 @@
+package com.wuhao.redis.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 13:10
+ * @Description: 内置的编解码器
+ * @Version: 1.0
+ **/
+public final class Codecs {
+
+    /**
+     * 原样读写字节
+     */
+    public static final RedisCodec<byte[]> BYTES = new RedisCodec<byte[]>() {
+        @Override
+        public byte[] encode(byte[] value) {
+            return value;
+        }
+
+        @Override
+        public byte[] decode(byte[] bytes) {
+            return bytes;
+        }
+    };
+
+    /**
+     * UTF-8字符串，与RedisUtils中String类型的方法读写的数据兼容
+     */
+    public static final RedisCodec<String> STRING = new RedisCodec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * 8字节大端序的long，比十进制字符串更紧凑，但不能再用incr等命令操作
+     */
+    public static final RedisCodec<Long> LONG = new RedisCodec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return longToBytes(value);
+        }
+
+        @Override
+        public Long decode(byte[] bytes) {
+            return bytesToLong(bytes);
+        }
+    };
+
+    /**
+     * 4字节大端序的int
+     */
+    public static final RedisCodec<Integer> INTEGER = new RedisCodec<Integer>() {
+        @Override
+        public byte[] encode(Integer value) {
+
+            int v = value;
+            return new byte[]{(byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v};
+
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+
+            checkLength(bytes, 4);
+            return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF;
+
+        }
+    };
+
+    /**
+     * 8字节IEEE 754的double
+     */
+    public static final RedisCodec<Double> DOUBLE = new RedisCodec<Double>() {
+        @Override
+        public byte[] encode(Double value) {
+            return longToBytes(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public Double decode(byte[] bytes) {
+            return Double.longBitsToDouble(bytesToLong(bytes));
+        }
+    };
+
+    /**
+     * java序列化，对象需要实现Serializable。可以保存任意类型(如Spring Cache中的值)，但体积较大，也只能被java读取
+     */
+    public static final RedisCodec<Object> JAVA = new RedisCodec<Object>() {
+        @Override
+        public byte[] encode(Object value) {
+
+            ReusableBuffer out = ReusableBuffer.acquire();
+            try (ObjectOutputStream stream = new ObjectOutputStream(out)) {
+                stream.writeObject(value);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("serialize " + value.getClass().getName() + " failed", e);
+            }
+            byte[] bytes = out.toByteArray();
+            out.release();
+            return bytes;
+
+        }
+
+        @Override
+        public Object decode(byte[] bytes) {
+
+            try (ObjectInputStream stream = new ContextObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return stream.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                throw new IllegalArgumentException("deserialize value failed", e);
+            }
+
+        }
+    };
+
+    private Codecs() {
+    }
+
+    /**
+     * 包装codec，编码后不小于threshold字节的值用algorithm压缩，读取时自动解压
+     */
+    public static <T> RedisCodec<T> compressed(RedisCodec<T> codec, CompressionCodec.Algorithm algorithm, int threshold) {
+        return new CompressionCodec<>(codec, algorithm, threshold);
+    }
+
+    /**
+     * 优先用线程上下文类加载器加载类，spring boot devtools等场景下应用的类不在系统类加载器中
+     */
+    private static final class ContextObjectInputStream extends ObjectInputStream {
+
+        ContextObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException e) {
+                    //退回到默认的加载方式
+                }
+            }
+            return super.resolveClass(desc);
+
+        }
+    }
+
+    private static byte[] longToBytes(long v) {
+
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) v;
+            v >>>= 8;
+        }
+        return bytes;
+
+    }
+
+    private static long bytesToLong(byte[] bytes) {
+
+        checkLength(bytes, 8);
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = v << 8 | bytes[i] & 0xFF;
+        }
+        return v;
+
+    }
+
+    private static void checkLength(byte[] bytes, int length) {
+
+        if (bytes.length != length) {
+            throw new IllegalArgumentException("expect " + length + " bytes but got " + bytes.length);
+        }
+
+    }
+}
@@ -0,0 +1,264 @@
+package com.wuhao.redis.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 22:00
+ * @Description: 压缩编解码器，包装另一个编解码器。编码后不小于threshold字节的值压缩后写入，
+ * 格式为：标记(0xFF) + 算法(1字节) + 原始长度(4字节) + 压缩数据；小的值和压缩后没有变小的值原样写入。
+ * 解码时根据标记判断是否需要解压，所以开启压缩前写入的值、以及不同算法、不同阈值写入的值都可以正常读取。
+ * UTF-8字符串不会以0xFF开头，其它编解码器的值恰好以0xFF开头时会额外加2字节的转义头(0xFF 0x00)。
+ * 不经过本编解码器写入的值(如SETBIT生成的bitmap、其它客户端写入的二进制)也可能以0xFF开头，解码时只有算法字节有效、
+ * 原始长度合理、并且压缩数据带有对应算法的zlib/gzip头时才会解压，否则原样返回；
+ * 但以0xFF 0x00开头的值会被当作转义值去掉前2字节，这样的值不能通过本编解码器读取
+ * @Version: 1.0
+ **/
+public final class CompressionCodec<T> implements RedisCodec<T> {
+
+    public enum Algorithm {
+
+        /**
+         * zlib格式的deflate，速度快，头部开销小
+         */
+        DEFLATE(1),
+
+        /**
+         * gzip格式，比deflate多18字节的头尾，可以被其它语言的gzip库直接解压
+         */
+        GZIP(2);
+
+        private final byte id;
+
+        Algorithm(int id) {
+            this.id = (byte) id;
+        }
+    }
+
+    private static final byte MARKER = (byte) 0xFF;
+
+    /**
+     * 转义：原样保存但恰好以标记开头的值
+     */
+    private static final byte RAW = 0;
+
+    private static final int HEADER_LENGTH = 6;
+
+    /**
+     * deflate的最大压缩比约为1032:1，原始长度超过压缩数据的这个倍数就不是本编解码器写入的值
+     */
+    private static final long MAX_RATIO = 1032;
+
+    /**
+     * redis中一个值最大512MB
+     */
+    private static final long MAX_LENGTH = 512L * 1024 * 1024;
+
+    /**
+     * 每个线程复用一个Deflater/Inflater，避免每次压缩都分配zlib的本地内存
+     */
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final RedisCodec<T> codec;
+
+    private final Algorithm algorithm;
+
+    private final int threshold;
+
+    /**
+     * @param codec     被包装的编解码器
+     * @param algorithm 压缩算法
+     * @param threshold 编码后的字节数不小于threshold时才压缩
+     */
+    public CompressionCodec(RedisCodec<T> codec, Algorithm algorithm, int threshold) {
+
+        if (codec == null || algorithm == null) {
+            throw new IllegalArgumentException("codec and algorithm must not be null");
+        }
+        if (threshold <= HEADER_LENGTH) {
+            throw new IllegalArgumentException("threshold must be greater than " + HEADER_LENGTH);
+        }
+        this.codec = codec;
+        this.algorithm = algorithm;
+        this.threshold = threshold;
+
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+
+        byte[] bytes = codec.encode(value);
+        if (bytes.length >= threshold) {
+            byte[] compressed = algorithm == Algorithm.GZIP ? gzip(bytes) : deflate(bytes);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        if (bytes.length > 0 && bytes[0] == MARKER) {
+            byte[] escaped = new byte[bytes.length + 2];
+            escaped[0] = MARKER;
+            escaped[1] = RAW;
+            System.arraycopy(bytes, 0, escaped, 2, bytes.length);
+            return escaped;
+        }
+        return bytes;
+
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+        return codec.decode(decompress(bytes));
+    }
+
+    /**
+     * 是否是压缩后的值：标记、算法、原始长度都有效，并且压缩数据以对应算法的头开始
+     */
+    public static boolean isCompressed(byte[] bytes) {
+
+        if (bytes == null || bytes.length <= HEADER_LENGTH + 2 || bytes[0] != MARKER) {
+            return false;
+        }
+        long length = originalLength(bytes);
+        //只有压缩后变小的值才会压缩，原始长度一定大于压缩后的长度
+        if (length <= bytes.length || length > MAX_LENGTH || length > (bytes.length - HEADER_LENGTH) * MAX_RATIO) {
+            return false;
+        }
+        int first = bytes[HEADER_LENGTH] & 0xFF;
+        int second = bytes[HEADER_LENGTH + 1] & 0xFF;
+        if (bytes[1] == Algorithm.DEFLATE.id) {
+            //zlib头：CM为8(deflate)，CINFO不超过7，两个字节组成的数是31的倍数
+            return (first & 0x0F) == 8 && first >>> 4 <= 7 && (first << 8 | second) % 31 == 0;
+        }
+        return bytes[1] == Algorithm.GZIP.id && first == 0x1F && second == 0x8B;
+
+    }
+
+    /**
+     * 还原成被包装的编解码器编码的字节，没有压缩的值原样返回
+     */
+    public static byte[] decompress(byte[] bytes) {
+
+        if (bytes.length < 2 || bytes[0] != MARKER) {
+            return bytes;
+        }
+        if (bytes[1] == RAW) {
+            return Arrays.copyOfRange(bytes, 2, bytes.length);
+        }
+        if (!isCompressed(bytes)) {
+            //不是本编解码器写入的值，恰好以标记开头
+            return bytes;
+        }
+        int length = (int) originalLength(bytes);
+        return bytes[1] == Algorithm.GZIP.id ? gunzip(bytes, length) : inflate(bytes, length);
+
+    }
+
+    private static long originalLength(byte[] bytes) {
+        return (bytes[2] & 0xFFL) << 24 | (bytes[3] & 0xFF) << 16 | (bytes[4] & 0xFF) << 8 | bytes[5] & 0xFF;
+    }
+
+    /**
+     * @return 压缩后没有变小时返回null
+     */
+    private static byte[] deflate(byte[] bytes) {
+
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(bytes);
+        deflater.finish();
+        //压缩后不小于原值就没有意义了，输出缓冲区只需要原值的大小
+        byte[] out = new byte[bytes.length];
+        writeHeader(out, Algorithm.DEFLATE, bytes.length);
+        int length = HEADER_LENGTH;
+        while (!deflater.finished() && length < out.length) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return deflater.finished() && length < out.length ? Arrays.copyOf(out, length) : null;
+
+    }
+
+    private static byte[] inflate(byte[] bytes, int length) {
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        byte[] out = new byte[length];
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int count = inflater.inflate(out, n, length - n);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n != length || !inflater.finished()) {
+                throw new IllegalArgumentException("corrupted compressed value, expect " + length + " bytes but got " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("corrupted compressed value", e);
+        }
+        return out;
+
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+
+        ReusableBuffer out = ReusableBuffer.acquire();
+        byte[] header = new byte[HEADER_LENGTH];
+        writeHeader(header, Algorithm.GZIP, bytes.length);
+        out.write(header, 0, HEADER_LENGTH);
+        try (GZIPOutputStream stream = new GZIPOutputStream(out)) {
+            stream.write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("gzip value failed", e);
+        }
+        byte[] compressed = out.size() < bytes.length ? out.toByteArray() : null;
+        out.release();
+        return compressed;
+
+    }
+
+    private static byte[] gunzip(byte[] bytes, int length) {
+
+        byte[] out = new byte[length];
+        try (GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH))) {
+            new DataInputStream(stream).readFully(out);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("corrupted compressed value", e);
+        }
+        return out;
+
+    }
+
+    private static void writeHeader(byte[] out, Algorithm algorithm, int length) {
+
+        out[0] = MARKER;
+        out[1] = algorithm.id;
+        out[2] = (byte) (length >>> 24);
+        out[3] = (byte) (length >>> 16);
+        out[4] = (byte) (length >>> 8);
+        out[5] = (byte) length;
+
+    }
+}
@@ -0,0 +1,61 @@
+package com.wuhao.redis.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 13:10
+ * @Description: 基于jackson的JSON编解码器，直接在对象和UTF-8字节之间转换，不经过中间的String。
+ * 需要应用自己引入jackson-databind
+ * @Version: 1.0
+ **/
+public final class JacksonCodec<T> implements RedisCodec<T> {
+
+    private final ObjectReader reader;
+
+    private final ObjectWriter writer;
+
+    public JacksonCodec(ObjectMapper objectMapper, Class<T> type) {
+        this(objectMapper, objectMapper.constructType(type));
+    }
+
+    public JacksonCodec(ObjectMapper objectMapper, TypeReference<T> type) {
+        this(objectMapper, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    private JacksonCodec(ObjectMapper objectMapper, JavaType type) {
+        //ObjectReader/ObjectWriter线程安全，并且已经解析好了类型对应的序列化器，复用它们可以省掉每次的查找
+        this.reader = objectMapper.readerFor(type);
+        this.writer = objectMapper.writerFor(type);
+    }
+
+    @Override
+    public byte[] encode(T value) {
+
+        try {
+            return writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("encode value to json failed", e);
+        }
+
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+
+        try {
+            return reader.readValue(bytes);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("decode value from json failed", e);
+        }
+
+    }
+}
@@ -0,0 +1,22 @@
+package com.wuhao.redis.codec;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 13:10
+ * @Description: redis值的编解码器，负责对象与redis中存储的字节之间的转换
+ * @Version: 1.0
+ **/
+public interface RedisCodec<T> {
+
+    /**
+     * 把对象编码为写入redis的字节，value不会为null
+     */
+    byte[] encode(T value);
+
+    /**
+     * 把从redis读到的字节解码为对象，bytes不会为null
+     */
+    T decode(byte[] bytes);
+}
@@ -0,0 +1,55 @@
+package com.wuhao.redis.codec;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 10:00
+ * @Description: 每个线程复用的输出缓冲区，编码时省掉每次分配和扩容ByteArrayOutputStream的开销。
+ * 借出时从线程上取下，嵌套使用(如writeObject中再编码)时另外分配；超过MAX_RETAINED的缓冲区用完后丢弃，避免长期占用内存
+ * @Version: 1.0
+ **/
+final class ReusableBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_SIZE = 1024;
+
+    private static final int MAX_RETAINED = 64 * 1024;
+
+    private static final ThreadLocal<ReusableBuffer> CURRENT = new ThreadLocal<>();
+
+    private ReusableBuffer() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * 借出当前线程的缓冲区，用完后调用release归还
+     */
+    static ReusableBuffer acquire() {
+
+        ReusableBuffer buffer = CURRENT.get();
+        if (buffer == null) {
+            return new ReusableBuffer();
+        }
+        CURRENT.remove();
+        return buffer;
+
+    }
+
+    void release() {
+
+        if (buf.length <= MAX_RETAINED) {
+            reset();
+            CURRENT.set(this);
+        }
+
+    }
+
+    /**
+     * 关闭不释放缓冲区，可以被ObjectOutputStream等包装后关闭
+     */
+    @Override
+    public void close() {
+    }
+}
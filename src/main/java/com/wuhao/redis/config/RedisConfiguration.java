@@ -1,12 +1,43 @@
 package com.wuhao.redis.config;
 
+import com.wuhao.redis.cache.RedisCacheManager;
+import com.wuhao.redis.codec.Codecs;
+import com.wuhao.redis.codec.CompressionCodec;
+import com.wuhao.redis.limit.RedisRateLimiterFactory;
+import com.wuhao.redis.lock.RedisLockFactory;
+import com.wuhao.redis.metrics.MicrometerRedisMetrics;
+import com.wuhao.redis.route.ClusterRouter;
+import com.wuhao.redis.route.ReplicaReadPolicy;
+import com.wuhao.redis.route.ReplicaRouter;
+import com.wuhao.redis.route.SentinelRouter;
+import com.wuhao.redis.route.ShardedRouter;
+import com.wuhao.redis.queue.RedisQueueFactory;
+import com.wuhao.redis.script.LuaScript;
+import com.wuhao.redis.sequence.RedisSequenceFactory;
+import com.wuhao.redis.utils.RedisNearCache;
 import com.wuhao.redis.utils.RedisUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.StringUtils;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Copyright 2022 skyworth
@@ -18,8 +49,11 @@ import redis.clients.jedis.JedisPoolConfig;
  **/
 @Configuration
 @EnableConfigurationProperties(RedisProperties.class)
+@AutoConfigureBefore(name = "org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration")
 public class RedisConfiguration {
 
+    private static final Logger log = LoggerFactory.getLogger(RedisConfiguration.class);
+
     private final RedisProperties properties;
 
     public RedisConfiguration(RedisProperties redisProperties) {
@@ -28,7 +62,7 @@ public class RedisConfiguration {
 
     @Bean(name = "redisHandler")
     @ConditionalOnMissingBean(RedisUtils.class)
-    public RedisUtils redisUtils() {
+    public RedisUtils redisUtils(ObjectProvider<List<LuaScript>> scripts) {
         JedisPoolConfig poolConfig = new JedisPoolConfig();
         //最大连接数
         poolConfig.setMaxTotal(properties.getMaxTotal());
@@ -36,7 +70,228 @@ public class RedisConfiguration {
         poolConfig.setMaxIdle(properties.getMaxIdLe());
         //当池中没有连接时，最多等待5秒
         poolConfig.setMaxWaitMillis(properties.getMaxWaitMillis());
+        //最少空闲数，空闲连接检查时会补充到该数量
+        poolConfig.setMinIdle(Math.min(properties.getMinIdle(), properties.getMaxIdLe()));
+        //连接有效性检查
+        poolConfig.setTestOnBorrow(properties.isTestOnBorrow());
+        poolConfig.setTestOnReturn(properties.isTestOnReturn());
+        poolConfig.setTestWhileIdle(properties.isTestWhileIdle());
+        poolConfig.setTimeBetweenEvictionRunsMillis(properties.getTimeBetweenEvictionRunsMillis());
+        poolConfig.setMinEvictableIdleTimeMillis(properties.getMinEvictableIdleTimeMillis());
         String pw = StringUtils.isEmpty(properties.getPassword()) ? null : properties.getPassword();
-        return new RedisUtils(poolConfig, properties.getHost(), properties.getPort(), properties.getTimeOut(), pw, properties.getDatabase());
+        RedisUtils redisUtils = createRedisUtils(poolConfig, pw);
+        checkReady(redisUtils);
+        properties.getDatabasePools().forEach(redisUtils::setDatabasePoolMaxTotal);
+        redisUtils.setBatchChunkSize(properties.getPipelineChunkSize());
+        redisUtils.setDeleteChunkSize(properties.getDeleteChunkSize());
+        redisUtils.setAsyncExecutor(properties.getAsyncThreads(), properties.getAsyncQueueCapacity());
+        redisUtils.setLoadOptions(properties.getLoadEarlyRefreshBeta(), properties.getLoadTtlJitter(), properties.getLoadLockWaitMillis());
+        if (properties.isCompressionEnabled()) {
+            redisUtils.enableCompression(compressionAlgorithm(), properties.getCompressionThresholdBytes());
+        }
+        if (properties.isCoalesceEnabled()) {
+            redisUtils.enableReadCoalescing(properties.getCoalesceWindowMicros(), properties.getCoalesceMaxBatchSize(), properties.getCoalesceThreads(),
+                    properties.getTimeOut());
+        }
+        if (properties.isNearCacheEnabled()) {
+            RedisNearCache nearCache = new RedisNearCache(redisUtils, properties.getNearCacheChannel());
+            for (RedisProperties.NearCacheRule rule : properties.getNearCacheRules()) {
+                nearCache.addRule(rule.getPrefix(), rule.getMaxSize(), rule.getTtlSeconds());
+            }
+            redisUtils.enableNearCache(nearCache);
+        }
+        List<LuaScript> userScripts = scripts.getIfAvailable();
+        if (userScripts != null) {
+            userScripts.forEach(redisUtils.getScriptRegistry()::register);
+        }
+        redisUtils.loadScripts();
+        if (properties.getMinIdle() > 0) {
+            redisUtils.warmUp(properties.getMinIdle(), properties.getWarmUpThreads());
+        }
+        return redisUtils;
+    }
+
+    /**
+     * 按部署方式创建RedisUtils
+     */
+    private RedisUtils createRedisUtils(JedisPoolConfig poolConfig, String password) {
+
+        String mode = properties.getMode();
+        if ("cluster".equalsIgnoreCase(mode)) {
+            ClusterRouter router = new ClusterRouter(parseNodes(properties.getClusterNodes(), "clusterNodes"), poolConfig, properties.getTimeOut(), password);
+            return new RedisUtils(router, poolConfig);
+        }
+        if ("sentinel".equalsIgnoreCase(mode)) {
+            SentinelRouter router = new SentinelRouter(poolConfig, properties.getSentinelMaster(), parseNodes(properties.getSentinelNodes(), "sentinelNodes"),
+                    properties.getTimeOut(), password, properties.getDatabase(), readPolicy(), properties.getReplicaRefreshMillis());
+            return new RedisUtils(router, poolConfig, properties.getDatabase());
+        }
+        if ("replica".equalsIgnoreCase(mode)) {
+            List<HostAndPort> replicas = new ArrayList<>(parseNodes(properties.getReplicaNodes(), "replicaNodes"));
+            ReplicaRouter router = new ReplicaRouter(poolConfig, new HostAndPort(properties.getHost(), properties.getPort()), replicas,
+                    properties.getTimeOut(), password, properties.getDatabase(), readPolicy());
+            return new RedisUtils(router, poolConfig, properties.getDatabase());
+        }
+        if ("sharded".equalsIgnoreCase(mode)) {
+            List<HostAndPort> nodes = new ArrayList<>(parseNodes(properties.getShardNodes(), "shardNodes"));
+            ShardedRouter router = new ShardedRouter(poolConfig, nodes, properties.getTimeOut(), password, properties.getDatabase(),
+                    properties.getShardVirtualNodes(), properties.isShardHashTags());
+            return new RedisUtils(router, poolConfig, properties.getDatabase());
+        }
+        if (!"standalone".equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("unknown spring.redis.mode: " + mode);
+        }
+        return new RedisUtils(poolConfig, properties.getHost(), properties.getPort(), properties.getTimeOut(), password, properties.getDatabase());
+
+    }
+
+    private CompressionCodec.Algorithm compressionAlgorithm() {
+
+        try {
+            return CompressionCodec.Algorithm.valueOf(properties.getCompressionAlgorithm().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown spring.redis.compressionAlgorithm: " + properties.getCompressionAlgorithm(), e);
+        }
+
+    }
+
+    private ReplicaReadPolicy readPolicy() {
+
+        try {
+            return ReplicaReadPolicy.valueOf(properties.getReplicaReadPolicy().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown spring.redis.replicaReadPolicy: " + properties.getReplicaReadPolicy(), e);
+        }
+
+    }
+
+    /**
+     * 解析host:port格式的节点列表
+     */
+    private static Set<HostAndPort> parseNodes(List<String> nodes, String name) {
+
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("spring.redis." + name + " must not be empty");
+        }
+        Set<HostAndPort> result = new LinkedHashSet<>();
+        for (String node : nodes) {
+            int index = node.lastIndexOf(':');
+            if (index <= 0 || index == node.length() - 1) {
+                throw new IllegalArgumentException("invalid redis node '" + node + "' in spring.redis." + name + ", expected host:port");
+            }
+            result.add(new HostAndPort(node.substring(0, index).trim(), Integer.parseInt(node.substring(index + 1).trim())));
+        }
+        return result;
+
+    }
+
+    /**
+     * 用于日志的redis地址
+     */
+    private String endpoint() {
+
+        String mode = properties.getMode();
+        if ("cluster".equalsIgnoreCase(mode)) {
+            return "cluster " + properties.getClusterNodes();
+        }
+        if ("sentinel".equalsIgnoreCase(mode)) {
+            return "sentinel master " + properties.getSentinelMaster() + " " + properties.getSentinelNodes();
+        }
+        if ("sharded".equalsIgnoreCase(mode)) {
+            return "shards " + properties.getShardNodes();
+        }
+        return properties.getHost() + ":" + properties.getPort();
+
+    }
+
+    /**
+     * 启动时检查redis是否可用，failFast时不可用直接启动失败，而不是等到第一个请求才发现
+     */
+    private void checkReady(RedisUtils redisUtils) {
+
+        try {
+            if (redisUtils.ping()) {
+                return;
+            }
+        } catch (JedisException e) {
+            if (properties.isFailFast()) {
+                redisUtils.close();
+                throw new IllegalStateException("redis at " + endpoint() + " is not available", e);
+            }
+            log.warn("redis at {} is not available", endpoint(), e);
+            return;
+        }
+        if (properties.isFailFast()) {
+            redisUtils.close();
+            throw new IllegalStateException("redis at " + endpoint() + " did not answer PING");
+        }
+
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RedisLockFactory.class)
+    public RedisLockFactory redisLockFactory(RedisUtils redisUtils) {
+        return new RedisLockFactory(redisUtils, properties.getLockChannel(), properties.getLockWatchdogTimeoutMillis());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RedisRateLimiterFactory.class)
+    public RedisRateLimiterFactory redisRateLimiterFactory(RedisUtils redisUtils) {
+        return new RedisRateLimiterFactory(redisUtils);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RedisSequenceFactory.class)
+    public RedisSequenceFactory redisSequenceFactory(RedisUtils redisUtils) {
+        return new RedisSequenceFactory(redisUtils, properties.getSequenceSegmentSize(), properties.getSequencePrefetchRatio());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RedisQueueFactory.class)
+    public RedisQueueFactory redisQueueFactory(RedisUtils redisUtils) {
+        return new RedisQueueFactory(redisUtils, properties.getQueueProcessingTimeoutMillis());
+    }
+
+    /**
+     * 配置了spring.redis.cacheEnabled=true、开启了@EnableCaching且没有其它CacheManager时，注册基于RedisUtils的两级缓存
+     */
+    @Configuration
+    @ConditionalOnBean(type = "org.springframework.cache.interceptor.CacheAspectSupport")
+    @ConditionalOnMissingBean(CacheManager.class)
+    @ConditionalOnProperty(prefix = "spring.redis", name = "cacheEnabled", havingValue = "true")
+    static class RedisCacheConfiguration {
+
+        @Bean
+        public RedisCacheManager cacheManager(RedisUtils redisUtils, RedisProperties properties) {
+            RedisCacheManager cacheManager = new RedisCacheManager(redisUtils, Codecs.JAVA, properties.getCacheChannel())
+                    .keyPrefix(properties.getCacheKeyPrefix())
+                    .defaultTtl(properties.getCacheTtlSeconds())
+                    .localCache(properties.getCacheLocalMaxSize(), properties.getCacheLocalTtlSeconds())
+                    .allowNullValues(properties.isCacheAllowNullValues());
+            properties.getCacheTtls().forEach(cacheManager::ttl);
+            cacheManager.start();
+            return cacheManager;
+        }
+    }
+
+    /**
+     * classpath中有micrometer时自动统计redis指标。引入了actuator时由它绑定到所有的MeterRegistry，
+     * 否则绑定到容器中唯一的MeterRegistry
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(prefix = "spring.redis", name = "metricsEnabled", havingValue = "true", matchIfMissing = true)
+    static class RedisMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(MicrometerRedisMetrics.class)
+        public MicrometerRedisMetrics redisMetrics(RedisUtils redisUtils, RedisProperties properties, ObjectProvider<MeterRegistry> registry) {
+            MicrometerRedisMetrics metrics = new MicrometerRedisMetrics(redisUtils, properties.getMetricsKeyPrefixes(), properties.isMetricsPercentileHistogram());
+            MeterRegistry meterRegistry = registry.getIfUnique();
+            if (meterRegistry != null) {
+                metrics.bindTo(meterRegistry);
+            }
+            return metrics;
+        }
     }
 }
@@ -4,6 +4,11 @@ package com.wuhao.redis.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Copyright 2022 skyworth
  *
@@ -39,6 +44,312 @@ public class RedisProperties {
     @Value("${maxWaitMillis:5000}")
     private long maxWaitMillis;
 
+    /**
+     * 非默认库单独连接池的最大连接数，key为库号，未配置的库与默认库的连接池配置一致
+     */
+    private Map<Integer, Integer> databasePools = new HashMap<>();
+
+    /**
+     * 批量操作时每个pipeline最多发送的命令数
+     */
+    @Value("${pipelineChunkSize:1000}")
+    private int pipelineChunkSize;
+
+    /**
+     * 异步操作的工作线程数
+     */
+    @Value("${asyncThreads:4}")
+    private int asyncThreads;
+
+    /**
+     * 异步操作排队的最大命令数，超过后新的命令直接失败
+     */
+    @Value("${asyncQueueCapacity:10000}")
+    private int asyncQueueCapacity;
+
+    /**
+     * 是否开启并发单key读请求(get/hget)合并
+     */
+    @Value("${coalesceEnabled:false}")
+    private boolean coalesceEnabled;
+
+    /**
+     * 读请求合并的时间窗口，单位微秒
+     */
+    @Value("${coalesceWindowMicros:100}")
+    private long coalesceWindowMicros;
+
+    /**
+     * 一批最多合并的读请求数
+     */
+    @Value("${coalesceMaxBatchSize:64}")
+    private int coalesceMaxBatchSize;
+
+    /**
+     * 读请求合并的分发线程数
+     */
+    @Value("${coalesceThreads:2}")
+    private int coalesceThreads;
+
+    /**
+     * 是否开启近端缓存
+     */
+    @Value("${nearCacheEnabled:false}")
+    private boolean nearCacheEnabled;
+
+    /**
+     * 近端缓存失效消息的频道
+     */
+    @Value("${nearCacheChannel:redis:near-cache:invalidate}")
+    private String nearCacheChannel;
+
+    /**
+     * 近端缓存规则，只有匹配规则前缀的key才会被缓存
+     */
+    private List<NearCacheRule> nearCacheRules = new ArrayList<>();
+
+    /**
+     * 释放分布式锁时发布消息的频道
+     */
+    @Value("${lockChannel:redis:lock:release}")
+    private String lockChannel;
+
+    /**
+     * 分布式锁不指定租期时的过期时间，看门狗每隔1/3该时间续期一次，单位毫秒
+     */
+    @Value("${lockWatchdogTimeoutMillis:30000}")
+    private long lockWatchdogTimeoutMillis;
+
+    /**
+     * classpath中有micrometer时是否统计命令耗时、连接池等待时间等指标
+     */
+    @Value("${metricsEnabled:true}")
+    private boolean metricsEnabled;
+
+    /**
+     * 命令耗时需要按前缀单独统计的key前缀，不配置时不区分前缀
+     */
+    private List<String> metricsKeyPrefixes = new ArrayList<>();
+
+    /**
+     * 命令耗时和连接池等待时间是否发布直方图，用于在监控系统中计算分位数
+     */
+    @Value("${metricsPercentileHistogram:false}")
+    private boolean metricsPercentileHistogram;
+
+    /**
+     * 批量删除时一条UNLINK最多删除的key数，最大5000
+     */
+    @Value("${deleteChunkSize:500}")
+    private int deleteChunkSize;
+
+    /**
+     * 连接池最少保持的空闲连接数，大于0时启动时会预热到该数量
+     */
+    @Value("${minIdle:0}")
+    private int minIdle;
+
+    /**
+     * 启动预热连接池时并行建立连接的线程数
+     */
+    @Value("${warmUpThreads:8}")
+    private int warmUpThreads;
+
+    /**
+     * 启动时redis不可用是否直接启动失败，为false时只打印警告
+     */
+    @Value("${failFast:false}")
+    private boolean failFast;
+
+    /**
+     * 从连接池获取连接时是否先PING检查，会多一次网络往返
+     */
+    @Value("${testOnBorrow:false}")
+    private boolean testOnBorrow;
+
+    /**
+     * 连接放回池中时是否先PING检查
+     */
+    @Value("${testOnReturn:false}")
+    private boolean testOnReturn;
+
+    /**
+     * 是否定期检查空闲的连接，失效的连接会被移除
+     */
+    @Value("${testWhileIdle:true}")
+    private boolean testWhileIdle;
+
+    /**
+     * 检查空闲连接的间隔，单位毫秒，小于等于0表示不检查，同时也不会补充到minIdle
+     */
+    @Value("${timeBetweenEvictionRunsMillis:30000}")
+    private long timeBetweenEvictionRunsMillis;
+
+    /**
+     * 连接空闲超过该时间后可以被移除(保留minIdle个)，单位毫秒
+     */
+    @Value("${minEvictableIdleTimeMillis:60000}")
+    private long minEvictableIdleTimeMillis;
+
+    /**
+     * 部署方式：standalone(单节点，使用host/port)、cluster(集群，使用clusterNodes)、
+     * sentinel(通过哨兵发现主从节点)、replica(主节点使用host/port，从节点使用replicaNodes)、
+     * sharded(客户端一致性哈希分片，使用shardNodes)
+     */
+    @Value("${mode:standalone}")
+    private String mode;
+
+    /**
+     * 集群模式下的种子节点，格式为host:port，配置其中几个即可，其它节点通过CLUSTER SLOTS发现
+     */
+    private List<String> clusterNodes = new ArrayList<>();
+
+    /**
+     * 哨兵模式下主节点的名称
+     */
+    @Value("${sentinelMaster:mymaster}")
+    private String sentinelMaster;
+
+    /**
+     * 哨兵模式下的哨兵节点，格式为host:port
+     */
+    private List<String> sentinelNodes = new ArrayList<>();
+
+    /**
+     * replica模式下的从节点，格式为host:port，主节点使用host/port
+     */
+    private List<String> replicaNodes = new ArrayList<>();
+
+    /**
+     * 只读命令选择节点的策略：master(只用主节点)、round_robin(从节点轮流)、least_loaded(连接占用最少的从节点)
+     */
+    @Value("${replicaReadPolicy:round_robin}")
+    private String replicaReadPolicy;
+
+    /**
+     * 哨兵模式下刷新从节点列表的间隔，单位毫秒
+     */
+    @Value("${replicaRefreshMillis:30000}")
+    private long replicaRefreshMillis;
+
+    /**
+     * sharded模式下的节点，格式为host:port，key按一致性哈希分布到这些节点上
+     */
+    private List<String> shardNodes = new ArrayList<>();
+
+    /**
+     * sharded模式下每个节点在哈希环上的虚拟节点数，越多分布越均匀
+     */
+    @Value("${shardVirtualNodes:160}")
+    private int shardVirtualNodes;
+
+    /**
+     * sharded模式下是否只用key中{}内的部分计算哈希，用于把相关的key放到同一个节点
+     */
+    @Value("${shardHashTags:true}")
+    private boolean shardHashTags;
+
+    /**
+     * 是否注册基于redis的Spring CacheManager，默认不注册，避免接管应用已有的缓存
+     */
+    @Value("${cacheEnabled:false}")
+    private boolean cacheEnabled;
+
+    /**
+     * 缓存key的前缀，完整的key为：前缀 + 缓存名 + "::" + key
+     */
+    @Value("${cacheKeyPrefix:cache:}")
+    private String cacheKeyPrefix;
+
+    /**
+     * 缓存默认的过期时间，单位秒，0表示不过期
+     */
+    @Value("${cacheTtlSeconds:3600}")
+    private long cacheTtlSeconds;
+
+    /**
+     * 按缓存名配置的过期时间，单位秒
+     */
+    private Map<String, Long> cacheTtls = new HashMap<>();
+
+    /**
+     * 每个缓存在本地最多保存的key个数，0表示不开启本地缓存
+     */
+    @Value("${cacheLocalMaxSize:0}")
+    private int cacheLocalMaxSize;
+
+    /**
+     * 本地缓存的存活时间，单位秒
+     */
+    @Value("${cacheLocalTtlSeconds:60}")
+    private long cacheLocalTtlSeconds;
+
+    /**
+     * 是否缓存null值
+     */
+    @Value("${cacheAllowNullValues:true}")
+    private boolean cacheAllowNullValues;
+
+    /**
+     * 缓存本地失效消息的频道
+     */
+    @Value("${cacheChannel:redis:cache:invalidate}")
+    private String cacheChannel;
+
+    /**
+     * getOrLoad过期前提前刷新的激进程度，越大越早刷新，0表示不提前刷新
+     */
+    @Value("${loadEarlyRefreshBeta:1.0}")
+    private double loadEarlyRefreshBeta;
+
+    /**
+     * getOrLoad写入时过期时间的随机抖动比例，取值[0, 1)
+     */
+    @Value("${loadTtlJitter:0.1}")
+    private double loadTtlJitter;
+
+    /**
+     * getOrLoad多个实例之间通过分布式锁互斥加载时，等待其它实例加载的最长时间，单位毫秒，0表示不使用分布式锁
+     */
+    @Value("${loadLockWaitMillis:0}")
+    private long loadLockWaitMillis;
+
+    /**
+     * 分布式序列每次从redis预留的号段大小
+     */
+    @Value("${sequenceSegmentSize:1000}")
+    private int sequenceSegmentSize;
+
+    /**
+     * 分布式序列当前号段剩余的比例低于该值时预取下一个号段，取值(0, 1]
+     */
+    @Value("${sequencePrefetchRatio:0.2}")
+    private double sequencePrefetchRatio;
+
+    /**
+     * 可靠队列中实例的心跳超过该时间没有更新时，它处理中的消息会被其它实例移回队列，单位毫秒
+     */
+    @Value("${queueProcessingTimeoutMillis:60000}")
+    private long queueProcessingTimeoutMillis;
+
+    /**
+     * 是否开启值压缩，开启后String类型的set/hset等写入的大值会先压缩，get/hget等读取时自动解压
+     */
+    @Value("${compressionEnabled:false}")
+    private boolean compressionEnabled;
+
+    /**
+     * 值压缩的算法：deflate、gzip
+     */
+    @Value("${compressionAlgorithm:deflate}")
+    private String compressionAlgorithm;
+
+    /**
+     * 值的UTF-8字节数不小于这个值时才压缩
+     */
+    @Value("${compressionThresholdBytes:1024}")
+    private int compressionThresholdBytes;
+
     public String getHost() {
         return host;
     }
@@ -102,4 +413,465 @@ public class RedisProperties {
     public void setMaxWaitMillis(long maxWaitMillis) {
         this.maxWaitMillis = maxWaitMillis;
     }
+
+    public Map<Integer, Integer> getDatabasePools() {
+        return databasePools;
+    }
+
+    public void setDatabasePools(Map<Integer, Integer> databasePools) {
+        this.databasePools = databasePools;
+    }
+
+    public int getPipelineChunkSize() {
+        return pipelineChunkSize;
+    }
+
+    public void setPipelineChunkSize(int pipelineChunkSize) {
+        this.pipelineChunkSize = pipelineChunkSize;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    public int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+        this.asyncQueueCapacity = asyncQueueCapacity;
+    }
+
+    public boolean isCoalesceEnabled() {
+        return coalesceEnabled;
+    }
+
+    public void setCoalesceEnabled(boolean coalesceEnabled) {
+        this.coalesceEnabled = coalesceEnabled;
+    }
+
+    public long getCoalesceWindowMicros() {
+        return coalesceWindowMicros;
+    }
+
+    public void setCoalesceWindowMicros(long coalesceWindowMicros) {
+        this.coalesceWindowMicros = coalesceWindowMicros;
+    }
+
+    public int getCoalesceMaxBatchSize() {
+        return coalesceMaxBatchSize;
+    }
+
+    public void setCoalesceMaxBatchSize(int coalesceMaxBatchSize) {
+        this.coalesceMaxBatchSize = coalesceMaxBatchSize;
+    }
+
+    public int getCoalesceThreads() {
+        return coalesceThreads;
+    }
+
+    public void setCoalesceThreads(int coalesceThreads) {
+        this.coalesceThreads = coalesceThreads;
+    }
+
+    public boolean isNearCacheEnabled() {
+        return nearCacheEnabled;
+    }
+
+    public void setNearCacheEnabled(boolean nearCacheEnabled) {
+        this.nearCacheEnabled = nearCacheEnabled;
+    }
+
+    public String getNearCacheChannel() {
+        return nearCacheChannel;
+    }
+
+    public void setNearCacheChannel(String nearCacheChannel) {
+        this.nearCacheChannel = nearCacheChannel;
+    }
+
+    public List<NearCacheRule> getNearCacheRules() {
+        return nearCacheRules;
+    }
+
+    public void setNearCacheRules(List<NearCacheRule> nearCacheRules) {
+        this.nearCacheRules = nearCacheRules;
+    }
+
+    public String getLockChannel() {
+        return lockChannel;
+    }
+
+    public void setLockChannel(String lockChannel) {
+        this.lockChannel = lockChannel;
+    }
+
+    public long getLockWatchdogTimeoutMillis() {
+        return lockWatchdogTimeoutMillis;
+    }
+
+    public void setLockWatchdogTimeoutMillis(long lockWatchdogTimeoutMillis) {
+        this.lockWatchdogTimeoutMillis = lockWatchdogTimeoutMillis;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public List<String> getMetricsKeyPrefixes() {
+        return metricsKeyPrefixes;
+    }
+
+    public void setMetricsKeyPrefixes(List<String> metricsKeyPrefixes) {
+        this.metricsKeyPrefixes = metricsKeyPrefixes;
+    }
+
+    public boolean isMetricsPercentileHistogram() {
+        return metricsPercentileHistogram;
+    }
+
+    public void setMetricsPercentileHistogram(boolean metricsPercentileHistogram) {
+        this.metricsPercentileHistogram = metricsPercentileHistogram;
+    }
+
+    public int getDeleteChunkSize() {
+        return deleteChunkSize;
+    }
+
+    public void setDeleteChunkSize(int deleteChunkSize) {
+        this.deleteChunkSize = deleteChunkSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getWarmUpThreads() {
+        return warmUpThreads;
+    }
+
+    public void setWarmUpThreads(int warmUpThreads) {
+        this.warmUpThreads = warmUpThreads;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public boolean isTestOnBorrow() {
+        return testOnBorrow;
+    }
+
+    public void setTestOnBorrow(boolean testOnBorrow) {
+        this.testOnBorrow = testOnBorrow;
+    }
+
+    public boolean isTestOnReturn() {
+        return testOnReturn;
+    }
+
+    public void setTestOnReturn(boolean testOnReturn) {
+        this.testOnReturn = testOnReturn;
+    }
+
+    public boolean isTestWhileIdle() {
+        return testWhileIdle;
+    }
+
+    public void setTestWhileIdle(boolean testWhileIdle) {
+        this.testWhileIdle = testWhileIdle;
+    }
+
+    public long getTimeBetweenEvictionRunsMillis() {
+        return timeBetweenEvictionRunsMillis;
+    }
+
+    public void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis) {
+        this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
+    }
+
+    public long getMinEvictableIdleTimeMillis() {
+        return minEvictableIdleTimeMillis;
+    }
+
+    public void setMinEvictableIdleTimeMillis(long minEvictableIdleTimeMillis) {
+        this.minEvictableIdleTimeMillis = minEvictableIdleTimeMillis;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public List<String> getClusterNodes() {
+        return clusterNodes;
+    }
+
+    public void setClusterNodes(List<String> clusterNodes) {
+        this.clusterNodes = clusterNodes;
+    }
+
+    public String getSentinelMaster() {
+        return sentinelMaster;
+    }
+
+    public void setSentinelMaster(String sentinelMaster) {
+        this.sentinelMaster = sentinelMaster;
+    }
+
+    public List<String> getSentinelNodes() {
+        return sentinelNodes;
+    }
+
+    public void setSentinelNodes(List<String> sentinelNodes) {
+        this.sentinelNodes = sentinelNodes;
+    }
+
+    public List<String> getReplicaNodes() {
+        return replicaNodes;
+    }
+
+    public void setReplicaNodes(List<String> replicaNodes) {
+        this.replicaNodes = replicaNodes;
+    }
+
+    public String getReplicaReadPolicy() {
+        return replicaReadPolicy;
+    }
+
+    public void setReplicaReadPolicy(String replicaReadPolicy) {
+        this.replicaReadPolicy = replicaReadPolicy;
+    }
+
+    public long getReplicaRefreshMillis() {
+        return replicaRefreshMillis;
+    }
+
+    public void setReplicaRefreshMillis(long replicaRefreshMillis) {
+        this.replicaRefreshMillis = replicaRefreshMillis;
+    }
+
+    public List<String> getShardNodes() {
+        return shardNodes;
+    }
+
+    public void setShardNodes(List<String> shardNodes) {
+        this.shardNodes = shardNodes;
+    }
+
+    public int getShardVirtualNodes() {
+        return shardVirtualNodes;
+    }
+
+    public void setShardVirtualNodes(int shardVirtualNodes) {
+        this.shardVirtualNodes = shardVirtualNodes;
+    }
+
+    public boolean isShardHashTags() {
+        return shardHashTags;
+    }
+
+    public void setShardHashTags(boolean shardHashTags) {
+        this.shardHashTags = shardHashTags;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public String getCacheKeyPrefix() {
+        return cacheKeyPrefix;
+    }
+
+    public void setCacheKeyPrefix(String cacheKeyPrefix) {
+        this.cacheKeyPrefix = cacheKeyPrefix;
+    }
+
+    public long getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    public void setCacheTtlSeconds(long cacheTtlSeconds) {
+        this.cacheTtlSeconds = cacheTtlSeconds;
+    }
+
+    public Map<String, Long> getCacheTtls() {
+        return cacheTtls;
+    }
+
+    public void setCacheTtls(Map<String, Long> cacheTtls) {
+        this.cacheTtls = cacheTtls;
+    }
+
+    public int getCacheLocalMaxSize() {
+        return cacheLocalMaxSize;
+    }
+
+    public void setCacheLocalMaxSize(int cacheLocalMaxSize) {
+        this.cacheLocalMaxSize = cacheLocalMaxSize;
+    }
+
+    public long getCacheLocalTtlSeconds() {
+        return cacheLocalTtlSeconds;
+    }
+
+    public void setCacheLocalTtlSeconds(long cacheLocalTtlSeconds) {
+        this.cacheLocalTtlSeconds = cacheLocalTtlSeconds;
+    }
+
+    public boolean isCacheAllowNullValues() {
+        return cacheAllowNullValues;
+    }
+
+    public void setCacheAllowNullValues(boolean cacheAllowNullValues) {
+        this.cacheAllowNullValues = cacheAllowNullValues;
+    }
+
+    public String getCacheChannel() {
+        return cacheChannel;
+    }
+
+    public void setCacheChannel(String cacheChannel) {
+        this.cacheChannel = cacheChannel;
+    }
+
+    public double getLoadEarlyRefreshBeta() {
+        return loadEarlyRefreshBeta;
+    }
+
+    public void setLoadEarlyRefreshBeta(double loadEarlyRefreshBeta) {
+        this.loadEarlyRefreshBeta = loadEarlyRefreshBeta;
+    }
+
+    public double getLoadTtlJitter() {
+        return loadTtlJitter;
+    }
+
+    public void setLoadTtlJitter(double loadTtlJitter) {
+        this.loadTtlJitter = loadTtlJitter;
+    }
+
+    public long getLoadLockWaitMillis() {
+        return loadLockWaitMillis;
+    }
+
+    public void setLoadLockWaitMillis(long loadLockWaitMillis) {
+        this.loadLockWaitMillis = loadLockWaitMillis;
+    }
+
+    public int getSequenceSegmentSize() {
+        return sequenceSegmentSize;
+    }
+
+    public void setSequenceSegmentSize(int sequenceSegmentSize) {
+        this.sequenceSegmentSize = sequenceSegmentSize;
+    }
+
+    public double getSequencePrefetchRatio() {
+        return sequencePrefetchRatio;
+    }
+
+    public void setSequencePrefetchRatio(double sequencePrefetchRatio) {
+        this.sequencePrefetchRatio = sequencePrefetchRatio;
+    }
+
+    public long getQueueProcessingTimeoutMillis() {
+        return queueProcessingTimeoutMillis;
+    }
+
+    public void setQueueProcessingTimeoutMillis(long queueProcessingTimeoutMillis) {
+        this.queueProcessingTimeoutMillis = queueProcessingTimeoutMillis;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public String getCompressionAlgorithm() {
+        return compressionAlgorithm;
+    }
+
+    public void setCompressionAlgorithm(String compressionAlgorithm) {
+        this.compressionAlgorithm = compressionAlgorithm;
+    }
+
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    /**
+     * 近端缓存规则
+     */
+    public static class NearCacheRule {
+
+        /**
+         * key前缀
+         */
+        private String prefix = "";
+
+        /**
+         * 最多缓存的key个数
+         */
+        private int maxSize = 10000;
+
+        /**
+         * 本地缓存的存活时间，单位秒
+         */
+        private long ttlSeconds = 60;
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package com.wuhao.redis.limit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 11:00
+ * @Description: 本地租用许可的限流器。许可用完时一次从redis获取最多batchSize个，之后的tryAcquire直接在本地扣减，
+ * 大部分调用不需要访问redis。租到的许可只在leaseMillis内有效，过期未用完的丢弃，
+ * 所以整体不会超过redis中配置的速率，但许可分散在多个实例上时可能略低于配置的速率
+ * @Version: 1.0
+ **/
+final class LeasedRateLimiter implements RedisRateLimiter {
+
+    private final ScriptRateLimiter delegate;
+
+    private final int batchSize;
+
+    private final long leaseNanos;
+
+    /**
+     * 本地剩余的许可数
+     */
+    private int available;
+
+    /**
+     * 本地许可的过期时间，System.nanoTime()
+     */
+    private long expireAt;
+
+    LeasedRateLimiter(ScriptRateLimiter delegate, int batchSize, long leaseMillis) {
+
+        if (batchSize <= 0 || leaseMillis <= 0) {
+            throw new IllegalArgumentException("batchSize and leaseMillis must be positive");
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+
+        if (permits > batchSize) {
+            return delegate.tryAcquire(permits);
+        }
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        //租用期间其它线程等待这一次的结果，而不是各自去redis租用
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - expireAt >= 0) {
+                available = 0;
+            }
+            if (available >= permits) {
+                available -= permits;
+                return true;
+            }
+            long granted = delegate.acquire(batchSize, permits);
+            if (granted < permits) {
+                return false;
+            }
+            available = (int) granted - permits;
+            expireAt = now + leaseNanos;
+            return true;
+        }
+
+    }
+}
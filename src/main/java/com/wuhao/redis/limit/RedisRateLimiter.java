@@ -0,0 +1,29 @@
+package com.wuhao.redis.limit;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 11:00
+ * @Description: 分布式限流器，通过RedisRateLimiterFactory创建。获取不到许可时立即返回false，不会等待
+ * @Version: 1.0
+ **/
+public interface RedisRateLimiter {
+
+    /**
+     * 限流器的名称，即redis中的key
+     */
+    String getName();
+
+    /**
+     * 尝试获取一个许可
+     */
+    default boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * 尝试一次获取多个许可，要么全部获取到，要么一个也不获取
+     */
+    boolean tryAcquire(int permits);
+}
@@ -0,0 +1,124 @@
+package com.wuhao.redis.limit;
+
+import com.wuhao.redis.script.LuaScript;
+import com.wuhao.redis.utils.RedisUtils;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 11:00
+ * @Description: 分布式限流器工厂，支持令牌桶和滑动窗口两种算法，可以选择在本地租用许可以减少访问redis的次数
+ * @Version: 1.0
+ **/
+public final class RedisRateLimiterFactory {
+
+    /**
+     * 令牌桶：按时间补充令牌，最多capacity个。
+     * ARGV：want、min、capacity、每毫秒补充的令牌数；返回获取到的令牌数，不足min个时为0
+     */
+    static final LuaScript TOKEN_BUCKET_SCRIPT = new LuaScript("redisRateLimiter.tokenBucket",
+            "redis.replicate_commands() "
+                    + "local want, min, capacity, rate = tonumber(ARGV[1]), tonumber(ARGV[2]), tonumber(ARGV[3]), tonumber(ARGV[4]) "
+                    + "local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) "
+                    + "local state = redis.call('hmget', KEYS[1], 'tokens', 'ts') "
+                    + "local tokens, ts = tonumber(state[1]) or capacity, tonumber(state[2]) or now "
+                    + "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate) "
+                    + "local granted = 0 "
+                    + "if tokens >= min then granted = math.min(want, math.floor(tokens)) tokens = tokens - granted end "
+                    + "redis.call('hmset', KEYS[1], 'tokens', tostring(tokens), 'ts', now) "
+                    + "redis.call('pexpire', KEYS[1], math.ceil(capacity / rate) + 1000) "
+                    + "return granted");
+
+    /**
+     * 滑动窗口：用有序集合记录窗口内发放的每个许可，score为发放时间。
+     * ARGV：want、min、limit、窗口毫秒数、唯一标识；返回获取到的许可数，不足min个时为0
+     */
+    static final LuaScript SLIDING_WINDOW_SCRIPT = new LuaScript("redisRateLimiter.slidingWindow",
+            "redis.replicate_commands() "
+                    + "local want, min, limit, window = tonumber(ARGV[1]), tonumber(ARGV[2]), tonumber(ARGV[3]), tonumber(ARGV[4]) "
+                    + "local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) "
+                    + "redis.call('zremrangebyscore', KEYS[1], '-inf', now - window) "
+                    + "local available = limit - redis.call('zcard', KEYS[1]) "
+                    + "if available < min then return 0 end "
+                    + "local granted = math.min(want, available) "
+                    + "for i = 1, granted do redis.call('zadd', KEYS[1], now, ARGV[5] .. ':' .. i) end "
+                    + "redis.call('pexpire', KEYS[1], window) "
+                    + "return granted");
+
+    private final RedisUtils redisUtils;
+
+    /**
+     * 滑动窗口中许可的唯一标识为：clientId:序号:第几个许可
+     */
+    private final String clientId = UUID.randomUUID().toString();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    public RedisRateLimiterFactory(RedisUtils redisUtils) {
+
+        this.redisUtils = redisUtils;
+        redisUtils.getScriptRegistry().register(TOKEN_BUCKET_SCRIPT);
+        redisUtils.getScriptRegistry().register(SLIDING_WINDOW_SCRIPT);
+
+    }
+
+    /**
+     * 令牌桶限流器，允许capacity个请求的突发，之后按permitsPerSecond的速率放行
+     *
+     * @param name             限流器名称，即redis中的key
+     * @param capacity         桶的容量
+     * @param permitsPerSecond 每秒补充的令牌数
+     */
+    public RedisRateLimiter tokenBucket(String name, long capacity, double permitsPerSecond) {
+        return newTokenBucket(name, capacity, permitsPerSecond);
+    }
+
+    /**
+     * 在本地租用许可的令牌桶限流器，每次从redis获取最多leaseBatch个令牌，在leaseMillis内用完
+     */
+    public RedisRateLimiter tokenBucket(String name, long capacity, double permitsPerSecond, int leaseBatch, long leaseMillis) {
+        return new LeasedRateLimiter(newTokenBucket(name, capacity, permitsPerSecond), leaseBatch, leaseMillis);
+    }
+
+    /**
+     * 滑动窗口限流器，任意windowMillis毫秒内最多放行limit个请求。窗口内的每个许可都会在redis中占用一个元素，
+     * limit很大时请使用令牌桶
+     *
+     * @param name         限流器名称，即redis中的key
+     * @param limit        一个窗口内最多放行的请求数
+     * @param windowMillis 窗口大小，单位毫秒
+     */
+    public RedisRateLimiter slidingWindow(String name, long limit, long windowMillis) {
+        return newSlidingWindow(name, limit, windowMillis);
+    }
+
+    /**
+     * 在本地租用许可的滑动窗口限流器，每次从redis获取最多leaseBatch个许可，在leaseMillis内用完
+     */
+    public RedisRateLimiter slidingWindow(String name, long limit, long windowMillis, int leaseBatch, long leaseMillis) {
+        return new LeasedRateLimiter(newSlidingWindow(name, limit, windowMillis), leaseBatch, leaseMillis);
+    }
+
+    private ScriptRateLimiter newTokenBucket(String name, long capacity, double permitsPerSecond) {
+
+        if (capacity <= 0 || permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("capacity and permitsPerSecond must be positive");
+        }
+        return new ScriptRateLimiter(redisUtils, TOKEN_BUCKET_SCRIPT, name, null, String.valueOf(capacity), String.valueOf(permitsPerSecond / 1000));
+
+    }
+
+    private ScriptRateLimiter newSlidingWindow(String name, long limit, long windowMillis) {
+
+        if (limit <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("limit and windowMillis must be positive");
+        }
+        return new ScriptRateLimiter(redisUtils, SLIDING_WINDOW_SCRIPT, name, () -> clientId + ':' + sequence.incrementAndGet(),
+                String.valueOf(limit), String.valueOf(windowMillis));
+
+    }
+}
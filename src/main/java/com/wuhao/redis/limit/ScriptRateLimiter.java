@@ -0,0 +1,80 @@
+package com.wuhao.redis.limit;
+
+import com.wuhao.redis.script.LuaScript;
+import com.wuhao.redis.utils.RedisUtils;
+
+import java.util.function.Supplier;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 11:00
+ * @Description: 每次获取许可都在redis中通过一个脚本原子地完成的限流器，脚本使用redis的时间，不受各实例时钟偏差的影响
+ * @Version: 1.0
+ **/
+final class ScriptRateLimiter implements RedisRateLimiter {
+
+    private final RedisUtils redisUtils;
+
+    private final LuaScript script;
+
+    private final String name;
+
+    /**
+     * 脚本中除了want、min以外的固定参数
+     */
+    private final String[] params;
+
+    /**
+     * 每次调用生成一个唯一标识作为最后一个参数，为null表示不需要
+     */
+    private final Supplier<String> nonce;
+
+    /**
+     * @param nonce  每次调用生成一个唯一标识作为脚本的最后一个参数，可为null
+     * @param params 脚本的固定参数，放在want和min之后
+     */
+    ScriptRateLimiter(RedisUtils redisUtils, LuaScript script, String name, Supplier<String> nonce, String... params) {
+        this.redisUtils = redisUtils;
+        this.script = script;
+        this.name = name;
+        this.nonce = nonce;
+        this.params = params;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits) {
+
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive");
+        }
+        return acquire(permits, permits) > 0;
+
+    }
+
+    /**
+     * 获取最多want个、至少min个许可
+     *
+     * @return 实际获取到的许可数，不足min个时为0
+     */
+    long acquire(int want, int min) {
+
+        String[] args = new String[params.length + (nonce == null ? 3 : 4)];
+        args[0] = name;
+        args[1] = String.valueOf(want);
+        args[2] = String.valueOf(min);
+        System.arraycopy(params, 0, args, 3, params.length);
+        if (nonce != null) {
+            args[args.length - 1] = nonce.get();
+        }
+        Object res = redisUtils.evalScript(script, 1, args);
+        return res == null ? 0 : (Long) res;
+
+    }
+}
@@ -0,0 +1,107 @@
+package com.wuhao.redis.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 15:00
+ * @Description: 可重入的分布式锁。等待时订阅释放锁的通知而不是轮询，不指定租期时由看门狗自动续期，
+ * 同一线程可以重复加锁，加锁几次就需要解锁几次
+ * @Version: 1.0
+ **/
+public final class RedisLock implements Lock {
+
+    private final RedisLockFactory factory;
+
+    private final String name;
+
+    RedisLock(RedisLockFactory factory, String name) {
+        this.factory = factory;
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 尝试加锁
+     *
+     * @param waitTime  最多等待多久，小于0表示一直等待
+     * @param leaseTime 租期，到期后自动释放，小于等于0表示由看门狗自动续期直到unlock
+     * @param unit      时间单位
+     * @return 是否加锁成功
+     */
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        return factory.tryLock(name, waitTime < 0 ? -1 : unit.toMillis(waitTime), unit.toMillis(leaseTime));
+    }
+
+    /**
+     * 一直等待直到加锁成功，加锁后按指定的租期自动释放
+     */
+    public void lock(long leaseTime, TimeUnit unit) {
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                factory.tryLock(name, -1, unit.toMillis(leaseTime));
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    @Override
+    public void lock() {
+        lock(-1, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        factory.tryLock(name, -1, -1);
+    }
+
+    @Override
+    public boolean tryLock() {
+
+        try {
+            return factory.tryLock(name, 0, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        return tryLock(time, -1, unit);
+    }
+
+    @Override
+    public void unlock() {
+        factory.unlock(name);
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return factory.isHeldByCurrentThread(name);
+    }
+
+    public int getHoldCount() {
+        return factory.getHoldCount(name);
+    }
+
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException("redis lock does not support condition");
+    }
+}
@@ -0,0 +1,347 @@
+package com.wuhao.redis.lock;
+
+import com.wuhao.redis.script.LuaScript;
+import com.wuhao.redis.utils.RedisSubscriber;
+import com.wuhao.redis.utils.RedisUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 15:00
+ * @Description: 分布式锁工厂。负责锁的等待唤醒(订阅释放锁的频道)、看门狗续期和同一线程的重入计数
+ * @Version: 1.0
+ **/
+public final class RedisLockFactory implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisLockFactory.class);
+
+    /**
+     * 加锁成功返回-1，锁被别人持有时返回锁剩余的毫秒数，锁没有过期时间时返回一个很大的正数
+     */
+    static final LuaScript ACQUIRE_SCRIPT = new LuaScript("redisLock.acquire",
+            "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return -1 end "
+                    + "local ttl = redis.call('pttl', KEYS[1]) "
+                    + "if ttl < 0 then return 1000000000 end return ttl");
+
+    /**
+     * 释放自己持有的锁，ARGV[3]为1时同时通知等待的客户端
+     */
+    static final LuaScript RELEASE_SCRIPT = new LuaScript("redisLock.release",
+            "if redis.call('get', KEYS[1]) == ARGV[1] then redis.call('del', KEYS[1]) "
+                    + "if ARGV[3] == '1' then redis.call('publish', ARGV[2], KEYS[1]) end return 1 else return 0 end");
+
+    /**
+     * 给自己持有的锁续期
+     */
+    static final LuaScript RENEW_SCRIPT = new LuaScript("redisLock.renew",
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end");
+
+    private final RedisUtils redisUtils;
+
+    private final String channel;
+
+    /**
+     * 不指定租期时锁的过期时间，看门狗每隔1/3该时间续期一次
+     */
+    private final long watchdogTimeoutMillis;
+
+    /**
+     * 区分不同的实例，锁的值为：clientId:线程id
+     */
+    private final String clientId = UUID.randomUUID().toString();
+
+    /**
+     * 本实例当前持有的锁，key为锁名
+     */
+    private final ConcurrentMap<String, Holder> holders = new ConcurrentHashMap<>();
+
+    /**
+     * 正在等待的锁，key为锁名
+     */
+    private final ConcurrentMap<String, Waiter> waiters = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService watchdog;
+
+    private RedisSubscriber subscriber;
+
+    /**
+     * @param redisUtils            redis工具类
+     * @param channel               释放锁时发布消息的频道
+     * @param watchdogTimeoutMillis 不指定租期时锁的过期时间
+     */
+    public RedisLockFactory(RedisUtils redisUtils, String channel, long watchdogTimeoutMillis) {
+
+        if (watchdogTimeoutMillis < 3) {
+            throw new IllegalArgumentException("watchdogTimeoutMillis is too small");
+        }
+        this.redisUtils = redisUtils;
+        this.channel = channel;
+        this.watchdogTimeoutMillis = watchdogTimeoutMillis;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-lock-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        redisUtils.getScriptRegistry().register(ACQUIRE_SCRIPT);
+        redisUtils.getScriptRegistry().register(RELEASE_SCRIPT);
+        redisUtils.getScriptRegistry().register(RENEW_SCRIPT);
+
+    }
+
+    /**
+     * 获取一把锁，name即redis中的key。返回的对象很轻量，可以每次使用时获取
+     */
+    public RedisLock getLock(String name) {
+        return new RedisLock(this, name);
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if (subscriber != null) {
+            subscriber.close();
+            subscriber = null;
+        }
+        watchdog.shutdownNow();
+
+    }
+
+    /*########################  供RedisLock调用  #######################*/
+
+    /**
+     * 尝试加锁
+     *
+     * @param waitMillis  最多等待多久，小于0表示一直等待
+     * @param leaseMillis 租期，小于等于0表示由看门狗自动续期
+     */
+    boolean tryLock(String name, long waitMillis, long leaseMillis) throws InterruptedException {
+
+        Holder holder = holders.get(name);
+        if (holder != null && holder.owner == Thread.currentThread()) {
+            holder.count++;
+            return true;
+        }
+        String value = lockValue();
+        long lease = leaseMillis > 0 ? leaseMillis : watchdogTimeoutMillis;
+        long ttl = acquire(name, value, lease);
+        if (ttl < 0) {
+            onAcquired(name, value, leaseMillis);
+            return true;
+        }
+        if (waitMillis == 0) {
+            return false;
+        }
+        long deadline = waitMillis < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + waitMillis;
+        ensureSubscribed();
+        Waiter waiter = waiters.compute(name, (k, w) -> {
+            Waiter result = w == null ? new Waiter() : w;
+            result.refs++;
+            return result;
+        });
+        try {
+            while (true) {
+                long generation = waiter.generation();
+                ttl = acquire(name, value, lease);
+                if (ttl < 0) {
+                    onAcquired(name, value, leaseMillis);
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                //等待释放锁的通知，最多等到锁自然过期
+                waiter.await(generation, Math.min(ttl, remaining));
+            }
+        } finally {
+            waiters.computeIfPresent(name, (k, w) -> --w.refs == 0 ? null : w);
+        }
+
+    }
+
+    void unlock(String name) {
+
+        Holder holder = holders.get(name);
+        if (holder == null || holder.owner != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("lock '" + name + "' is not held by current thread");
+        }
+        if (--holder.count > 0) {
+            return;
+        }
+        holders.remove(name);
+        if (holder.renewal != null) {
+            holder.renewal.cancel(false);
+        }
+        if (!release(name, holder.value)) {
+            log.warn("lock '{}' has expired before unlock", name);
+        }
+
+    }
+
+    boolean isHeldByCurrentThread(String name) {
+
+        Holder holder = holders.get(name);
+        return holder != null && holder.owner == Thread.currentThread();
+
+    }
+
+    int getHoldCount(String name) {
+
+        Holder holder = holders.get(name);
+        return holder != null && holder.owner == Thread.currentThread() ? holder.count : 0;
+
+    }
+
+    private long acquire(String name, String value, long leaseMillis) {
+
+        Object res = redisUtils.evalScript(ACQUIRE_SCRIPT, 1, name, value, String.valueOf(leaseMillis));
+        return res == null ? 0 : (Long) res;
+
+    }
+
+    private void onAcquired(String name, String value, long leaseMillis) {
+
+        Holder holder = new Holder(Thread.currentThread(), value);
+        if (leaseMillis <= 0) {
+            long period = watchdogTimeoutMillis / 3;
+            try {
+                holder.renewal = watchdog.scheduleAtFixedRate(() -> renew(name, holder), period, period, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                //工厂已关闭，锁已经在redis中加上了，调用方拿不到锁也就无法释放，先释放掉再抛出
+                try {
+                    release(name, value);
+                } catch (RuntimeException releaseError) {
+                    e.addSuppressed(releaseError);
+                }
+                throw e;
+            }
+        }
+        holders.put(name, holder);
+
+    }
+
+    /**
+     * 释放自己持有的锁并通知等待者
+     *
+     * @return 锁过期或已被别人持有时为false
+     */
+    private boolean release(String name, String value) {
+
+        //分片模式下锁所在的节点上发布的消息订阅者收不到，改为通过默认节点发布
+        boolean visible = redisUtils.isPublishVisible(name);
+        Object res = redisUtils.evalScript(RELEASE_SCRIPT, 1, name, value, channel, visible ? "1" : "0");
+        if (!Long.valueOf(1L).equals(res)) {
+            return false;
+        }
+        if (!visible) {
+            redisUtils.publish(channel, name);
+        }
+        return true;
+
+    }
+
+    private void renew(String name, Holder holder) {
+
+        try {
+            Object res = redisUtils.evalScript(RENEW_SCRIPT, 1, name, holder.value, String.valueOf(watchdogTimeoutMillis));
+            if (!Long.valueOf(1L).equals(res)) {
+                log.warn("lock '{}' was lost, stop renewing it", name);
+                holder.renewal.cancel(false);
+            }
+        } catch (RuntimeException e) {
+            //网络抖动时下一个周期再试，只要在过期前续上就不会丢锁
+            log.warn("renew lock '{}' failed", name, e);
+        }
+
+    }
+
+    private String lockValue() {
+        return clientId + ":" + Thread.currentThread().getId();
+    }
+
+    private synchronized void ensureSubscribed() {
+
+        if (subscriber == null) {
+            //(重新)订阅期间可能错过了释放锁的消息，唤醒所有等待者重新尝试一次
+            subscriber = new RedisSubscriber(redisUtils, channel, this::onReleased, () -> waiters.values().forEach(Waiter::signal));
+            subscriber.start();
+        }
+
+    }
+
+    private void onReleased(String name) {
+
+        Waiter waiter = waiters.get(name);
+        if (waiter != null) {
+            waiter.signal();
+        }
+
+    }
+
+    /**
+     * 本实例持有的一把锁
+     */
+    private static final class Holder {
+
+        private final Thread owner;
+
+        private final String value;
+
+        /**
+         * 重入次数，只会被持有锁的线程修改
+         */
+        private int count = 1;
+
+        private volatile ScheduledFuture<?> renewal;
+
+        Holder(Thread owner, String value) {
+            this.owner = owner;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 同一把锁的等待者共用的唤醒对象，generation用于避免在加锁失败和开始等待之间错过通知
+     */
+    private static final class Waiter {
+
+        /**
+         * 等待者个数，只在ConcurrentMap.compute中修改
+         */
+        private int refs;
+
+        private long generation;
+
+        synchronized long generation() {
+            return generation;
+        }
+
+        synchronized void signal() {
+
+            generation++;
+            notifyAll();
+
+        }
+
+        synchronized void await(long generation, long millis) throws InterruptedException {
+
+            if (this.generation == generation && millis > 0) {
+                wait(millis);
+            }
+
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.wuhao.redis.metrics;
+
+import com.wuhao.redis.utils.RedisUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 17:00
+ * @Description: 基于micrometer的redis统计。包含以下指标：
+ * redis.command 每个命令的耗时(按command、prefix打标签)，redis.command.errors 命令失败次数，
+ * redis.pool.borrow 从连接池获取连接的等待时间，redis.pool.borrow.errors 获取连接失败次数，
+ * redis.pool.active/idle/waiting 连接池中使用中、空闲的连接数和等待连接的线程数。
+ * 命令耗时高而获取连接等待时间低说明redis慢，反之说明连接池不够用。
+ * prefix标签只有配置了keyPrefixes才有，key不匹配任何前缀时为other，避免把每个key都变成一个标签值
+ * @Version: 1.0
+ **/
+public final class MicrometerRedisMetrics implements RedisCommandListener, MeterBinder {
+
+    private static final String NONE = "none";
+
+    private static final String OTHER = "other";
+
+    private final RedisUtils redisUtils;
+
+    /**
+     * 按长度降序排列，优先匹配最长的前缀
+     */
+    private final List<String> keyPrefixes;
+
+    private final boolean percentileHistogram;
+
+    /**
+     * 绑定的所有registry，指标先注册到这里，再由它同步给每个绑定的registry
+     */
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+
+    private final ConcurrentMap<String, Timer> commandTimers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> commandErrors = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> borrowErrors = new ConcurrentHashMap<>();
+
+    private final Timer borrowTimer;
+
+    /**
+     * @param redisUtils          redis工具类
+     * @param keyPrefixes         需要单独统计的key前缀，为空时命令耗时不区分前缀
+     * @param percentileHistogram 是否发布直方图，用于在监控系统中计算分位数
+     */
+    public MicrometerRedisMetrics(RedisUtils redisUtils, Collection<String> keyPrefixes, boolean percentileHistogram) {
+
+        this.redisUtils = redisUtils;
+        this.keyPrefixes = new ArrayList<>(keyPrefixes);
+        this.keyPrefixes.sort((a, b) -> b.length() - a.length());
+        this.percentileHistogram = percentileHistogram;
+        this.borrowTimer = Timer.builder("redis.pool.borrow")
+                .description("time spent waiting for a connection from the pool")
+                .publishPercentileHistogram(percentileHistogram)
+                .register(registry);
+        Gauge.builder("redis.pool.active", redisUtils, RedisUtils::getActiveConnections)
+                .description("connections currently borrowed from the pool")
+                .register(registry);
+        Gauge.builder("redis.pool.idle", redisUtils, RedisUtils::getIdleConnections)
+                .description("idle connections in the pool")
+                .register(registry);
+        Gauge.builder("redis.pool.waiting", redisUtils, RedisUtils::getWaitingThreads)
+                .description("threads waiting for a connection from the pool")
+                .register(registry);
+
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry meterRegistry) {
+
+        registry.add(meterRegistry);
+        //绑定了registry之后才开始统计，没有绑定时不产生任何开销
+        redisUtils.setCommandListener(this);
+
+    }
+
+    @Override
+    public void onCommand(String command, String key, long nanos, Throwable error) {
+
+        String prefix = prefixOf(key);
+        String id = prefix == null ? command : command + '|' + prefix;
+        commandTimers.computeIfAbsent(id, k -> Timer.builder("redis.command")
+                .description("redis command execution time, excluding the time waiting for a connection")
+                .tags(tags(command, prefix))
+                .publishPercentileHistogram(percentileHistogram)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+        if (error != null) {
+            String exception = error.getClass().getSimpleName();
+            commandErrors.computeIfAbsent(id + '|' + exception, k -> Counter.builder("redis.command.errors")
+                    .description("failed redis commands")
+                    .tags(tags(command, prefix).and("exception", exception))
+                    .register(registry)).increment();
+        }
+
+    }
+
+    @Override
+    public void onBorrow(long nanos, Throwable error) {
+
+        borrowTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (error != null) {
+            String exception = error.getClass().getSimpleName();
+            borrowErrors.computeIfAbsent(exception, k -> Counter.builder("redis.pool.borrow.errors")
+                    .description("failures to get a connection from the pool")
+                    .tag("exception", exception)
+                    .register(registry)).increment();
+        }
+
+    }
+
+    /**
+     * key匹配的前缀，没有配置前缀时返回null
+     */
+    private String prefixOf(String key) {
+
+        if (keyPrefixes.isEmpty()) {
+            return null;
+        }
+        if (key == null) {
+            return NONE;
+        }
+        for (String prefix : keyPrefixes) {
+            if (key.startsWith(prefix)) {
+                return prefix;
+            }
+        }
+        return OTHER;
+
+    }
+
+    private static Tags tags(String command, String prefix) {
+        return prefix == null ? Tags.of("command", command) : Tags.of("command", command, "prefix", prefix);
+    }
+}
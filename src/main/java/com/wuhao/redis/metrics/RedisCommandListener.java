@@ -0,0 +1,31 @@
+package com.wuhao.redis.metrics;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 17:00
+ * @Description: redis命令执行的监听器，用于统计命令耗时、从连接池获取连接的等待时间和错误数。
+ * 回调在执行命令的线程中同步调用，实现需要足够轻量并且线程安全
+ * @Version: 1.0
+ **/
+public interface RedisCommandListener {
+
+    /**
+     * 一个命令执行完成，不包含从连接池获取连接的时间
+     *
+     * @param command 命令名，小写，pipeline批量发送时为pipeline
+     * @param key     命令操作的key，多key命令或无法确定时为null
+     * @param nanos   耗时，纳秒
+     * @param error   执行失败时的异常，成功时为null
+     */
+    void onCommand(String command, String key, long nanos, Throwable error);
+
+    /**
+     * 从连接池获取了一个连接
+     *
+     * @param nanos 等待的时间，纳秒
+     * @param error 获取失败(连接池耗尽超时、连不上redis)时的异常，成功时为null
+     */
+    void onBorrow(long nanos, Throwable error);
+}
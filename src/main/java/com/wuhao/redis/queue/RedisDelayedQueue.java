@@ -0,0 +1,188 @@
+package com.wuhao.redis.queue;
+
+import com.wuhao.redis.script.LuaScript;
+import com.wuhao.redis.utils.RedisUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 14:00
+ * @Description: 基于有序集合的延迟队列，score为到期时间(redis服务器的毫秒时间戳)。到期的消息由一个脚本原子地取出并删除，
+ * 多个实例同时拉取时每个消息只会被其中一个取到。消息被取出后即从redis中删除，处理过程中实例宕机会丢失该消息
+ * @Version: 1.0
+ **/
+public final class RedisDelayedQueue {
+
+    /**
+     * 取出最多ARGV[1]个到期(按redis的时间)的消息并删除，同时返回下一个消息还要多久到期(毫秒)，队列为空时为-1
+     */
+    static final LuaScript POLL_DUE_SCRIPT = new LuaScript("redisDelayedQueue.pollDue",
+            "redis.replicate_commands() "
+                    + "local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) "
+                    + "local items = redis.call('zrangebyscore', KEYS[1], '-inf', now, 'LIMIT', 0, tonumber(ARGV[1])) "
+                    + "for i = 1, #items do redis.call('zrem', KEYS[1], items[i]) end "
+                    + "local head = redis.call('zrange', KEYS[1], 0, 0, 'WITHSCORES') "
+                    + "local delay = -1 if #head > 0 then delay = math.max(0, math.floor(tonumber(head[2]) - now)) end "
+                    + "return {items, delay}");
+
+    /**
+     * 按redis的时间写入到期时间，ARGV[3]为1时ARGV[2]是相对redis当前时间的延迟，否则是到期时间。
+     * 返回还要多久到期(毫秒)，已经到期时为负数
+     */
+    static final LuaScript SCHEDULE_SCRIPT = new LuaScript("redisDelayedQueue.schedule",
+            "redis.replicate_commands() "
+                    + "local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) "
+                    + "local due = tonumber(ARGV[2]) if ARGV[3] == '1' then due = now + due end "
+                    + "redis.call('zadd', KEYS[1], due, ARGV[1]) return due - now");
+
+    /**
+     * 以redis的当前时间作为到期时间放回消息
+     */
+    static final LuaScript PUT_BACK_SCRIPT = new LuaScript("redisDelayedQueue.putBack",
+            "redis.replicate_commands() "
+                    + "local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) "
+                    + "for i = 1, #ARGV do redis.call('zadd', KEYS[1], now, ARGV[i]) end return #ARGV");
+
+    private final RedisUtils redisUtils;
+
+    private final String name;
+
+    private final List<RedisDelayedQueueConsumer> consumers = new CopyOnWriteArrayList<>();
+
+    RedisDelayedQueue(RedisUtils redisUtils, String name) {
+        this.redisUtils = redisUtils;
+        this.name = name;
+    }
+
+    /**
+     * 队列名，即redis中有序集合的key
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 在指定的时间到期，消息已存在时更新到期时间。到期时间按redis服务器的时钟判断，
+     * 应用与redis的时钟可能有偏差，相对的延迟请使用schedule(member, delay, unit)
+     *
+     * @param dueTimeMillis 到期时间，redis服务器的毫秒时间戳
+     */
+    public void schedule(String member, long dueTimeMillis) {
+        schedule(member, dueTimeMillis, false);
+    }
+
+    /**
+     * 在指定的延迟后到期，延迟从redis收到命令时开始计算，不受应用与redis之间时钟偏差的影响
+     */
+    public void schedule(String member, long delay, TimeUnit unit) {
+        schedule(member, unit.toMillis(delay), true);
+    }
+
+    private void schedule(String member, long time, boolean relative) {
+
+        Object res = redisUtils.evalScript(SCHEDULE_SCRIPT, 1, name, member, String.valueOf(time), relative ? "1" : "0");
+        //redis返回的是相对的延迟，换算成本地时钟后唤醒本实例的拉取线程
+        long dueAt = System.currentTimeMillis() + (Long) res;
+        for (RedisDelayedQueueConsumer consumer : consumers) {
+            consumer.wakeUp(dueAt);
+        }
+
+    }
+
+    /**
+     * 取消还没有被取出的消息
+     *
+     * @return 是否取消成功
+     */
+    public boolean cancel(String member) {
+
+        Long removed = redisUtils.zrem(name, member);
+        return removed != null && removed > 0;
+
+    }
+
+    /**
+     * 还没有被取出的消息数，包括未到期的
+     */
+    public long size() {
+
+        Long size = redisUtils.zcard(name);
+        return size == null ? 0 : size;
+
+    }
+
+    /**
+     * 不阻塞地取出最多max个到期的消息，一次网络往返
+     */
+    public List<String> pollDue(int max) {
+        return pollDue(max, null);
+    }
+
+    /**
+     * 启动一个拉取线程，到期的消息交给executor执行handler。本批取满时立即拉取下一批，
+     * 否则等到下一个消息到期，最多等待maxPollMillis(其它实例新加入的更早到期的消息最多延迟这么久被处理)
+     *
+     * @param executor      执行handler的线程池，拒绝执行时消息重新放回队列，稍后再取
+     * @param batchSize     一次最多取出的消息数
+     * @param maxPollMillis 两次拉取的最长间隔，单位毫秒
+     * @param handler       处理一个到期的消息，抛出的异常只记录日志
+     */
+    public RedisDelayedQueueConsumer consume(Executor executor, int batchSize, long maxPollMillis, Consumer<String> handler) {
+
+        RedisDelayedQueueConsumer consumer = new RedisDelayedQueueConsumer(this, executor, batchSize, maxPollMillis, handler);
+        consumers.add(consumer);
+        consumer.start();
+        return consumer;
+
+    }
+
+    /**
+     * 停止所有拉取线程
+     */
+    public void close() {
+
+        for (RedisDelayedQueueConsumer consumer : consumers) {
+            consumer.close();
+        }
+        consumers.clear();
+
+    }
+
+    /*########################  供RedisDelayedQueueConsumer调用  #######################*/
+
+    /**
+     * @param nextDelay 不为null时放入下一个消息还要多久到期，单位毫秒，队列为空时为-1
+     */
+    @SuppressWarnings("unchecked")
+    List<String> pollDue(int max, long[] nextDelay) {
+
+        if (max <= 0) {
+            return Collections.emptyList();
+        }
+        List<Object> res = (List<Object>) redisUtils.evalScript(POLL_DUE_SCRIPT, 1, name, String.valueOf(max));
+        if (nextDelay != null) {
+            nextDelay[0] = (Long) res.get(1);
+        }
+        return (List<String>) res.get(0);
+
+    }
+
+    /**
+     * 把没能执行的消息立即放回队列
+     */
+    void putBack(List<String> members) {
+        redisUtils.evalScript(PUT_BACK_SCRIPT, Collections.singletonList(name), members);
+    }
+
+    void remove(RedisDelayedQueueConsumer consumer) {
+        consumers.remove(consumer);
+    }
+}
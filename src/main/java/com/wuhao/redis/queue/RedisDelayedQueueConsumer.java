@@ -0,0 +1,197 @@
+package com.wuhao.redis.queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 14:00
+ * @Description: 延迟队列的拉取线程，通过RedisDelayedQueue.consume()创建。根据下一个消息的到期时间决定等待多久，
+ * 没有到期的消息时不会频繁访问redis，大量消息同时到期时连续地批量拉取
+ * @Version: 1.0
+ **/
+public final class RedisDelayedQueueConsumer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisDelayedQueueConsumer.class);
+
+    /**
+     * 出错后多久重试，单位毫秒
+     */
+    private static final long RETRY_INTERVAL = 1000L;
+
+    /**
+     * 线程池拒绝执行后多久重试，单位毫秒
+     */
+    private static final long REJECTED_RETRY_INTERVAL = 100L;
+
+    private final RedisDelayedQueue queue;
+
+    private final Executor executor;
+
+    private final int batchSize;
+
+    private final long maxPollMillis;
+
+    private final Consumer<String> handler;
+
+    private final Thread poller;
+
+    private final Object monitor = new Object();
+
+    /**
+     * 上次拉取之后本实例加入的消息中最早的到期时间，毫秒时间戳
+     */
+    private long wakeUpAt = Long.MAX_VALUE;
+
+    private volatile boolean running = true;
+
+    RedisDelayedQueueConsumer(RedisDelayedQueue queue, Executor executor, int batchSize, long maxPollMillis, Consumer<String> handler) {
+
+        if (batchSize <= 0 || maxPollMillis <= 0) {
+            throw new IllegalArgumentException("batchSize and maxPollMillis must be positive");
+        }
+        this.queue = queue;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxPollMillis = maxPollMillis;
+        this.handler = handler;
+        this.poller = new Thread(this::poll, "redis-delayed-queue-" + queue.getName());
+        this.poller.setDaemon(true);
+
+    }
+
+    void start() {
+        poller.start();
+    }
+
+    /**
+     * 本实例加入了更早到期的消息时提前唤醒拉取线程
+     */
+    void wakeUp(long dueTimeMillis) {
+
+        synchronized (monitor) {
+            if (dueTimeMillis < wakeUpAt) {
+                wakeUpAt = dueTimeMillis;
+                monitor.notifyAll();
+            }
+        }
+
+    }
+
+    /**
+     * 停止拉取，已经交给线程池的消息不受影响
+     */
+    @Override
+    public void close() {
+
+        running = false;
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+        if (poller != Thread.currentThread()) {
+            boolean interrupted = false;
+            while (poller.isAlive()) {
+                try {
+                    poller.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        queue.remove(this);
+
+    }
+
+    private void poll() {
+
+        long[] nextDelay = new long[1];
+        while (running) {
+            long wait;
+            synchronized (monitor) {
+                wakeUpAt = Long.MAX_VALUE;
+            }
+            try {
+                List<String> items = queue.pollDue(batchSize, nextDelay);
+                boolean rejected = dispatch(items);
+                if (rejected) {
+                    wait = REJECTED_RETRY_INTERVAL;
+                } else if (items.size() == batchSize) {
+                    //可能还有到期的消息，立即拉取下一批
+                    continue;
+                } else {
+                    wait = nextDelay[0] < 0 ? maxPollMillis : Math.min(nextDelay[0], maxPollMillis);
+                }
+            } catch (RuntimeException e) {
+                log.warn("poll delayed queue {} failed, retry in {}ms", queue.getName(), RETRY_INTERVAL, e);
+                wait = RETRY_INTERVAL;
+            }
+            await(wait);
+        }
+
+    }
+
+    /**
+     * @return 是否有消息被线程池拒绝
+     */
+    private boolean dispatch(List<String> items) {
+
+        List<String> rejected = new ArrayList<>();
+        for (String item : items) {
+            if (!rejected.isEmpty()) {
+                rejected.add(item);
+                continue;
+            }
+            try {
+                executor.execute(() -> handle(item));
+            } catch (RejectedExecutionException e) {
+                rejected.add(item);
+            }
+        }
+        if (rejected.isEmpty()) {
+            return false;
+        }
+        log.debug("executor rejected {} items of delayed queue {}, put them back", rejected.size(), queue.getName());
+        queue.putBack(rejected);
+        return true;
+
+    }
+
+    private void handle(String item) {
+
+        try {
+            handler.accept(item);
+        } catch (RuntimeException e) {
+            log.warn("handle item {} of delayed queue {} failed", item, queue.getName(), e);
+        }
+
+    }
+
+    private void await(long millis) {
+
+        long deadline = System.currentTimeMillis() + millis;
+        synchronized (monitor) {
+            long remaining;
+            while (running && (remaining = Math.min(deadline, wakeUpAt) - System.currentTimeMillis()) > 0) {
+                try {
+                    monitor.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+    }
+}
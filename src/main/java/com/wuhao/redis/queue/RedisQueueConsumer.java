@@ -0,0 +1,192 @@
+package com.wuhao.redis.queue;
+
+import com.wuhao.redis.utils.RedisUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 13:00
+ * @Description: 可靠队列的一组消费线程，通过RedisReliableQueue.consume()创建。每个线程持有一个独立的阻塞连接，
+ * 阻塞等待不会占用连接池；另有一个后台线程定期上报心跳，并回收心跳超时的实例的处理中消息和本实例遗留的处理中消息
+ * @Version: 1.0
+ **/
+public final class RedisQueueConsumer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisQueueConsumer.class);
+
+    /**
+     * 一次阻塞等待的最长时间，单位秒，到时后检查是否已关闭
+     */
+    private static final int BLOCK_SECONDS = 1;
+
+    /**
+     * 出错后多久重试，单位毫秒
+     */
+    private static final long RETRY_INTERVAL = 1000L;
+
+    private final RedisReliableQueue queue;
+
+    private final RedisUtils redisUtils;
+
+    private final int batchSize;
+
+    private final Consumer<List<String>> handler;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final ScheduledExecutorService heartbeat;
+
+    private volatile boolean running = true;
+
+    RedisQueueConsumer(RedisReliableQueue queue, int threads, int batchSize, Consumer<List<String>> handler) {
+
+        if (threads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("threads and batchSize must be positive");
+        }
+        this.queue = queue;
+        this.redisUtils = queue.getRedisUtils();
+        this.batchSize = batchSize;
+        this.handler = handler;
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::work, "redis-queue-" + queue.getName() + "-" + i);
+            thread.setDaemon(true);
+            workers.add(thread);
+        }
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-queue-heartbeat-" + queue.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    }
+
+    void start() {
+
+        long period = Math.max(1, queue.getProcessingTimeoutMillis() / 3);
+        heartbeat.scheduleWithFixedDelay(this::beat, 0, period, TimeUnit.MILLISECONDS);
+        for (Thread worker : workers) {
+            worker.start();
+        }
+
+    }
+
+    /**
+     * 停止消费，等待正在处理的消息处理完
+     */
+    @Override
+    public void close() {
+
+        running = false;
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive() && worker != Thread.currentThread()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        heartbeat.shutdownNow();
+        queue.remove(this);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    private void beat() {
+
+        try {
+            queue.heartbeat();
+            long recovered = queue.recover();
+            if (recovered > 0) {
+                log.warn("moved {} unacknowledged items of dead consumers back to queue {}", recovered, queue.getName());
+            }
+            long orphans = queue.recoverOrphans();
+            if (orphans > 0) {
+                log.warn("moved {} orphaned items of this consumer back to queue {}", orphans, queue.getName());
+            }
+        } catch (RuntimeException e) {
+            log.warn("heartbeat of queue {} failed", queue.getName(), e);
+        }
+
+    }
+
+    private void work() {
+
+        Jedis blocking = null;
+        while (running) {
+            try {
+                List<String> items = queue.poll(batchSize);
+                if (items.isEmpty()) {
+                    if (blocking == null) {
+                        blocking = redisUtils.newDedicatedJedis(queue.getName());
+                    }
+                    String item = blocking.brpoplpush(queue.getName(), queue.getProcessingKey(), BLOCK_SECONDS);
+                    if (item == null) {
+                        continue;
+                    }
+                    items = new ArrayList<>(batchSize);
+                    items.add(item);
+                    queue.hold(items);
+                    try {
+                        items.addAll(queue.poll(batchSize - 1));
+                    } catch (RuntimeException e) {
+                        //已经阻塞出队的消息照常处理
+                        log.warn("poll more items of queue {} failed", queue.getName(), e);
+                    }
+                }
+                handle(items);
+            } catch (RuntimeException e) {
+                if (blocking != null) {
+                    blocking.close();
+                    blocking = null;
+                }
+                if (running) {
+                    log.warn("consume queue {} failed, retry in {}ms", queue.getName(), RETRY_INTERVAL, e);
+                    sleep();
+                }
+            }
+        }
+        if (blocking != null) {
+            blocking.close();
+        }
+
+    }
+
+    private void handle(List<String> items) {
+
+        try {
+            handler.accept(items);
+        } catch (RuntimeException e) {
+            log.warn("handle {} items of queue {} failed, requeue them", items.size(), queue.getName(), e);
+            queue.requeue(items);
+            return;
+        }
+        queue.ack(items);
+
+    }
+
+    private void sleep() {
+
+        try {
+            Thread.sleep(RETRY_INTERVAL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+}
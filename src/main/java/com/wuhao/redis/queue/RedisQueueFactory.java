@@ -0,0 +1,66 @@
+package com.wuhao.redis.queue;
+
+import com.wuhao.redis.utils.RedisUtils;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 13:00
+ * @Description: 队列工厂，同一个队列名在一个实例中只有一个RedisReliableQueue/RedisDelayedQueue，关闭时停止所有消费线程
+ * @Version: 1.0
+ **/
+public final class RedisQueueFactory implements Closeable {
+
+    private final RedisUtils redisUtils;
+
+    private final long processingTimeoutMillis;
+
+    private final ConcurrentMap<String, RedisReliableQueue> queues = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, RedisDelayedQueue> delayedQueues = new ConcurrentHashMap<>();
+
+    /**
+     * @param processingTimeoutMillis 实例的心跳超过这个时间没有更新时，它处理中的消息会被移回队列
+     */
+    public RedisQueueFactory(RedisUtils redisUtils, long processingTimeoutMillis) {
+
+        this.redisUtils = redisUtils;
+        this.processingTimeoutMillis = processingTimeoutMillis;
+        redisUtils.getScriptRegistry().register(RedisReliableQueue.POLL_SCRIPT);
+        redisUtils.getScriptRegistry().register(RedisReliableQueue.ACK_SCRIPT);
+        redisUtils.getScriptRegistry().register(RedisReliableQueue.REQUEUE_SCRIPT);
+        redisUtils.getScriptRegistry().register(RedisReliableQueue.HEARTBEAT_SCRIPT);
+        redisUtils.getScriptRegistry().register(RedisReliableQueue.RECOVER_SCRIPT);
+        redisUtils.getScriptRegistry().register(RedisDelayedQueue.POLL_DUE_SCRIPT);
+        redisUtils.getScriptRegistry().register(RedisDelayedQueue.SCHEDULE_SCRIPT);
+        redisUtils.getScriptRegistry().register(RedisDelayedQueue.PUT_BACK_SCRIPT);
+
+    }
+
+    /**
+     * 获取队列，name即redis中list的key
+     */
+    public RedisReliableQueue getQueue(String name) {
+        return queues.computeIfAbsent(name, n -> new RedisReliableQueue(redisUtils, n, processingTimeoutMillis));
+    }
+
+    /**
+     * 获取延迟队列，name即redis中有序集合的key
+     */
+    public RedisDelayedQueue getDelayedQueue(String name) {
+        return delayedQueues.computeIfAbsent(name, n -> new RedisDelayedQueue(redisUtils, n));
+    }
+
+    @Override
+    public void close() {
+
+        queues.values().forEach(RedisReliableQueue::close);
+        delayedQueues.values().forEach(RedisDelayedQueue::close);
+
+    }
+}
@@ -0,0 +1,326 @@
+package com.wuhao.redis.queue;
+
+import com.wuhao.redis.script.LuaScript;
+import com.wuhao.redis.utils.RedisUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 13:00
+ * @Description: 基于list的可靠队列，消息至少被处理一次。从左边入队、右边出队，出队的消息原子地移到本实例的处理中列表，
+ * 确认(ack)后才删除，处理失败可以重新入队。每个实例定期上报心跳，心跳超时的实例的处理中消息会被其它实例移回队列。
+ * 本实例的ack/requeue失败或者出队的结果在网络上丢失时，消息会留在本实例的处理中列表里，
+ * 消费线程会定期把其中已经不在处理的消息移回队列。
+ * 处理中列表等key与队列使用相同的hash tag，集群模式下在同一个slot
+ * @Version: 1.0
+ **/
+public final class RedisReliableQueue {
+
+    /**
+     * 上报心跳(redis的时间，毫秒)并原子地出队最多ARGV[1]个消息到处理中列表
+     */
+    static final LuaScript POLL_SCRIPT = new LuaScript("redisQueue.poll",
+            "redis.replicate_commands() "
+                    + "local t = redis.call('time') redis.call('hset', KEYS[3], ARGV[2], t[1] * 1000 + math.floor(t[2] / 1000)) "
+                    + "local items = {} "
+                    + "for i = 1, tonumber(ARGV[1]) do "
+                    + "local item = redis.call('rpoplpush', KEYS[1], KEYS[2]) if not item then break end items[i] = item end "
+                    + "return items");
+
+    /**
+     * 从处理中列表删除已处理的消息
+     */
+    static final LuaScript ACK_SCRIPT = new LuaScript("redisQueue.ack",
+            "local n = 0 for i = 1, #ARGV do n = n + redis.call('lrem', KEYS[1], -1, ARGV[i]) end return n");
+
+    /**
+     * 把处理中的消息放回队列末尾
+     */
+    static final LuaScript REQUEUE_SCRIPT = new LuaScript("redisQueue.requeue",
+            "local n = 0 for i = 1, #ARGV do "
+                    + "if redis.call('lrem', KEYS[1], -1, ARGV[i]) > 0 then redis.call('lpush', KEYS[2], ARGV[i]) n = n + 1 end end "
+                    + "return n");
+
+    static final LuaScript HEARTBEAT_SCRIPT = new LuaScript("redisQueue.heartbeat",
+            "redis.replicate_commands() "
+                    + "local t = redis.call('time') return redis.call('hset', KEYS[1], ARGV[1], t[1] * 1000 + math.floor(t[2] / 1000))");
+
+    /**
+     * 心跳超过ARGV[2]毫秒的实例，把它处理中的消息全部移回队列末尾
+     */
+    static final LuaScript RECOVER_SCRIPT = new LuaScript("redisQueue.recover",
+            "redis.replicate_commands() "
+                    + "local t = redis.call('time') local now = t[1] * 1000 + math.floor(t[2] / 1000) "
+                    + "local last = tonumber(redis.call('hget', KEYS[3], ARGV[1])) "
+                    + "if last and now - last < tonumber(ARGV[2]) then return 0 end "
+                    + "local n = 0 while redis.call('rpoplpush', KEYS[2], KEYS[1]) do n = n + 1 end "
+                    + "redis.call('hdel', KEYS[3], ARGV[1]) return n");
+
+    private final RedisUtils redisUtils;
+
+    private final String name;
+
+    /**
+     * 所有key共同的前缀，带hash tag
+     */
+    private final String tag;
+
+    private final String consumerId = UUID.randomUUID().toString();
+
+    private final String processingKey;
+
+    private final String consumersKey;
+
+    private final long processingTimeoutMillis;
+
+    private final List<RedisQueueConsumer> consumers = new CopyOnWriteArrayList<>();
+
+    /**
+     * 本实例已出队、还没有ack/requeue的消息及其个数(消息内容可能重复)
+     */
+    private final ConcurrentMap<String, Integer> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 上一次检查时在本实例处理中列表里、但没有在处理的消息及其个数
+     */
+    private Map<String, Integer> orphans = Collections.emptyMap();
+
+    /**
+     * 上一次检查本实例处理中列表的时间
+     */
+    private long lastOrphanCheck = System.currentTimeMillis();
+
+    RedisReliableQueue(RedisUtils redisUtils, String name, long processingTimeoutMillis) {
+
+        if (processingTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("processingTimeoutMillis must be positive");
+        }
+        this.redisUtils = redisUtils;
+        this.name = name;
+        this.tag = hasHashTag(name) ? name : "{" + name + "}";
+        this.processingKey = tag + ":processing:" + consumerId;
+        this.consumersKey = tag + ":consumers";
+        this.processingTimeoutMillis = processingTimeoutMillis;
+
+    }
+
+    /**
+     * 队列名，即redis中list的key
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 入队
+     *
+     * @return 入队后队列的长度
+     */
+    public long offer(String... items) {
+        return redisUtils.execute("lpush", name, jedis -> jedis.lpush(name, items));
+    }
+
+    /**
+     * 队列中等待处理的消息数，不包括处理中的
+     */
+    public long size() {
+        return redisUtils.lLen(name);
+    }
+
+    /**
+     * 不阻塞地出队最多max个消息，一次网络往返。出队的消息处理完后需要ack，失败时requeue
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> poll(int max) {
+
+        if (max <= 0) {
+            return Collections.emptyList();
+        }
+        Object res = redisUtils.evalScript(POLL_SCRIPT, 3, name, processingKey, consumersKey, String.valueOf(max), consumerId);
+        List<String> items = res == null ? Collections.<String>emptyList() : (List<String>) res;
+        hold(items);
+        return items;
+
+    }
+
+    /**
+     * 确认消息已处理，从处理中列表删除
+     *
+     * @return 删除的消息数
+     */
+    public long ack(Collection<String> items) {
+
+        try {
+            return items.isEmpty() ? 0 : eval(ACK_SCRIPT, items, processingKey);
+        } finally {
+            //失败时消息留在处理中列表，由recoverOrphans移回队列
+            release(items);
+        }
+
+    }
+
+    /**
+     * 把处理中的消息放回队列末尾，等待重新处理
+     *
+     * @return 放回的消息数
+     */
+    public long requeue(Collection<String> items) {
+
+        try {
+            return items.isEmpty() ? 0 : eval(REQUEUE_SCRIPT, items, processingKey, name);
+        } finally {
+            release(items);
+        }
+
+    }
+
+    /**
+     * 启动一组消费线程。每个线程先通过poll批量出队，队列为空时在自己的独立连接(不占用连接池)上阻塞等待，
+     * handler正常返回时确认这批消息，抛出异常时把这批消息放回队列
+     *
+     * @param threads   消费线程数
+     * @param batchSize 一次最多交给handler的消息数
+     * @param handler   处理一批消息
+     */
+    public RedisQueueConsumer consume(int threads, int batchSize, Consumer<List<String>> handler) {
+
+        RedisQueueConsumer consumer = new RedisQueueConsumer(this, threads, batchSize, handler);
+        consumers.add(consumer);
+        consumer.start();
+        return consumer;
+
+    }
+
+    /**
+     * 把心跳超时的实例处理中的消息移回队列，消费线程会定期调用
+     *
+     * @return 移回的消息数
+     */
+    public long recover() {
+
+        long count = 0;
+        Set<String> ids = redisUtils.hkeys(consumersKey);
+        for (String id : ids) {
+            if (!id.equals(consumerId)) {
+                Object res = redisUtils.evalScript(RECOVER_SCRIPT, 3, name, tag + ":processing:" + id, consumersKey,
+                        id, String.valueOf(processingTimeoutMillis));
+                count += res == null ? 0 : (Long) res;
+            }
+        }
+        return count;
+
+    }
+
+    /**
+     * 把本实例处理中列表里已经没有在处理的消息移回队列：ack/requeue失败、出队的结果在网络上丢失的消息。
+     * 消息连续两次检查都没有在处理时才移回，两次检查至少间隔processingTimeoutMillis，避免误伤刚出队还没有登记的消息。
+     * 消费线程会定期调用
+     *
+     * @return 移回的消息数
+     */
+    public synchronized long recoverOrphans() {
+
+        long now = System.currentTimeMillis();
+        if (now - lastOrphanCheck < processingTimeoutMillis) {
+            return 0;
+        }
+        lastOrphanCheck = now;
+        Map<String, Integer> current = new HashMap<>();
+        for (String item : redisUtils.lRange(processingKey, 0, -1)) {
+            current.merge(item, 1, Integer::sum);
+        }
+        inFlight.forEach((item, count) -> current.computeIfPresent(item, (k, v) -> v > count ? v - count : null));
+        List<String> items = new ArrayList<>();
+        current.forEach((item, count) -> {
+            for (int i = Math.min(count, orphans.getOrDefault(item, 0)); i > 0; i--) {
+                items.add(item);
+            }
+        });
+        orphans = current;
+        return items.isEmpty() ? 0 : eval(REQUEUE_SCRIPT, items, processingKey, name);
+
+    }
+
+    /**
+     * 停止所有消费线程
+     */
+    public void close() {
+
+        for (RedisQueueConsumer consumer : consumers) {
+            consumer.close();
+        }
+        consumers.clear();
+
+    }
+
+    /*########################  供RedisQueueConsumer调用  #######################*/
+
+    RedisUtils getRedisUtils() {
+        return redisUtils;
+    }
+
+    String getProcessingKey() {
+        return processingKey;
+    }
+
+    long getProcessingTimeoutMillis() {
+        return processingTimeoutMillis;
+    }
+
+    void heartbeat() {
+        redisUtils.evalScript(HEARTBEAT_SCRIPT, 1, consumersKey, consumerId);
+    }
+
+    void remove(RedisQueueConsumer consumer) {
+        consumers.remove(consumer);
+    }
+
+    /**
+     * 登记已出队、正在处理的消息
+     */
+    void hold(Collection<String> items) {
+
+        for (String item : items) {
+            inFlight.merge(item, 1, Integer::sum);
+        }
+
+    }
+
+    private void release(Collection<String> items) {
+
+        for (String item : items) {
+            inFlight.computeIfPresent(item, (k, count) -> count > 1 ? count - 1 : null);
+        }
+
+    }
+
+    private long eval(LuaScript script, Collection<String> items, String... keys) {
+
+        List<String> args = new ArrayList<>(items);
+        Object res = redisUtils.evalScript(script, Arrays.asList(keys), args);
+        return res == null ? 0 : (Long) res;
+
+    }
+
+    private static boolean hasHashTag(String key) {
+
+        int start = key.indexOf('{');
+        return start >= 0 && key.indexOf('}', start + 1) > start + 1;
+
+    }
+}
@@ -0,0 +1,288 @@
+package com.wuhao.redis.route;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisNoReachableClusterNodeException;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.Pool;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 21:00
+ * @Description: redis集群。启动时通过CLUSTER SLOTS取得16384个slot和主节点的对应关系，key按CRC16计算slot后直接发往对应主节点的连接池，
+ * 收到MOVED时由RedisUtils刷新对应关系并重试。key中有{hash tag}时只有大括号中的部分参与计算，可以用来把相关的key放到同一个slot
+ * @Version: 1.0
+ **/
+public final class ClusterRouter implements RedisRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterRouter.class);
+
+    private static final int SLOT_COUNT = 16384;
+
+    /**
+     * 两次刷新之间的最小间隔，避免集群扩缩容时大量的MOVED同时触发刷新
+     */
+    private static final long MIN_REFRESH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Set<HostAndPort> seeds;
+
+    private final GenericObjectPoolConfig poolConfig;
+
+    private final int timeout;
+
+    private final String password;
+
+    /**
+     * 每个节点一个连接池
+     */
+    private final Map<HostAndPort, JedisPool> nodes = new HashMap<>();
+
+    /**
+     * slot到主节点连接池的对应关系，刷新时整体替换
+     */
+    private volatile JedisPool[] slots = new JedisPool[SLOT_COUNT];
+
+    private volatile List<Pool<Jedis>> masters = new ArrayList<>();
+
+    /**
+     * 不再使用的节点的连接池，可能还有线程在使用，延迟关闭
+     */
+    private final PoolRetirer retirer = new PoolRetirer();
+
+    private long lastRefresh;
+
+    private boolean closed;
+
+    /**
+     * @param seeds 集群中任意几个节点，用于获取slot的分布
+     */
+    public ClusterRouter(Set<HostAndPort> seeds, GenericObjectPoolConfig poolConfig, int timeout, String password) {
+
+        if (seeds == null || seeds.isEmpty()) {
+            throw new IllegalArgumentException("cluster nodes must not be empty");
+        }
+        this.seeds = new LinkedHashSet<>(seeds);
+        this.poolConfig = poolConfig;
+        this.timeout = timeout;
+        this.password = password;
+        try {
+            refresh();
+        } catch (JedisException e) {
+            //启动时集群不可用不影响创建，第一次使用时再获取
+            log.warn("discover redis cluster slots from {} failed", seeds, e);
+        }
+
+    }
+
+    @Override
+    public Pool<Jedis> route(String key, boolean readOnly) {
+
+        if (key == null) {
+            return anyMaster();
+        }
+        int slot = JedisClusterCRC16.getSlot(key);
+        JedisPool pool = slots[slot];
+        if (pool == null) {
+            refresh();
+            pool = slots[slot];
+            if (pool == null) {
+                throw new JedisNoReachableClusterNodeException("no node serves slot " + slot);
+            }
+        }
+        return pool;
+
+    }
+
+    /**
+     * 同一个slot中的key才能放在一条命令中
+     */
+    @Override
+    public Object shardOf(String key) {
+        return JedisClusterCRC16.getSlot(key);
+    }
+
+    @Override
+    public boolean isSingleShard() {
+        return false;
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> masters() {
+
+        List<Pool<Jedis>> result = masters;
+        if (result.isEmpty()) {
+            refresh();
+            result = masters;
+        }
+        return result;
+
+    }
+
+    @Override
+    public synchronized Collection<Pool<Jedis>> pools() {
+        return new ArrayList<>(nodes.values());
+    }
+
+    @Override
+    public Jedis connect() {
+
+        HostAndPort node = hostOf(anyMaster());
+        return open(node == null ? seeds.iterator().next() : node);
+
+    }
+
+    /**
+     * 依次向已知的主节点和种子节点查询CLUSTER SLOTS，用第一个成功的结果替换对应关系，不再使用的节点的连接池在宽限期后关闭
+     */
+    @Override
+    public synchronized void refresh() {
+
+        if (closed) {
+            throw new IllegalStateException("cluster router is closed");
+        }
+        long now = System.nanoTime();
+        if (lastRefresh != 0 && now - lastRefresh < MIN_REFRESH_INTERVAL_NANOS && !masters.isEmpty()) {
+            return;
+        }
+        Set<HostAndPort> candidates = new LinkedHashSet<>();
+        for (Pool<Jedis> master : masters) {
+            HostAndPort node = hostOf(master);
+            if (node != null) {
+                candidates.add(node);
+            }
+        }
+        candidates.addAll(seeds);
+        JedisException failure = null;
+        for (HostAndPort candidate : candidates) {
+            try (Jedis jedis = open(candidate)) {
+                apply(candidate, jedis.clusterSlots());
+                lastRefresh = System.nanoTime();
+                return;
+            } catch (JedisException e) {
+                failure = e;
+            }
+        }
+        throw new JedisNoReachableClusterNodeException("no reachable node in cluster " + candidates, failure);
+
+    }
+
+    @Override
+    public synchronized Pool<Jedis> node(HostAndPort hostAndPort) {
+
+        if (closed) {
+            throw new IllegalStateException("cluster router is closed");
+        }
+        return nodes.computeIfAbsent(hostAndPort, node -> new JedisPool(poolConfig, node.getHost(), node.getPort(), timeout, password));
+
+    }
+
+    @Override
+    public synchronized void close() {
+
+        closed = true;
+        nodes.values().forEach(JedisPool::close);
+        nodes.clear();
+        retirer.close();
+
+    }
+
+    /**
+     * CLUSTER SLOTS的每一项为：起始slot、结束slot、主节点[host, port, id]、从节点...
+     */
+    private void apply(HostAndPort source, List<Object> slotInfos) {
+
+        JedisPool[] table = new JedisPool[SLOT_COUNT];
+        Map<HostAndPort, JedisPool> used = new LinkedHashMap<>();
+        for (Object item : slotInfos) {
+            List<?> info = (List<?>) item;
+            if (info.size() < 3) {
+                continue;
+            }
+            int start = ((Long) info.get(0)).intValue();
+            int end = ((Long) info.get(1)).intValue();
+            List<?> master = (List<?>) info.get(2);
+            String host = SafeEncoder.encode((byte[]) master.get(0));
+            //节点没有配置cluster-announce-ip时可能返回空的host，此时就是被查询的节点
+            HostAndPort node = new HostAndPort(host.isEmpty() ? source.getHost() : host, ((Long) master.get(1)).intValue());
+            JedisPool pool = (JedisPool) node(node);
+            used.put(node, pool);
+            for (int slot = start; slot <= end; slot++) {
+                table[slot] = pool;
+            }
+        }
+        slots = table;
+        masters = new ArrayList<>(used.values());
+        //通过MOVED、ASK临时访问的节点如果不在新的对应关系中，也一并退役
+        nodes.entrySet().removeIf(entry -> {
+            if (used.containsKey(entry.getKey())) {
+                return false;
+            }
+            retirer.retire(entry.getValue());
+            return true;
+        });
+
+    }
+
+    private Pool<Jedis> anyMaster() {
+
+        List<Pool<Jedis>> current = (List<Pool<Jedis>>) masters();
+        if (current.isEmpty()) {
+            throw new JedisNoReachableClusterNodeException("no master in cluster " + seeds);
+        }
+        return current.get(ThreadLocalRandom.current().nextInt(current.size()));
+
+    }
+
+    @Override
+    public Jedis connect(String key) {
+
+        HostAndPort node = hostOf(route(key, false));
+        return node == null ? connect() : open(node);
+
+    }
+
+    private synchronized HostAndPort hostOf(Pool<Jedis> pool) {
+
+        for (Map.Entry<HostAndPort, JedisPool> entry : nodes.entrySet()) {
+            if (entry.getValue() == pool) {
+                return entry.getKey();
+            }
+        }
+        return null;
+
+    }
+
+    private Jedis open(HostAndPort node) {
+
+        Jedis jedis = new Jedis(node.getHost(), node.getPort(), timeout);
+        try {
+            if (password != null) {
+                jedis.auth(password);
+            }
+            return jedis;
+        } catch (JedisException e) {
+            jedis.close();
+            throw e;
+        }
+
+    }
+}
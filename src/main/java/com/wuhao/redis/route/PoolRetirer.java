@@ -0,0 +1,91 @@
+package com.wuhao.redis.route;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPool;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 16:00
+ * @Description: 延迟关闭不再使用的连接池。刷新节点时其它线程可能刚路由到旧的连接池、或者借出的连接还没有归还，
+ * 立即关闭会让这些操作失败。退役的连接池至少保留GRACE_MILLIS，之后在没有借出的连接时关闭，最多等待MAX_CHECKS个周期
+ * @Version: 1.0
+ **/
+final class PoolRetirer {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolRetirer.class);
+
+    static final long GRACE_MILLIS = 10000;
+
+    private static final int MAX_CHECKS = 30;
+
+    /**
+     * 所有路由共用一个后台线程，只做很轻的检查和关闭
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "redis-pool-retire");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<JedisPool> retired = new HashSet<>();
+
+    private boolean closed;
+
+    /**
+     * 让一个连接池退役，之后不应再从路由中返回它
+     */
+    synchronized void retire(JedisPool pool) {
+
+        if (closed) {
+            pool.close();
+            return;
+        }
+        retired.add(pool);
+        schedule(pool, 1);
+
+    }
+
+    /**
+     * 路由关闭时立即关闭所有还没关闭的连接池
+     */
+    synchronized void close() {
+
+        closed = true;
+        retired.forEach(JedisPool::close);
+        retired.clear();
+
+    }
+
+    private void schedule(JedisPool pool, int checks) {
+        EXECUTOR.schedule(() -> check(pool, checks), GRACE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void check(JedisPool pool, int checks) {
+
+        synchronized (this) {
+            if (!retired.contains(pool)) {
+                return;
+            }
+            int active = pool.getNumActive();
+            if (active > 0 && checks < MAX_CHECKS) {
+                schedule(pool, checks + 1);
+                return;
+            }
+            if (active > 0) {
+                log.warn("close retired redis pool with {} connections still borrowed", active);
+            }
+            retired.remove(pool);
+        }
+        pool.close();
+
+    }
+}
@@ -0,0 +1,85 @@
+package com.wuhao.redis.route;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.util.Pool;
+
+import java.io.Closeable;
+import java.util.Collection;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 21:00
+ * @Description: 决定一个命令发往哪个节点。RedisUtils的所有命令都通过它选择连接池，
+ * 单节点、集群等不同的部署方式只需要提供不同的实现
+ * @Version: 1.0
+ **/
+public interface RedisRouter extends Closeable {
+
+    /**
+     * 获取处理某个key的连接池
+     *
+     * @param key      命令操作的key，为null时返回默认节点
+     * @param readOnly 是否是只读命令，只读命令可以发往从节点
+     */
+    Pool<Jedis> route(String key, boolean readOnly);
+
+    /**
+     * key所在的分片。多key命令(MGET、DEL、SINTER等)只能在同一个分片内执行，
+     * 返回值相等(equals)的key可以放在一条命令中
+     */
+    Object shardOf(String key);
+
+    /**
+     * 是否只有一个分片，此时所有的key都可以放在一条命令中
+     */
+    boolean isSingleShard();
+
+    /**
+     * 所有的主节点，用于SCAN、加载脚本这类需要在每个节点上执行的操作
+     */
+    Collection<Pool<Jedis>> masters();
+
+    /**
+     * 所有的连接池，包括从节点，用于统计和预热
+     */
+    Collection<Pool<Jedis>> pools();
+
+    /**
+     * 创建一个不属于连接池的连接，连到默认节点，用于订阅等会长时间占用连接的操作
+     */
+    Jedis connect();
+
+    /**
+     * 创建一个不属于连接池的连接，连到key所在的节点，用于阻塞读取等会长时间占用连接的操作
+     */
+    default Jedis connect(String key) {
+        return connect();
+    }
+
+    /**
+     * 在key所在的节点上PUBLISH的消息，订阅在默认节点(connect())上的客户端能否收到。
+     * 集群会把消息广播到所有节点，主从模式只有一个主节点，独立的分片之间则不会转发
+     */
+    default boolean isPublishVisible(String key) {
+        return true;
+    }
+
+    /**
+     * 收到MOVED重定向后刷新路由信息
+     */
+    default void refresh() {
+    }
+
+    /**
+     * 获取某个节点的连接池，用于MOVED、ASK重定向
+     */
+    default Pool<Jedis> node(HostAndPort hostAndPort) {
+        throw new UnsupportedOperationException("redirection is only supported in cluster mode");
+    }
+
+    @Override
+    void close();
+}
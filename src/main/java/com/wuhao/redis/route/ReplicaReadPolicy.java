@@ -0,0 +1,27 @@
+package com.wuhao.redis.route;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 22:00
+ * @Description: 只读命令选择节点的策略
+ * @Version: 1.0
+ **/
+public enum ReplicaReadPolicy {
+
+    /**
+     * 只读命令也发往主节点
+     */
+    MASTER,
+
+    /**
+     * 只读命令轮流发往每个从节点
+     */
+    ROUND_ROBIN,
+
+    /**
+     * 只读命令发往正在使用的连接和等待连接的线程最少的从节点
+     */
+    LEAST_LOADED
+}
@@ -0,0 +1,89 @@
+package com.wuhao.redis.route;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 22:00
+ * @Description: 固定的一主多从。写命令发往主节点，只读命令按策略发往从节点，
+ * 从节点的数据有复制延迟，刚写入的数据需要立即读到时不要使用从节点
+ * @Version: 1.0
+ **/
+public final class ReplicaRouter implements RedisRouter {
+
+    private static final Object SHARD = "master";
+
+    private final Pool<Jedis> master;
+
+    private final List<Pool<Jedis>> replicas = new ArrayList<>();
+
+    private final ReplicaSelector selector;
+
+    private final SingleNodeRouter masterNode;
+
+    public ReplicaRouter(GenericObjectPoolConfig poolConfig, HostAndPort master, List<HostAndPort> replicas, int timeout, String password,
+                         int database, ReplicaReadPolicy policy) {
+
+        this.masterNode = new SingleNodeRouter(poolConfig, master.getHost(), master.getPort(), timeout, password, database);
+        this.master = masterNode.route(null, false);
+        for (HostAndPort replica : replicas) {
+            this.replicas.add(new JedisPool(poolConfig, replica.getHost(), replica.getPort(), timeout, password, database));
+        }
+        this.selector = new ReplicaSelector(policy);
+
+    }
+
+    @Override
+    public Pool<Jedis> route(String key, boolean readOnly) {
+        return readOnly ? selector.select(replicas, master) : master;
+    }
+
+    @Override
+    public Object shardOf(String key) {
+        return SHARD;
+    }
+
+    @Override
+    public boolean isSingleShard() {
+        return true;
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> masters() {
+        return Collections.singletonList(master);
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> pools() {
+
+        List<Pool<Jedis>> pools = new ArrayList<>(replicas.size() + 1);
+        pools.add(master);
+        pools.addAll(replicas);
+        return pools;
+
+    }
+
+    @Override
+    public Jedis connect() {
+        return masterNode.connect();
+    }
+
+    @Override
+    public void close() {
+
+        masterNode.close();
+        replicas.forEach(Pool::close);
+
+    }
+}
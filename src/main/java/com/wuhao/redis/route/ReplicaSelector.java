@@ -0,0 +1,51 @@
+package com.wuhao.redis.route;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.util.Pool;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 22:00
+ * @Description: 按策略为只读命令选择从节点，没有可用的从节点时使用主节点
+ * @Version: 1.0
+ **/
+final class ReplicaSelector {
+
+    private final ReplicaReadPolicy policy;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaSelector(ReplicaReadPolicy policy) {
+        this.policy = policy;
+    }
+
+    Pool<Jedis> select(List<Pool<Jedis>> replicas, Pool<Jedis> master) {
+
+        int size = replicas.size();
+        if (policy == ReplicaReadPolicy.MASTER || size == 0) {
+            return master;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (policy == ReplicaReadPolicy.ROUND_ROBIN) {
+            return replicas.get(start);
+        }
+        //负载相同时从轮转的位置开始选，避免总是选中第一个
+        Pool<Jedis> selected = null;
+        int minLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Pool<Jedis> pool = replicas.get((start + i) % size);
+            int load = pool.getNumActive() + pool.getNumWaiters();
+            if (load < minLoad) {
+                minLoad = load;
+                selected = pool;
+            }
+        }
+        return selected;
+
+    }
+}
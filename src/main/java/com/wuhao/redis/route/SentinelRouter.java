@@ -0,0 +1,227 @@
+package com.wuhao.redis.route;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 22:00
+ * @Description: 通过哨兵发现主从节点。主节点由JedisSentinelPool管理，故障转移后自动切换到新的主节点；
+ * 从节点通过SENTINEL SLAVES定时刷新，下线或断开复制的从节点不再接收只读命令
+ * @Version: 1.0
+ **/
+public final class SentinelRouter implements RedisRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(SentinelRouter.class);
+
+    private static final Object SHARD = "master";
+
+    private final String masterName;
+
+    private final Set<HostAndPort> sentinels;
+
+    private final GenericObjectPoolConfig poolConfig;
+
+    private final int timeout;
+
+    private final String password;
+
+    private final int database;
+
+    private final JedisSentinelPool master;
+
+    private final ReplicaSelector selector;
+
+    /**
+     * 从节点的连接池，刷新时整体替换
+     */
+    private volatile List<Pool<Jedis>> replicas = Collections.emptyList();
+
+    private final Map<HostAndPort, JedisPool> replicaPools = new LinkedHashMap<>();
+
+    /**
+     * 下线的从节点的连接池，可能还有线程在使用，延迟关闭
+     */
+    private final PoolRetirer retirer = new PoolRetirer();
+
+    private final ScheduledExecutorService refresher;
+
+    private boolean closed;
+
+    /**
+     * @param refreshMillis 刷新从节点的间隔，单位毫秒，小于等于0时只在启动时获取一次
+     */
+    public SentinelRouter(GenericObjectPoolConfig poolConfig, String masterName, Set<HostAndPort> sentinels, int timeout, String password,
+                          int database, ReplicaReadPolicy policy, long refreshMillis) {
+
+        this.masterName = masterName;
+        this.sentinels = new LinkedHashSet<>(sentinels);
+        this.poolConfig = poolConfig;
+        this.timeout = timeout;
+        this.password = password;
+        this.database = database;
+        this.selector = new ReplicaSelector(policy);
+        Set<String> addresses = new LinkedHashSet<>();
+        for (HostAndPort sentinel : sentinels) {
+            addresses.add(sentinel.toString());
+        }
+        this.master = new JedisSentinelPool(masterName, addresses, poolConfig, timeout, password, database);
+        if (policy != ReplicaReadPolicy.MASTER) {
+            try {
+                refreshReplicas();
+            } catch (JedisException e) {
+                log.warn("discover replicas of {} from sentinels {} failed", masterName, sentinels, e);
+            }
+        }
+        if (policy != ReplicaReadPolicy.MASTER && refreshMillis > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "redis-sentinel-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(() -> {
+                try {
+                    refreshReplicas();
+                } catch (RuntimeException e) {
+                    log.warn("refresh replicas of {} failed", masterName, e);
+                }
+            }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        } else {
+            refresher = null;
+        }
+
+    }
+
+    @Override
+    public Pool<Jedis> route(String key, boolean readOnly) {
+        return readOnly ? selector.select(replicas, master) : master;
+    }
+
+    @Override
+    public Object shardOf(String key) {
+        return SHARD;
+    }
+
+    @Override
+    public boolean isSingleShard() {
+        return true;
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> masters() {
+        return Collections.singletonList(master);
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> pools() {
+
+        List<Pool<Jedis>> current = replicas;
+        List<Pool<Jedis>> pools = new ArrayList<>(current.size() + 1);
+        pools.add(master);
+        pools.addAll(current);
+        return pools;
+
+    }
+
+    @Override
+    public Jedis connect() {
+
+        HostAndPort node = master.getCurrentHostMaster();
+        Jedis jedis = new Jedis(node.getHost(), node.getPort(), timeout);
+        try {
+            if (password != null) {
+                jedis.auth(password);
+            }
+            if (database != 0) {
+                jedis.select(database);
+            }
+            return jedis;
+        } catch (JedisException e) {
+            jedis.close();
+            throw e;
+        }
+
+    }
+
+    /**
+     * 向哨兵查询从节点，只保留在线的从节点，不再使用的连接池在宽限期后关闭
+     */
+    synchronized void refreshReplicas() {
+
+        if (closed) {
+            return;
+        }
+        List<Map<String, String>> infos = null;
+        JedisException failure = null;
+        for (HostAndPort sentinel : sentinels) {
+            try (Jedis jedis = new Jedis(sentinel.getHost(), sentinel.getPort(), timeout)) {
+                infos = jedis.sentinelSlaves(masterName);
+                break;
+            } catch (JedisException e) {
+                failure = e;
+            }
+        }
+        if (infos == null) {
+            throw new JedisConnectionException("no reachable sentinel in " + sentinels, failure);
+        }
+        Set<HostAndPort> online = new LinkedHashSet<>();
+        for (Map<String, String> info : infos) {
+            String flags = info.getOrDefault("flags", "");
+            if (flags.contains("s_down") || flags.contains("o_down") || flags.contains("disconnected")
+                    || !"ok".equals(info.getOrDefault("master-link-status", "ok"))) {
+                continue;
+            }
+            online.add(new HostAndPort(info.get("ip"), Integer.parseInt(info.get("port"))));
+        }
+        List<Pool<Jedis>> current = new ArrayList<>(online.size());
+        for (HostAndPort node : online) {
+            current.add(replicaPools.computeIfAbsent(node, n -> new JedisPool(poolConfig, n.getHost(), n.getPort(), timeout, password, database)));
+        }
+        replicas = current;
+        replicaPools.entrySet().removeIf(entry -> {
+            if (online.contains(entry.getKey())) {
+                return false;
+            }
+            retirer.retire(entry.getValue());
+            return true;
+        });
+
+    }
+
+    @Override
+    public synchronized void close() {
+
+        closed = true;
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        replicas = Collections.emptyList();
+        replicaPools.values().forEach(JedisPool::close);
+        replicaPools.clear();
+        retirer.close();
+        master.close();
+
+    }
+}
@@ -0,0 +1,169 @@
+package com.wuhao.redis.route;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.util.MurmurHash;
+import redis.clients.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 23:00
+ * @Description: 客户端一致性哈希分片，用于多个互相独立的redis节点(不是集群)。每个节点在哈希环上有virtualNodes个虚拟节点，
+ * key按MurmurHash落到顺时针方向的第一个虚拟节点上，增删节点时只有约1/N的key需要迁移。
+ * 开启hash tag时key中第一个{}内的部分参与计算，可以用来把相关的key放到同一个节点
+ * @Version: 1.0
+ **/
+public final class ShardedRouter implements RedisRouter {
+
+    private final Map<HostAndPort, JedisPool> nodes = new LinkedHashMap<>();
+
+    private final TreeMap<Long, JedisPool> ring = new TreeMap<>();
+
+    private final MurmurHash hash = new MurmurHash();
+
+    private final JedisPool defaultNode;
+
+    private final boolean hashTags;
+
+    private final int timeout;
+
+    private final String password;
+
+    private final int database;
+
+    /**
+     * @param virtualNodes 每个节点的虚拟节点数，越多分布越均匀
+     * @param hashTags     是否只用key中{}内的部分计算哈希
+     */
+    public ShardedRouter(GenericObjectPoolConfig poolConfig, List<HostAndPort> nodes, int timeout, String password, int database,
+                         int virtualNodes, boolean hashTags) {
+
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("shard nodes must not be empty");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.hashTags = hashTags;
+        this.timeout = timeout;
+        this.password = password;
+        this.database = database;
+        for (HostAndPort node : nodes) {
+            JedisPool pool = new JedisPool(poolConfig, node.getHost(), node.getPort(), timeout, password, database);
+            this.nodes.put(node, pool);
+            //虚拟节点用地址命名，节点的配置顺序变化时key的分布不变
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash.hash(node + "#" + i), pool);
+            }
+        }
+        this.defaultNode = this.nodes.values().iterator().next();
+
+    }
+
+    @Override
+    public Pool<Jedis> route(String key, boolean readOnly) {
+
+        //没有key的命令(包括近端缓存的失效通知)固定发往第一个节点，与connect()一致
+        if (key == null) {
+            return defaultNode;
+        }
+        Map.Entry<Long, JedisPool> entry = ring.ceilingEntry(hash.hash(hashKey(key)));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+
+    }
+
+    /**
+     * 同一个节点上的key可以放在一条命令中
+     */
+    @Override
+    public Object shardOf(String key) {
+        return route(key, false);
+    }
+
+    @Override
+    public boolean isSingleShard() {
+        return nodes.size() == 1;
+    }
+
+    @Override
+    public boolean isPublishVisible(String key) {
+        return route(key, false) == defaultNode;
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> masters() {
+        return Collections.unmodifiableList(new ArrayList<>(nodes.values()));
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> pools() {
+        return masters();
+    }
+
+    @Override
+    public Jedis connect() {
+        return open(nodes.keySet().iterator().next());
+    }
+
+    @Override
+    public Jedis connect(String key) {
+
+        Pool<Jedis> pool = route(key, false);
+        for (Map.Entry<HostAndPort, JedisPool> entry : nodes.entrySet()) {
+            if (entry.getValue() == pool) {
+                return open(entry.getKey());
+            }
+        }
+        return connect();
+
+    }
+
+    @Override
+    public void close() {
+        nodes.values().forEach(JedisPool::close);
+    }
+
+    /**
+     * 与redis集群相同的hash tag规则：第一个{和之后第一个}之间的内容不为空时只用这部分
+     */
+    private String hashKey(String key) {
+
+        if (!hashTags) {
+            return key;
+        }
+        int start = key.indexOf('{');
+        if (start >= 0) {
+            int end = key.indexOf('}', start + 1);
+            if (end > start + 1) {
+                return key.substring(start + 1, end);
+            }
+        }
+        return key;
+
+    }
+
+    private Jedis open(HostAndPort node) {
+
+        Jedis jedis = new Jedis(node.getHost(), node.getPort(), timeout);
+        if (password != null) {
+            jedis.auth(password);
+        }
+        if (database != 0) {
+            jedis.select(database);
+        }
+        return jedis;
+
+    }
+}
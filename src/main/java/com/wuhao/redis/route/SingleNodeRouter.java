@@ -0,0 +1,87 @@
+package com.wuhao.redis.route;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.util.Pool;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 21:00
+ * @Description: 单节点，所有命令都发往同一个连接池
+ * @Version: 1.0
+ **/
+public final class SingleNodeRouter implements RedisRouter {
+
+    private static final Object SHARD = "single";
+
+    private final JedisPool pool;
+
+    private final String host;
+
+    private final int port;
+
+    private final int timeout;
+
+    private final String password;
+
+    private final int database;
+
+    public SingleNodeRouter(GenericObjectPoolConfig poolConfig, String host, int port, int timeout, String password, int database) {
+        this.pool = new JedisPool(poolConfig, host, port, timeout, password, database);
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+        this.password = password;
+        this.database = database;
+    }
+
+    @Override
+    public Pool<Jedis> route(String key, boolean readOnly) {
+        return pool;
+    }
+
+    @Override
+    public Object shardOf(String key) {
+        return SHARD;
+    }
+
+    @Override
+    public boolean isSingleShard() {
+        return true;
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> masters() {
+        return Collections.singletonList(pool);
+    }
+
+    @Override
+    public Collection<Pool<Jedis>> pools() {
+        return Collections.singletonList(pool);
+    }
+
+    @Override
+    public Jedis connect() {
+
+        Jedis jedis = new Jedis(host, port, timeout);
+        if (password != null) {
+            jedis.auth(password);
+        }
+        if (database != 0) {
+            jedis.select(database);
+        }
+        return jedis;
+
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.wuhao.redis.script;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 14:00
+ * @Description: lua脚本。sha1在本地计算，与SCRIPT LOAD返回的一致，执行时直接用EVALSHA只发送sha1。
+ * 应用可以把自己的脚本声明为spring bean，启动时会自动注册到RedisUtils的脚本注册表中
+ * @Version: 1.0
+ **/
+public final class LuaScript {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String name;
+
+    private final String text;
+
+    private final String sha1;
+
+    /**
+     * @param name 脚本名称，在注册表中唯一
+     * @param text 脚本内容
+     */
+    public LuaScript(String name, String text) {
+
+        if (name == null || text == null) {
+            throw new IllegalArgumentException("name and text must not be null");
+        }
+        this.name = name;
+        this.text = text;
+        this.sha1 = sha1(text);
+
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    private static String sha1(String text) {
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return "LuaScript{name='" + name + "', sha1='" + sha1 + "'}";
+    }
+}
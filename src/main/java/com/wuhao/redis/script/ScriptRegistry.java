@@ -0,0 +1,111 @@
+package com.wuhao.redis.script;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 14:00
+ * @Description: lua脚本注册表。脚本通过EVALSHA执行，redis中没有该脚本(重启、SCRIPT FLUSH、切换主从后)
+ * 返回NOSCRIPT时自动SCRIPT LOAD后重试一次
+ * @Version: 1.0
+ **/
+public final class ScriptRegistry {
+
+    private static final String NO_SCRIPT = "NOSCRIPT";
+
+    private final ConcurrentMap<String, LuaScript> scripts = new ConcurrentHashMap<>();
+
+    /**
+     * 注册一个脚本，同名的脚本会被替换
+     */
+    public LuaScript register(LuaScript script) {
+
+        scripts.put(script.getName(), script);
+        return script;
+
+    }
+
+    /**
+     * 注册一个脚本，同名的脚本会被替换
+     */
+    public LuaScript register(String name, String text) {
+        return register(new LuaScript(name, text));
+    }
+
+    /**
+     * 按名称获取脚本
+     *
+     * @throws IllegalArgumentException 脚本不存在
+     */
+    public LuaScript get(String name) {
+
+        LuaScript script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("lua script '" + name + "' is not registered");
+        }
+        return script;
+
+    }
+
+    public Collection<LuaScript> getScripts() {
+        return new ArrayList<>(scripts.values());
+    }
+
+    /**
+     * 把所有注册的脚本加载到redis中
+     */
+    public void loadAll(Jedis jedis) {
+
+        for (LuaScript script : scripts.values()) {
+            jedis.scriptLoad(script.getText());
+        }
+
+    }
+
+    /**
+     * 通过EVALSHA执行脚本，params前keyCount个为KEYS，其余为ARGV
+     */
+    public Object eval(Jedis jedis, LuaScript script, int keyCount, String... params) {
+
+        try {
+            return jedis.evalsha(script.getSha1(), keyCount, params);
+        } catch (JedisDataException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            jedis.scriptLoad(script.getText());
+            return jedis.evalsha(script.getSha1(), keyCount, params);
+        }
+
+    }
+
+    /**
+     * 通过EVALSHA执行脚本
+     */
+    public Object eval(Jedis jedis, LuaScript script, List<String> keys, List<String> args) {
+
+        try {
+            return jedis.evalsha(script.getSha1(), keys, args);
+        } catch (JedisDataException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            jedis.scriptLoad(script.getText());
+            return jedis.evalsha(script.getSha1(), keys, args);
+        }
+
+    }
+
+    private static boolean isNoScript(JedisDataException e) {
+        return e.getMessage() != null && e.getMessage().startsWith(NO_SCRIPT);
+    }
+}
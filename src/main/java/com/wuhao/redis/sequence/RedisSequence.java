@@ -0,0 +1,162 @@
+package com.wuhao.redis.sequence;
+
+import com.wuhao.redis.utils.RedisUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 12:00
+ * @Description: 号段模式的分布式序列。每次通过INCRBY从redis预留segmentSize个号，在本地无锁地逐个发放；
+ * 当前号段发放到一定比例时在后台预取下一个号段，用完后直接切换(双缓冲)，发号基本不需要等待redis。
+ * 所有实例发出的号都不重复，同一个实例发出的号递增；实例重启后未用完的号段会被跳过，号不连续
+ * @Version: 1.0
+ **/
+public final class RedisSequence {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisSequence.class);
+
+    private final RedisUtils redisUtils;
+
+    private final String key;
+
+    private final int segmentSize;
+
+    /**
+     * 当前号段剩余的号不多于该值时开始预取下一个号段
+     */
+    private final int prefetchRemaining;
+
+    private final Executor executor;
+
+    /**
+     * 当前号段，初始为空号段，第一次发号时获取
+     */
+    private volatile Segment current = new Segment(1, 0, 0);
+
+    /**
+     * 预取中或已预取的下一个号段
+     */
+    private final AtomicReference<CompletableFuture<Segment>> next = new AtomicReference<>();
+
+    /**
+     * @param segmentSize   每个号段的大小
+     * @param prefetchRatio 当前号段剩余的比例低于该值时预取下一个号段，取值(0, 1]
+     * @param executor      执行预取的线程池
+     */
+    RedisSequence(RedisUtils redisUtils, String key, int segmentSize, double prefetchRatio, Executor executor) {
+
+        if (segmentSize <= 0 || prefetchRatio <= 0 || prefetchRatio > 1) {
+            throw new IllegalArgumentException("segmentSize must be positive and prefetchRatio must be in (0, 1]");
+        }
+        this.redisUtils = redisUtils;
+        this.key = key;
+        this.segmentSize = segmentSize;
+        this.prefetchRemaining = Math.max(1, (int) (segmentSize * prefetchRatio));
+        this.executor = executor;
+
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 获取下一个号
+     */
+    public long next() {
+
+        while (true) {
+            Segment segment = current;
+            long id = segment.cursor.getAndIncrement();
+            if (id <= segment.max) {
+                //只有取到这个号的线程触发预取
+                if (id == segment.prefetchAt) {
+                    prefetch();
+                }
+                return id;
+            }
+            switchSegment(segment);
+        }
+
+    }
+
+    private void prefetch() {
+
+        CompletableFuture<Segment> future = new CompletableFuture<>();
+        if (!next.compareAndSet(null, future)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(fetch());
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            //线程池已关闭等，号段用完时同步获取
+            next.compareAndSet(future, null);
+        }
+
+    }
+
+    /**
+     * 当前号段用完，切换到预取的号段，没有预取或预取失败时同步获取
+     */
+    private synchronized void switchSegment(Segment exhausted) {
+
+        if (current != exhausted) {
+            return;
+        }
+        Segment segment = null;
+        CompletableFuture<Segment> future = next.getAndSet(null);
+        if (future != null) {
+            try {
+                segment = future.join();
+            } catch (CompletionException e) {
+                log.warn("prefetch segment of sequence {} failed, fetch it again", key, e.getCause());
+            }
+        }
+        current = segment != null ? segment : fetch();
+
+    }
+
+    private Segment fetch() {
+
+        long max = redisUtils.incrBy(key, (long) segmentSize);
+        long min = max - segmentSize + 1;
+        return new Segment(min, max, Math.max(min, max - prefetchRemaining + 1));
+
+    }
+
+    /**
+     * 号段[min, max]，min大于max表示空号段
+     */
+    private static final class Segment {
+
+        final AtomicLong cursor;
+
+        final long max;
+
+        /**
+         * 发出这个号时预取下一个号段
+         */
+        final long prefetchAt;
+
+        Segment(long min, long max, long prefetchAt) {
+            this.cursor = new AtomicLong(min);
+            this.max = max;
+            this.prefetchAt = prefetchAt;
+        }
+    }
+}
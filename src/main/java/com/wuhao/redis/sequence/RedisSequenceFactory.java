@@ -0,0 +1,67 @@
+package com.wuhao.redis.sequence;
+
+import com.wuhao.redis.utils.RedisUtils;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 12:00
+ * @Description: 分布式序列工厂，同一个key在一个实例中只有一个RedisSequence，所有序列共用一个预取线程
+ * @Version: 1.0
+ **/
+public final class RedisSequenceFactory implements Closeable {
+
+    private final RedisUtils redisUtils;
+
+    private final int segmentSize;
+
+    private final double prefetchRatio;
+
+    private final ConcurrentMap<String, RedisSequence> sequences = new ConcurrentHashMap<>();
+
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "redis-sequence-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param segmentSize   默认的号段大小
+     * @param prefetchRatio 当前号段剩余的比例低于该值时预取下一个号段，取值(0, 1]
+     */
+    public RedisSequenceFactory(RedisUtils redisUtils, int segmentSize, double prefetchRatio) {
+        this.redisUtils = redisUtils;
+        this.segmentSize = segmentSize;
+        this.prefetchRatio = prefetchRatio;
+    }
+
+    /**
+     * 获取使用默认号段大小的序列，key即redis中计数器的key
+     */
+    public RedisSequence getSequence(String key) {
+        return getSequence(key, segmentSize);
+    }
+
+    /**
+     * 获取序列，同一个key第一次获取时的号段大小生效
+     */
+    public RedisSequence getSequence(String key, int segmentSize) {
+        return sequences.computeIfAbsent(key, k -> new RedisSequence(redisUtils, k, segmentSize, prefetchRatio, prefetcher));
+    }
+
+    /**
+     * 停止预取线程。已经排队的预取任务会继续执行完，否则等待它们结果的next()会一直阻塞；
+     * 之后需要新号段时同步获取
+     */
+    @Override
+    public void close() {
+        prefetcher.shutdown();
+    }
+}
@@ -0,0 +1,208 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.codec.CompressionCodec;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 16:00
+ * @Description: 异步redis操作，通过RedisUtils.async()获取。命令进入一个有界队列，由固定数量的工作线程取出，
+ * 同一时刻排队的多个命令会放进一个pipeline一起发送，每个工作线程同一时刻只占用一个连接。
+ * 一个工作线程内的命令按入队的顺序执行；多个工作线程之间并行执行，需要严格顺序的命令请在前一个的回调中提交下一个，
+ * 或者使用一个工作线程。
+ * 注意：CompletableFuture的回调默认在工作线程中执行，耗时的回调请使用thenXxxAsync指定自己的线程池
+ * @Version: 1.0
+ **/
+public final class AsyncRedisUtils extends PipelineOperations implements Closeable {
+
+    private final RedisUtils redisUtils;
+
+    private final BlockingQueue<Command<?>> queue;
+
+    /**
+     * 一个pipeline最多发送的命令数
+     */
+    private final int maxBatchSize;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    AsyncRedisUtils(RedisUtils redisUtils, int threads, int queueCapacity, int maxBatchSize) {
+
+        if (threads <= 0 || queueCapacity <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("threads, queueCapacity and maxBatchSize must be positive");
+        }
+        this.redisUtils = redisUtils;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::work, "redis-async-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            workers.add(thread);
+        }
+
+    }
+
+    /**
+     * 在工作线程中执行任意的RedisUtils操作，用于不能放进pipeline的命令
+     */
+    public <T> CompletableFuture<T> execute(Function<RedisUtils, T> action) {
+        return enqueue(new Command<>(() -> action.apply(redisUtils)));
+    }
+
+    /*########################  不能放进pipeline的操作  #######################*/
+
+    /**
+     * 批量删除，返回实际删除的key数
+     */
+    public CompletableFuture<Long> mDel(List<String> keyList) {
+        return execute(r -> r.mDelCount(keyList));
+    }
+
+    /**
+     * 一次取出多个hash表中所有的键值对
+     */
+    public CompletableFuture<Map<String, Map<String, String>>> mHgetAll(List<String> keys) {
+        return execute(r -> r.mHgetAll(keys));
+    }
+
+    /**
+     * 从列表的左边阻塞弹出一个元素，等待期间会一直占用一个工作线程
+     */
+    public CompletableFuture<List<String>> blpop(String key, Integer timeout) {
+        return execute(r -> r.blpop(key, timeout));
+    }
+
+    /**
+     * 从列表的右边阻塞弹出一个元素，等待期间会一直占用一个工作线程
+     */
+    public CompletableFuture<List<String>> brpop(String key, Integer timeout) {
+        return execute(r -> r.brpop(key, timeout));
+    }
+
+    /**
+     * 获取一把锁
+     */
+    public CompletableFuture<Boolean> lock(String key, String lockValue, long expire) {
+        return execute(r -> r.lock(key, lockValue, expire));
+    }
+
+    public CompletableFuture<Boolean> releaseLock(String key, String lockValue) {
+        return execute(r -> r.releaseLock(key, lockValue));
+    }
+
+    /**
+     * 按名称执行已注册的脚本
+     */
+    public CompletableFuture<Object> evalScript(String name, List<String> keys, List<String> args) {
+        return execute(r -> r.evalScript(name, keys, args));
+    }
+
+    /**
+     * 排队中还未发送的命令数
+     */
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * 停止工作线程，还在排队的命令以异常结束，工作线程手上的一批命令会继续执行完。
+     * 不等待工作线程结束，它们可能正阻塞在blpop等命令上
+     */
+    @Override
+    public void close() {
+
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        Command<?> command;
+        while ((command = queue.poll()) != null) {
+            command.future.completeExceptionally(new RejectedExecutionException("async redis utils is closed"));
+        }
+
+    }
+
+    @Override
+    <T> CompletableFuture<T> add(String key, boolean readOnly, Function<Pipeline, Response<T>> action, Collection<String> writtenKeys) {
+        return enqueue(new Command<>(key, readOnly, action, writtenKeys));
+    }
+
+    @Override
+    CompressionCodec<String> valueCodec() {
+        return redisUtils.getValueCodec();
+    }
+
+    private <T> CompletableFuture<T> enqueue(Command<T> command) {
+
+        if (!running) {
+            command.future.completeExceptionally(new RejectedExecutionException("async redis utils is closed"));
+        } else if (!queue.offer(command)) {
+            //队列满了直接拒绝，而不是阻塞调用线程
+            command.future.completeExceptionally(new RejectedExecutionException("async redis queue is full"));
+        } else if (!running && queue.remove(command)) {
+            //close()可能在上面的检查之后已经清空了队列，此时要自己把命令取出来，否则没有线程会执行它
+            command.future.completeExceptionally(new RejectedExecutionException("async redis utils is closed"));
+        }
+        return command.future;
+
+    }
+
+    private void work() {
+
+        List<Command<?>> batch = new ArrayList<>(maxBatchSize);
+        List<Command<?>> pipelined = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            for (Command<?> command : batch) {
+                if (command.isPipelined()) {
+                    pipelined.add(command);
+                    continue;
+                }
+                //不能放进pipeline的命令执行前先发送排在它前面的命令，保持入队的顺序
+                if (!pipelined.isEmpty()) {
+                    flush(pipelined);
+                    pipelined.clear();
+                }
+                command.run();
+            }
+            if (!pipelined.isEmpty()) {
+                flush(pipelined);
+            }
+            batch.clear();
+            pipelined.clear();
+        }
+
+    }
+
+    private void flush(List<Command<?>> commands) {
+
+        try {
+            redisUtils.sendPipelined(commands, maxBatchSize);
+        } catch (RuntimeException e) {
+            //没有结果的命令已经以异常结束，写过的key在完成结果前已经失效
+        }
+
+    }
+}
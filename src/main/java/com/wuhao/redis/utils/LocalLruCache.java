@@ -0,0 +1,133 @@
+package com.wuhao.redis.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 11:20
+ * @Description: 进程内的本地缓存，超过maxSize时淘汰最久未访问的元素，超过ttl的元素在访问时被丢弃
+ * @Version: 1.0
+ **/
+public final class LocalLruCache<K, V> {
+
+    private final long ttlMillis;
+
+    private final LinkedHashMap<K, Node<V>> map;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param maxSize   最多缓存的元素个数
+     * @param ttlMillis 元素的存活时间，单位毫秒，小于等于0表示不过期
+     */
+    public LocalLruCache(int maxSize, long ttlMillis) {
+
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<K, Node<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Node<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+
+    }
+
+    /**
+     * 获取缓存的元素，不存在或已过期时返回null
+     */
+    public V get(K key) {
+
+        synchronized (map) {
+            Node<V> node = map.get(key);
+            if (node != null && node.expireAt > 0 && node.expireAt < System.currentTimeMillis()) {
+                map.remove(key);
+                node = null;
+            }
+            if (node == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            hitCount.incrementAndGet();
+            return node.value;
+        }
+
+    }
+
+    public void put(K key, V value) {
+
+        long expireAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+        synchronized (map) {
+            map.put(key, new Node<>(value, expireAt));
+        }
+
+    }
+
+    /**
+     * 元素不存在或已过期时放入value，返回缓存中最终的元素
+     */
+    public V putIfAbsent(K key, V value) {
+
+        synchronized (map) {
+            Node<V> node = map.get(key);
+            if (node != null && (node.expireAt <= 0 || node.expireAt >= System.currentTimeMillis())) {
+                return node.value;
+            }
+            put(key, value);
+            return value;
+        }
+
+    }
+
+    public void remove(K key) {
+
+        synchronized (map) {
+            map.remove(key);
+        }
+
+    }
+
+    public void clear() {
+
+        synchronized (map) {
+            map.clear();
+        }
+
+    }
+
+    public int size() {
+
+        synchronized (map) {
+            return map.size();
+        }
+
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private static final class Node<V> {
+
+        private final V value;
+
+        private final long expireAt;
+
+        Node(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.codec.CompressionCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 16:00
+ * @Description: 可以放进pipeline发送的命令，由RedisBatch(手动execute)和AsyncRedisUtils(后台自动发送)共用。
+ * 每个命令返回一个CompletableFuture，命令真正发送并收到结果后才会完成。
+ * 集群模式下命令按key发往对应的节点，多key命令(del、mGet、mSet)按第一个key路由，所有key必须在同一个slot(使用{hash tag})
+ * @Version: 1.0
+ **/
+public abstract class PipelineOperations {
+
+    PipelineOperations() {
+    }
+
+    /**
+     * 排队一个命令
+     *
+     * @param key         决定命令发往哪个节点，多key命令取第一个key
+     * @param readOnly    是否是只读命令，只读命令可以发往从节点
+     * @param action      往pipeline中写入命令
+     * @param writtenKeys 会修改string或hash值的key，命令执行后、结果完成前用于让近端缓存失效
+     */
+    abstract <T> CompletableFuture<T> add(String key, boolean readOnly, Function<Pipeline, Response<T>> action, Collection<String> writtenKeys);
+
+    /**
+     * String类型的值的压缩编解码器，未开启压缩时为null
+     */
+    abstract CompressionCodec<String> valueCodec();
+
+    /**
+     * 排队一个写命令
+     */
+    <T> CompletableFuture<T> add(String key, Function<Pipeline, Response<T>> action, Collection<String> writtenKeys) {
+        return add(key, false, action, writtenKeys);
+    }
+
+    private <T> CompletableFuture<T> add(String key, Function<Pipeline, Response<T>> action) {
+        return add(key, false, action, Collections.emptyList());
+    }
+
+    /**
+     * 排队一个只读命令
+     */
+    <T> CompletableFuture<T> read(String key, Function<Pipeline, Response<T>> action) {
+        return add(key, true, action, Collections.emptyList());
+    }
+
+    private <T> CompletableFuture<T> addWrite(String key, Function<Pipeline, Response<T>> action) {
+        return add(key, action, Collections.singletonList(key));
+    }
+
+    /**
+     * 在一个连接上通过一个pipeline发送一批命令，并完成它们的结果。连接异常时由调用方负责让剩下的命令以异常结束
+     *
+     * @param invalidator 命令执行后、结果完成前调用，让写过的key的近端缓存失效，
+     *                    保证调用方拿到结果后再读不会读到近端缓存中的旧值
+     * @return 是否有命令收到了集群的MOVED、ASK重定向
+     */
+    static boolean send(Jedis jedis, List<Command<?>> commands, Consumer<Collection<String>> invalidator) {
+
+        Pipeline pipeline = jedis.pipelined();
+        try {
+            for (Command<?> command : commands) {
+                command.send(pipeline);
+            }
+            pipeline.sync();
+        } finally {
+            //连接异常时部分命令可能已经执行了，同样需要失效
+            List<String> written = new ArrayList<>();
+            for (Command<?> command : commands) {
+                written.addAll(command.writtenKeys);
+            }
+            if (!written.isEmpty()) {
+                invalidator.accept(written);
+            }
+        }
+        boolean redirected = false;
+        for (Command<?> command : commands) {
+            redirected |= !command.complete();
+        }
+        return redirected;
+
+    }
+
+    /*########################  key的操作  ################################*/
+
+    public CompletableFuture<Long> del(String... key) {
+        return add(key.length == 0 ? null : key[0], p -> p.del(key), Arrays.asList(key));
+    }
+
+    public CompletableFuture<Boolean> exists(String key) {
+        return read(key, p -> p.exists(key));
+    }
+
+    public CompletableFuture<Long> expire(String key, int seconds) {
+        return add(key, p -> p.expire(key, seconds));
+    }
+
+    public CompletableFuture<Long> expireAt(String key, long unixTime) {
+        return add(key, p -> p.expireAt(key, unixTime));
+    }
+
+    public CompletableFuture<Long> ttl(String key) {
+        return read(key, p -> p.ttl(key));
+    }
+
+    public CompletableFuture<String> type(String key) {
+        return read(key, p -> p.type(key));
+    }
+
+    /*########################  string(字符串)的操作  ####################*/
+
+    public CompletableFuture<String> get(String key) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            return read(key, p -> p.get(SafeEncoder.encode(key))).thenApply(value -> decode(value, codec));
+        }
+        return read(key, p -> p.get(key));
+
+    }
+
+    /**
+     * 一次取多个key的值，结果顺序与key的顺序一致
+     */
+    public CompletableFuture<List<String>> mGet(String... keys) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            return read(keys.length == 0 ? null : keys[0], p -> p.mget(SafeEncoder.encodeMany(keys))).thenApply(values -> decodeList(values, codec));
+        }
+        return read(keys.length == 0 ? null : keys[0], p -> p.mget(keys));
+
+    }
+
+    public CompletableFuture<String> set(String key, String value) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            byte[] encoded = codec.encode(value);
+            return addWrite(key, p -> p.set(SafeEncoder.encode(key), encoded));
+        }
+        return addWrite(key, p -> p.set(key, value));
+
+    }
+
+    public CompletableFuture<String> set(String key, String value, int expireSeconds) {
+        return setEx(key, expireSeconds, value);
+    }
+
+    public CompletableFuture<String> set(String key, String value, String nxxx, String expx, int time) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            byte[] encoded = codec.encode(value);
+            return addWrite(key, p -> p.set(SafeEncoder.encode(key), encoded, SafeEncoder.encode(nxxx), SafeEncoder.encode(expx), time));
+        }
+        return addWrite(key, p -> p.set(key, value, nxxx, expx, time));
+
+    }
+
+    public CompletableFuture<String> setEx(String key, int seconds, String value) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            byte[] encoded = codec.encode(value);
+            return addWrite(key, p -> p.setex(SafeEncoder.encode(key), seconds, encoded));
+        }
+        return addWrite(key, p -> p.setex(key, seconds, value));
+
+    }
+
+    /**
+     * 一次设置多个key的值，参数为key1,value1,key2,value2...
+     */
+    public CompletableFuture<String> mSet(String... keysValues) {
+
+        List<String> keys = new ArrayList<>(keysValues.length / 2);
+        for (int i = 0; i < keysValues.length; i += 2) {
+            keys.add(keysValues[i]);
+        }
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            byte[][] encoded = new byte[keysValues.length][];
+            for (int i = 0; i < keysValues.length; i += 2) {
+                encoded[i] = SafeEncoder.encode(keysValues[i]);
+                encoded[i + 1] = codec.encode(keysValues[i + 1]);
+            }
+            return add(keys.isEmpty() ? null : keys.get(0), p -> p.mset(encoded), keys);
+        }
+        return add(keys.isEmpty() ? null : keys.get(0), p -> p.mset(keysValues), keys);
+
+    }
+
+    public CompletableFuture<Long> append(String key, String appendContent) {
+        return addWrite(key, p -> p.append(key, appendContent));
+    }
+
+    public CompletableFuture<Long> strLen(String key) {
+        return read(key, p -> p.strlen(key));
+    }
+
+    public CompletableFuture<Long> incr(String key) {
+        return addWrite(key, p -> p.incr(key));
+    }
+
+    public CompletableFuture<Long> incrBy(String key, long increment) {
+        return addWrite(key, p -> p.incrBy(key, increment));
+    }
+
+    public CompletableFuture<Double> incrByFloat(String key, double increment) {
+        return addWrite(key, p -> p.incrByFloat(key, increment));
+    }
+
+    public CompletableFuture<Long> decr(String key) {
+        return addWrite(key, p -> p.decr(key));
+    }
+
+    public CompletableFuture<Long> decrBy(String key, long increment) {
+        return addWrite(key, p -> p.decrBy(key, increment));
+    }
+
+    /*########################  list(列表)的操作  #######################*/
+
+    public CompletableFuture<Long> lPush(String key, String... strings) {
+        return add(key, p -> p.lpush(key, strings));
+    }
+
+    public CompletableFuture<Long> rPush(String key, String... strings) {
+        return add(key, p -> p.rpush(key, strings));
+    }
+
+    public CompletableFuture<String> lPop(String key) {
+        return add(key, p -> p.lpop(key));
+    }
+
+    public CompletableFuture<String> rPop(String key) {
+        return add(key, p -> p.rpop(key));
+    }
+
+    public CompletableFuture<List<String>> lRange(String key, long startIndex, long endIndex) {
+        return read(key, p -> p.lrange(key, startIndex, endIndex));
+    }
+
+    public CompletableFuture<String> lIndex(String key, long index) {
+        return read(key, p -> p.lindex(key, index));
+    }
+
+    public CompletableFuture<Long> lLen(String key) {
+        return read(key, p -> p.llen(key));
+    }
+
+    public CompletableFuture<String> lSet(String key, long index, String str) {
+        return add(key, p -> p.lset(key, index, str));
+    }
+
+    public CompletableFuture<String> ltrim(String key, long startIndex, long endIndex) {
+        return add(key, p -> p.ltrim(key, startIndex, endIndex));
+    }
+
+    /*########################  hash(哈希表)的操作  #######################*/
+
+    public CompletableFuture<Long> hset(String key, String field, String value) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            byte[] encoded = codec.encode(value);
+            return addWrite(key, p -> p.hset(SafeEncoder.encode(key), SafeEncoder.encode(field), encoded));
+        }
+        return addWrite(key, p -> p.hset(key, field, value));
+
+    }
+
+    public CompletableFuture<String> hget(String key, String field) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            return read(key, p -> p.hget(SafeEncoder.encode(key), SafeEncoder.encode(field))).thenApply(value -> decode(value, codec));
+        }
+        return read(key, p -> p.hget(key, field));
+
+    }
+
+    public CompletableFuture<String> hmset(String key, Map<String, String> kvMap) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            Map<byte[], byte[]> encoded = new HashMap<>(kvMap.size() * 4 / 3 + 1);
+            kvMap.forEach((field, value) -> encoded.put(SafeEncoder.encode(field), codec.encode(value)));
+            return addWrite(key, p -> p.hmset(SafeEncoder.encode(key), encoded));
+        }
+        return addWrite(key, p -> p.hmset(key, kvMap));
+
+    }
+
+    public CompletableFuture<List<String>> hmget(String key, String... fields) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            return read(key, p -> p.hmget(SafeEncoder.encode(key), SafeEncoder.encodeMany(fields))).thenApply(values -> decodeList(values, codec));
+        }
+        return read(key, p -> p.hmget(key, fields));
+
+    }
+
+    public CompletableFuture<Map<String, String>> hgetAll(String key) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            return read(key, p -> p.hgetAll(SafeEncoder.encode(key))).thenApply(values -> {
+                Map<String, String> result = new HashMap<>(values.size() * 4 / 3 + 1);
+                values.forEach((field, value) -> result.put(SafeEncoder.encode(field), codec.decode(value)));
+                return result;
+            });
+        }
+        return read(key, p -> p.hgetAll(key));
+
+    }
+
+    public CompletableFuture<Boolean> hexists(String key, String field) {
+        return read(key, p -> p.hexists(key, field));
+    }
+
+    public CompletableFuture<Set<String>> hkeys(String key) {
+        return read(key, p -> p.hkeys(key));
+    }
+
+    public CompletableFuture<List<String>> hvals(String key) {
+
+        CompressionCodec<String> codec = valueCodec();
+        if (codec != null) {
+            return read(key, p -> p.hvals(SafeEncoder.encode(key))).thenApply(values -> decodeList(values, codec));
+        }
+        return read(key, p -> p.hvals(key));
+
+    }
+
+    public CompletableFuture<Long> hdel(String key, String... fields) {
+        return addWrite(key, p -> p.hdel(key, fields));
+    }
+
+    public CompletableFuture<Long> hincrBy(String key, String field, long increment) {
+        return addWrite(key, p -> p.hincrBy(key, field, increment));
+    }
+
+    public CompletableFuture<Double> hincrByFloat(String key, String field, double increment) {
+        return addWrite(key, p -> p.hincrByFloat(key, field, increment));
+    }
+
+    /*########################  set(集合)的操作  ###########################*/
+
+    public CompletableFuture<Long> sadd(String key, String... members) {
+        return add(key, p -> p.sadd(key, members));
+    }
+
+    public CompletableFuture<Set<String>> smembers(String key) {
+        return read(key, p -> p.smembers(key));
+    }
+
+    public CompletableFuture<Boolean> sismember(String key, String member) {
+        return read(key, p -> p.sismember(key, member));
+    }
+
+    public CompletableFuture<Long> scard(String key) {
+        return read(key, p -> p.scard(key));
+    }
+
+    public CompletableFuture<Long> srem(String key, String... members) {
+        return add(key, p -> p.srem(key, members));
+    }
+
+    public CompletableFuture<List<String>> srandmember(String key, int count) {
+        return read(key, p -> p.srandmember(key, count));
+    }
+
+    public CompletableFuture<Set<String>> spop(String key, long count) {
+        return add(key, p -> p.spop(key, count));
+    }
+
+    /*########################  zset(有序集合)的操作  #######################*/
+
+    public CompletableFuture<Long> zadd(String key, double score, String member) {
+        return add(key, p -> p.zadd(key, score, member));
+    }
+
+    public CompletableFuture<Long> zadd(String key, Map<String, Double> memberScores) {
+        return add(key, p -> p.zadd(key, memberScores));
+    }
+
+    public CompletableFuture<Set<String>> zrange(String key, long start, long end) {
+        return read(key, p -> p.zrange(key, start, end));
+    }
+
+    public CompletableFuture<Set<Tuple>> zrangeWithScores(String key, long start, long end) {
+        return read(key, p -> p.zrangeWithScores(key, start, end));
+    }
+
+    public CompletableFuture<Set<String>> zrevrange(String key, long start, long end) {
+        return read(key, p -> p.zrevrange(key, start, end));
+    }
+
+    public CompletableFuture<Set<Tuple>> zrevrangeWithScores(String key, long start, long end) {
+        return read(key, p -> p.zrevrangeWithScores(key, start, end));
+    }
+
+    public CompletableFuture<Long> zcard(String key) {
+        return read(key, p -> p.zcard(key));
+    }
+
+    public CompletableFuture<Long> zcount(String key, double startScore, double endScore) {
+        return read(key, p -> p.zcount(key, startScore, endScore));
+    }
+
+    public CompletableFuture<Long> zrank(String key, String member) {
+        return read(key, p -> p.zrank(key, member));
+    }
+
+    public CompletableFuture<Long> zrevrank(String key, String member) {
+        return read(key, p -> p.zrevrank(key, member));
+    }
+
+    public CompletableFuture<Set<String>> zrangeByScore(String key, double min, double max) {
+        return read(key, p -> p.zrangeByScore(key, min, max));
+    }
+
+    public CompletableFuture<Set<String>> zrangeByScore(String key, double min, double max, int offset, int size) {
+        return read(key, p -> p.zrangeByScore(key, min, max, offset, size));
+    }
+
+    public CompletableFuture<Set<Tuple>> zrangeByScoreWithScores(String key, double min, double max) {
+        return read(key, p -> p.zrangeByScoreWithScores(key, min, max));
+    }
+
+    public CompletableFuture<Set<String>> zrevrangeByScore(String key, double max, double min) {
+        return read(key, p -> p.zrevrangeByScore(key, max, min));
+    }
+
+    public CompletableFuture<Set<Tuple>> zrevrangeByScoreWithScores(String key, double max, double min) {
+        return read(key, p -> p.zrevrangeByScoreWithScores(key, max, min));
+    }
+
+    public CompletableFuture<Long> zrem(String key, String... members) {
+        return add(key, p -> p.zrem(key, members));
+    }
+
+    public CompletableFuture<Long> zremrangeByRank(String key, long start, long end) {
+        return add(key, p -> p.zremrangeByRank(key, start, end));
+    }
+
+    public CompletableFuture<Long> zremrangeByScore(String key, double min, double max) {
+        return add(key, p -> p.zremrangeByScore(key, min, max));
+    }
+
+    public CompletableFuture<Double> zscore(String key, String member) {
+        return read(key, p -> p.zscore(key, member));
+    }
+
+    public CompletableFuture<Double> zincrby(String key, double score, String member) {
+        return add(key, p -> p.zincrby(key, score, member));
+    }
+
+    /*########################  bitmap(位图)和HyperLogLog的操作  #######################*/
+
+    public CompletableFuture<Boolean> setBit(String key, long offset, boolean value) {
+        return addWrite(key, p -> p.setbit(key, offset, value));
+    }
+
+    public CompletableFuture<Boolean> getBit(String key, long offset) {
+        return read(key, p -> p.getbit(key, offset));
+    }
+
+    public CompletableFuture<Long> bitCount(String key) {
+        return read(key, p -> p.bitcount(key));
+    }
+
+    /**
+     * 一条BITFIELD中可以包含多个子命令，如"SET", "u1", "100", "1", "SET", "u1", "200", "1"
+     */
+    public CompletableFuture<List<Long>> bitField(String key, String... arguments) {
+        return addWrite(key, p -> p.bitfield(key, arguments));
+    }
+
+    public CompletableFuture<Long> pfadd(String key, String... elements) {
+        return addWrite(key, p -> p.pfadd(key, elements));
+    }
+
+    public CompletableFuture<Long> pfcount(String key) {
+        return read(key, p -> p.pfcount(key));
+    }
+
+    private static String decode(byte[] value, CompressionCodec<String> codec) {
+        return value == null ? null : codec.decode(value);
+    }
+
+    private static List<String> decodeList(Collection<byte[]> values, CompressionCodec<String> codec) {
+
+        List<String> result = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            result.add(decode(value, codec));
+        }
+        return result;
+
+    }
+
+    /**
+     * 排队中的一条命令。action为null的是不能放进pipeline的命令，由direct直接执行
+     */
+    static final class Command<T> {
+
+        private final Function<Pipeline, Response<T>> action;
+
+        private final Supplier<T> direct;
+
+        /**
+         * 决定命令发往哪个节点
+         */
+        final String key;
+
+        /**
+         * 是否是只读命令
+         */
+        final boolean readOnly;
+
+        final Collection<String> writtenKeys;
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Response<T> response;
+
+        Command(String key, boolean readOnly, Function<Pipeline, Response<T>> action, Collection<String> writtenKeys) {
+            this.action = action;
+            this.direct = null;
+            this.key = key;
+            this.readOnly = readOnly;
+            this.writtenKeys = writtenKeys;
+        }
+
+        Command(Supplier<T> direct) {
+            this.action = null;
+            this.direct = direct;
+            this.key = null;
+            this.readOnly = false;
+            this.writtenKeys = Collections.emptyList();
+        }
+
+        boolean isPipelined() {
+            return action != null;
+        }
+
+        void send(Pipeline pipeline) {
+            response = action.apply(pipeline);
+        }
+
+        /**
+         * @return 收到重定向时为false
+         */
+        boolean complete() {
+
+            try {
+                future.complete(response.get());
+            } catch (RuntimeException e) {
+                //单条命令执行失败（如类型错误）只影响自己的结果，不影响同一个pipeline里的其它命令
+                future.completeExceptionally(e);
+                return !(e instanceof JedisRedirectionException);
+            }
+            return true;
+
+        }
+
+        void run() {
+
+            try {
+                future.complete(direct.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+
+        }
+    }
+}
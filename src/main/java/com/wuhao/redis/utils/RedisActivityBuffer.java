@@ -0,0 +1,209 @@
+package com.wuhao.redis.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 16:00
+ * @Description: HyperLogLog和位图的写缓冲，通过RedisUtils.activityBuffer()创建，用于统计UV、日活这类高频且允许近似的写入。
+ * 写入先在本地去重攒批，满maxPending个或每隔flushIntervalMillis后台写入一次：每个HyperLogLog一条变长参数的PFADD，
+ * 每个位图一条包含多个SET子命令的BITFIELD(需要redis 3.2以上)，所有命令在一个pipeline中发送。
+ * 写入失败时这一批数据会被丢弃，进程退出前需要close()以写入剩余的数据
+ * @Version: 1.0
+ **/
+public final class RedisActivityBuffer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisActivityBuffer.class);
+
+    /**
+     * 一条命令最多携带的元素数
+     */
+    private static final int MAX_ARGUMENTS = 1000;
+
+    private final RedisUtils redisUtils;
+
+    private final int maxPending;
+
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * 添加时持有读锁，替换缓冲时持有写锁，保证不会有数据写进已经被取走的缓冲
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, Set<String>> elements = new ConcurrentHashMap<>();
+
+    private Map<String, Set<Long>> bits = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 是否已经因为攒满而安排了一次写入
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    RedisActivityBuffer(RedisUtils redisUtils, int maxPending, long flushIntervalMillis) {
+
+        if (maxPending <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("maxPending and flushIntervalMillis must be positive");
+        }
+        this.redisUtils = redisUtils;
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-activity-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * 往HyperLogLog中添加一个元素
+     */
+    public void pfadd(String key, String element) {
+
+        boolean added;
+        lock.readLock().lock();
+        try {
+            added = elements.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(element);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (added) {
+            onAdded();
+        }
+
+    }
+
+    /**
+     * 把位图的某一位置为1
+     */
+    public void setBit(String key, long offset) {
+
+        boolean added;
+        lock.readLock().lock();
+        try {
+            added = bits.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (added) {
+            onAdded();
+        }
+
+    }
+
+    /**
+     * 还没有写入redis的元素和位数
+     */
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 立即写入缓冲中的所有数据
+     */
+    public synchronized void flush() {
+
+        Map<String, Set<String>> elementsToFlush;
+        Map<String, Set<Long>> bitsToFlush;
+        lock.writeLock().lock();
+        try {
+            elementsToFlush = elements;
+            bitsToFlush = bits;
+            elements = new ConcurrentHashMap<>();
+            bits = new ConcurrentHashMap<>();
+            pending.set(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (elementsToFlush.isEmpty() && bitsToFlush.isEmpty()) {
+            return;
+        }
+        RedisBatch batch = redisUtils.batch();
+        elementsToFlush.forEach((key, values) -> {
+            for (List<String> chunk : partition(new ArrayList<>(values))) {
+                batch.pfadd(key, chunk.toArray(new String[0]));
+            }
+        });
+        bitsToFlush.forEach((key, offsets) -> {
+            for (List<Long> chunk : partition(new ArrayList<>(offsets))) {
+                String[] arguments = new String[chunk.size() * 4];
+                for (int i = 0; i < chunk.size(); i++) {
+                    arguments[i * 4] = "SET";
+                    arguments[i * 4 + 1] = "u1";
+                    arguments[i * 4 + 2] = String.valueOf(chunk.get(i));
+                    arguments[i * 4 + 3] = "1";
+                }
+                batch.bitField(key, arguments);
+            }
+        });
+        batch.execute();
+
+    }
+
+    /**
+     * 写入剩余的数据并停止后台线程
+     */
+    @Override
+    public void close() {
+
+        flusher.shutdownNow();
+        flushQuietly();
+
+    }
+
+    private void onAdded() {
+
+        if (pending.incrementAndGet() >= maxPending && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flushQuietly();
+                });
+            } catch (RuntimeException e) {
+                //已经关闭
+                flushScheduled.set(false);
+            }
+        }
+
+    }
+
+    private void flushQuietly() {
+
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("flush redis activity buffer failed, the pending data is dropped", e);
+        }
+
+    }
+
+    private static <T> List<List<T>> partition(List<T> values) {
+
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += MAX_ARGUMENTS) {
+            chunks.add(values.subList(from, Math.min(from + MAX_ARGUMENTS, values.size())));
+        }
+        return chunks;
+
+    }
+}
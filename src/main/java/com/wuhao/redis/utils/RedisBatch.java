@@ -0,0 +1,86 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.codec.CompressionCodec;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 09:30
+ * @Description: redis批量操作。先把命令排队，execute()时按chunkSize分段通过pipeline一次性发送，
+ * 每个命令的结果通过返回的CompletableFuture获取。集群模式下命令按节点分组，多个节点并行发送。
+ * 非线程安全，一个batch只应在一个线程内使用。
+ * @Version: 1.0
+ **/
+public final class RedisBatch extends PipelineOperations {
+
+    private final RedisUtils redisUtils;
+
+    private final List<Command<?>> commands = new ArrayList<>();
+
+    /**
+     * 每个pipeline最多发送的命令数，避免一次性把过多的命令和结果堆积在客户端和服务端的缓冲区里
+     */
+    private int chunkSize;
+
+    RedisBatch(RedisUtils redisUtils, int chunkSize) {
+        this.redisUtils = redisUtils;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 设置每个pipeline最多发送的命令数
+     */
+    public RedisBatch chunkSize(int chunkSize) {
+
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+
+    }
+
+    /**
+     * 已排队还未执行的命令数
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * 执行所有排队的命令，执行完后清空队列，batch可以继续复用
+     */
+    public void execute() {
+
+        if (commands.isEmpty()) {
+            return;
+        }
+        List<Command<?>> pending = new ArrayList<>(commands);
+        commands.clear();
+        redisUtils.sendPipelined(pending, chunkSize);
+
+    }
+
+    @Override
+    <T> CompletableFuture<T> add(String key, boolean readOnly, Function<Pipeline, Response<T>> action, Collection<String> writtenKeys) {
+
+        Command<T> command = new Command<>(key, readOnly, action, writtenKeys);
+        commands.add(command);
+        return command.future;
+
+    }
+
+    @Override
+    CompressionCodec<String> valueCodec() {
+        return redisUtils.getValueCodec();
+    }
+}
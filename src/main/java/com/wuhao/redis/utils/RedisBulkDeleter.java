@@ -0,0 +1,252 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.script.LuaScript;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 20:00
+ * @Description: 批量删除。key被分成多段，每段用一条变长参数的UNLINK删除(redis在后台线程释放内存，大key也不会阻塞)，
+ * 每个pipeline最多发送pipelineChunks段，可以用多个连接并行删除
+ * @Version: 1.0
+ **/
+final class RedisBulkDeleter {
+
+    /**
+     * 优先使用UNLINK，redis 4.0以下不支持时退回到DEL。jedis 2.9没有unlink方法，所以通过脚本发送。
+     * jedis的pipeline按字符串解析EVALSHA的结果，所以删除的个数以字符串返回
+     */
+    static final LuaScript UNLINK_SCRIPT = new LuaScript("redisUtils.unlink",
+            "local ok, n = pcall(redis.call, 'unlink', unpack(KEYS)) if not ok then n = redis.call('del', unpack(KEYS)) end "
+                    + "return tostring(n)");
+
+    private final RedisUtils redisUtils;
+
+    /**
+     * 按段提供要删除的key，多个线程共用，访问时需要同步
+     */
+    private final Iterator<List<String>> source;
+
+    /**
+     * 一个pipeline最多发送的段数
+     */
+    private final int pipelineChunks;
+
+    private final LongConsumer progress;
+
+    private final AtomicLong deleted = new AtomicLong();
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    /**
+     * @param source         按段提供要删除的key
+     * @param pipelineChunks 一个pipeline最多发送的段数
+     * @param progress       每个pipeline执行完后回调目前已删除的总数，可以为null
+     */
+    RedisBulkDeleter(RedisUtils redisUtils, Iterator<List<String>> source, int pipelineChunks, LongConsumer progress) {
+        this.redisUtils = redisUtils;
+        this.source = source;
+        this.pipelineChunks = Math.max(1, pipelineChunks);
+        this.progress = progress;
+    }
+
+    /**
+     * 执行删除，parallelism大于1时另外启动parallelism-1个线程，与调用线程一起各自占用一个连接删除
+     *
+     * @return 实际删除的key数
+     */
+    long run(int parallelism) {
+
+        List<Thread> helpers = new ArrayList<>();
+        for (int i = 1; i < parallelism; i++) {
+            Thread thread = new Thread(this::work, "redis-bulk-delete-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            helpers.add(thread);
+        }
+        work();
+        boolean interrupted = false;
+        for (Thread helper : helpers) {
+            while (helper.isAlive()) {
+                try {
+                    helper.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        RuntimeException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+        return deleted.get();
+
+    }
+
+    private void work() {
+
+        try {
+            List<List<String>> chunks;
+            while (failure.get() == null && !(chunks = nextChunks()).isEmpty()) {
+                long count = unlink(chunks);
+                long total = deleted.addAndGet(count);
+                if (progress != null) {
+                    progress.accept(total);
+                }
+            }
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+
+    }
+
+    private List<List<String>> nextChunks() {
+
+        List<List<String>> chunks = new ArrayList<>(pipelineChunks);
+        synchronized (source) {
+            while (chunks.size() < pipelineChunks && source.hasNext()) {
+                List<String> chunk = source.next();
+                if (!chunk.isEmpty()) {
+                    chunks.add(chunk);
+                }
+            }
+        }
+        return chunks;
+
+    }
+
+    private long unlink(List<List<String>> chunks) {
+
+        //集群模式下一条UNLINK只能包含同一个slot的key，按slot拆开后再按节点分组，多个节点并行删除
+        Map<Pool<Jedis>, List<List<String>>> groups = new LinkedHashMap<>();
+        for (List<String> chunk : chunks) {
+            for (List<String> keys : redisUtils.splitByShard(chunk)) {
+                groups.computeIfAbsent(redisUtils.route(keys.get(0)), pool -> new ArrayList<>()).add(keys);
+            }
+        }
+        AtomicLong count = new AtomicLong();
+        try {
+            redisUtils.forEachNode(groups, (pool, group) -> count.addAndGet(unlink(pool, group)));
+            return count.get();
+        } finally {
+            for (List<String> chunk : chunks) {
+                redisUtils.invalidateNearCache(chunk);
+            }
+        }
+
+    }
+
+    private long unlink(Pool<Jedis> pool, List<List<String>> chunks) {
+
+        return redisUtils.execute(pool, "unlink", null, jedis -> {
+            List<List<String>> missing = new ArrayList<>();
+            long count = send(jedis, chunks, missing);
+            if (!missing.isEmpty()) {
+                //redis重启或SCRIPT FLUSH后脚本不存在，加载后只重发没有执行的段。
+                //其它线程可能在这个pipeline发送期间加载了脚本，后面的段已经执行过了，不能整体重发
+                jedis.scriptLoad(UNLINK_SCRIPT.getText());
+                count += send(jedis, missing, null);
+            }
+            return count;
+        });
+
+    }
+
+    /**
+     * @param missing 收集因为脚本不存在而没有执行的段，为null时直接抛出异常
+     */
+    private static long send(Jedis jedis, List<List<String>> chunks, List<List<String>> missing) {
+
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<String>> responses = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            responses.add(pipeline.evalsha(UNLINK_SCRIPT.getSha1(), chunk, Collections.<String>emptyList()));
+        }
+        pipeline.sync();
+        long count = 0;
+        for (int i = 0; i < responses.size(); i++) {
+            try {
+                count += Long.parseLong(responses.get(i).get());
+            } catch (JedisDataException e) {
+                if (missing == null || e.getMessage() == null || !e.getMessage().startsWith("NOSCRIPT")) {
+                    throw e;
+                }
+                missing.add(chunks.get(i));
+            }
+        }
+        return count;
+
+    }
+
+    /**
+     * 把key的集合按size分段
+     */
+    static Iterator<List<String>> partition(List<String> keys, int size) {
+
+        return new Iterator<List<String>>() {
+
+            private int from;
+
+            @Override
+            public boolean hasNext() {
+                return from < keys.size();
+            }
+
+            @Override
+            public List<String> next() {
+
+                int to = Math.min(from + size, keys.size());
+                List<String> chunk = keys.subList(from, to);
+                from = to;
+                return chunk;
+
+            }
+        };
+
+    }
+
+    /**
+     * 把scan的结果按size分段，一页的key可能被分到多段中
+     */
+    static Iterator<List<String>> partition(ScanIterator<String> keys, int size) {
+
+        return new Iterator<List<String>>() {
+
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public List<String> next() {
+
+                List<String> chunk = new ArrayList<>(size);
+                while (chunk.size() < size && keys.hasNext()) {
+                    chunk.add(keys.next());
+                }
+                return chunk;
+
+            }
+        };
+
+    }
+}
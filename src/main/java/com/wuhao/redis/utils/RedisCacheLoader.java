@@ -0,0 +1,287 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.codec.Codecs;
+import com.wuhao.redis.codec.RedisCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.util.SafeEncoder;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-17 10:00
+ * @Description: RedisUtils.getOrLoad的实现，防止热点key过期时大量请求同时回源(缓存击穿)：
+ * 1. 同一个JVM内同一个key同一时刻只有一个线程执行加载，其它线程等待它的结果；
+ * 2. 开启分布式锁后，多个实例之间通过RedisUtils.lock互斥，没有拿到锁的实例等待缓存写入；
+ * 3. 按XFetch算法在过期前提前刷新：剩余时间越短、加载越慢，越可能被某个请求提前重新加载，其它请求继续使用旧值；
+ * 4. 写入时给过期时间加随机抖动，避免同时写入的一批key同时过期
+ * @Version: 1.0
+ **/
+final class RedisCacheLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCacheLoader.class);
+
+    /**
+     * 最多记录多少个key的加载耗时
+     */
+    private static final int MAX_TRACKED_KEYS = 10000;
+
+    /**
+     * 分布式锁的key为：key + 后缀
+     */
+    private static final String LOCK_SUFFIX = ":loading";
+
+    /**
+     * 没有拿到分布式锁时，检查缓存是否已写入的间隔，单位毫秒
+     */
+    private static final long LOCK_POLL_MILLIS = 20;
+
+    private final RedisUtils redisUtils;
+
+    /**
+     * 缓存未命中、正在加载的key，值为加载结果(编码后的字节)
+     */
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 正在提前刷新的key。刷新在其它实例正在加载时会放弃并得到null，不能让未命中的请求等待它的结果，所以和loading分开
+     */
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> refreshing = new ConcurrentHashMap<>();
+
+    /**
+     * 每个key最近一次加载的耗时，单位毫秒，用于计算提前刷新的概率。只记录本实例加载过的key
+     */
+    private final LocalLruCache<String, Long> loadMillis = new LocalLruCache<>(MAX_TRACKED_KEYS, 0);
+
+    /**
+     * 提前刷新的激进程度，越大越早刷新，0表示不提前刷新
+     */
+    private volatile double earlyRefreshBeta = 1.0;
+
+    /**
+     * 过期时间的随机抖动比例，实际过期时间在ttl * (1 - ttlJitter)到ttl之间
+     */
+    private volatile double ttlJitter = 0.1;
+
+    /**
+     * 等待其它实例加载的最长时间，单位毫秒，0表示不使用分布式锁
+     */
+    private volatile long lockWaitMillis;
+
+    RedisCacheLoader(RedisUtils redisUtils) {
+        this.redisUtils = redisUtils;
+    }
+
+    void setOptions(double earlyRefreshBeta, double ttlJitter, long lockWaitMillis) {
+
+        if (earlyRefreshBeta < 0 || ttlJitter < 0 || ttlJitter >= 1 || lockWaitMillis < 0) {
+            throw new IllegalArgumentException("earlyRefreshBeta and lockWaitMillis must not be negative, ttlJitter must be in [0, 1)");
+        }
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.ttlJitter = ttlJitter;
+        this.lockWaitMillis = lockWaitMillis;
+
+    }
+
+    <T> T getOrLoad(String key, int ttlSeconds, RedisCodec<T> codec, Supplier<T> loader) {
+        //从节点可能还没有复制到其它实例刚写入的值，读不到时会重复加载，所以都从主节点读
+        return redisUtils.readFromMaster(() -> doGetOrLoad(key, ttlSeconds, codec, loader));
+    }
+
+    private <T> T doGetOrLoad(String key, int ttlSeconds, RedisCodec<T> codec, Supplier<T> loader) {
+
+        Long delta = earlyRefreshBeta > 0 ? loadMillis.get(key) : null;
+        if (delta == null) {
+            byte[] cached = redisUtils.get(key, Codecs.BYTES);
+            return decode(cached != null ? cached : load(key, ttlSeconds, codec, loader, false), codec);
+        }
+        //本实例加载过这个key，知道加载耗时，顺便取剩余时间判断是否需要提前刷新
+        Cached cached = getWithPttl(key);
+        if (cached.value == null) {
+            return decode(load(key, ttlSeconds, codec, loader, false), codec);
+        }
+        if (!shouldRefresh(delta, cached.pttl) || loading.containsKey(key) || refreshing.containsKey(key)) {
+            return decode(cached.value, codec);
+        }
+        try {
+            byte[] fresh = load(key, ttlSeconds, codec, loader, true);
+            return decode(fresh != null ? fresh : cached.value, codec);
+        } catch (RuntimeException e) {
+            //提前刷新失败时旧值仍然有效
+            log.warn("refresh {} ahead of expiry failed, keep the cached value", key, e);
+            return decode(cached.value, codec);
+        }
+
+    }
+
+    /**
+     * XFetch：-delta * beta * ln(random) >= 剩余时间时刷新
+     */
+    private boolean shouldRefresh(long deltaMillis, long pttl) {
+
+        if (pttl < 0) {
+            //没有过期时间
+            return false;
+        }
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        return -deltaMillis * earlyRefreshBeta * Math.log(random) >= pttl;
+
+    }
+
+    /**
+     * 同一个key只有一个线程执行加载，未命中时的加载和提前刷新分别计算
+     *
+     * @param refresh 是否是提前刷新，提前刷新时如果其它线程或实例正在加载，直接返回null表示继续使用旧值
+     * @return 编码后的值，加载结果为null时返回null
+     */
+    private <T> byte[] load(String key, int ttlSeconds, RedisCodec<T> codec, Supplier<T> loader, boolean refresh) {
+
+        ConcurrentMap<String, CompletableFuture<byte[]>> inFlight = refresh ? refreshing : loading;
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return refresh ? null : join(existing);
+        }
+        try {
+            byte[] value = lockWaitMillis > 0 ? loadWithLock(key, ttlSeconds, codec, loader, refresh) : loadAndStore(key, ttlSeconds, codec, loader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+
+    }
+
+    /**
+     * 多个实例通过分布式锁互斥加载，没有拿到锁的实例等待缓存写入，等待超过lockWaitMillis后自己加载
+     */
+    private <T> byte[] loadWithLock(String key, int ttlSeconds, RedisCodec<T> codec, Supplier<T> loader, boolean refresh) {
+
+        String lockKey = key + LOCK_SUFFIX;
+        String owner = UUID.randomUUID().toString();
+        //等待的实例最多等lockWaitMillis，锁的时间再长也没有意义
+        long leaseSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(lockWaitMillis + 999));
+        long deadline = System.currentTimeMillis() + lockWaitMillis;
+        while (true) {
+            if (redisUtils.lock(lockKey, owner, leaseSeconds)) {
+                try {
+                    //拿到锁之前其它实例可能刚加载完
+                    byte[] cached = refresh ? null : redisUtils.get(key, Codecs.BYTES);
+                    return cached != null ? cached : loadAndStore(key, ttlSeconds, codec, loader);
+                } finally {
+                    redisUtils.releaseLock(lockKey, owner);
+                }
+            }
+            if (refresh) {
+                return null;
+            }
+            try {
+                Thread.sleep(LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            byte[] cached = redisUtils.get(key, Codecs.BYTES);
+            if (cached != null) {
+                return cached;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                break;
+            }
+        }
+        return loadAndStore(key, ttlSeconds, codec, loader);
+
+    }
+
+    private <T> byte[] loadAndStore(String key, int ttlSeconds, RedisCodec<T> codec, Supplier<T> loader) {
+
+        long start = System.nanoTime();
+        T value = loader.get();
+        loadMillis.put(key, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = codec.encode(value);
+        if (ttlSeconds > 0) {
+            redisUtils.set(key, bytes, jitter(ttlSeconds), Codecs.BYTES);
+        } else {
+            redisUtils.set(key, bytes, Codecs.BYTES);
+        }
+        return bytes;
+
+    }
+
+    private int jitter(int ttlSeconds) {
+
+        int range = (int) (ttlSeconds * ttlJitter);
+        return range <= 0 ? ttlSeconds : ttlSeconds - ThreadLocalRandom.current().nextInt(range + 1);
+
+    }
+
+    /**
+     * 一次往返取出值和剩余时间(毫秒)
+     */
+    private Cached getWithPttl(String key) {
+
+        byte[] rawKey = SafeEncoder.encode(key);
+        return redisUtils.execute("get", key, jedis -> {
+            Pipeline pipeline = jedis.pipelined();
+            Response<byte[]> value = pipeline.get(rawKey);
+            Response<Long> pttl = pipeline.pttl(rawKey);
+            pipeline.sync();
+            return new Cached(value.get(), pttl.get());
+        });
+
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> future) {
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+
+    }
+
+    private static <T> T decode(byte[] bytes, RedisCodec<T> codec) {
+        return bytes == null ? null : codec.decode(bytes);
+    }
+
+    private static final class Cached {
+
+        final byte[] value;
+
+        /**
+         * 剩余时间，单位毫秒，没有过期时间时为-1
+         */
+        final long pttl;
+
+        Cached(byte[] value, long pttl) {
+            this.value = value;
+            this.pttl = pttl;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.wuhao.redis.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 11:20
+ * @Description: RedisUtils的近端缓存。按key前缀配置规则，命中规则的key通过get/hget/hgetAll读到的值会缓存在本地，
+ * 通过RedisUtils写这些key时删除本地缓存并往失效频道发布消息，其它实例收到后也删除自己的本地缓存
+ * @Version: 1.0
+ **/
+public final class RedisNearCache implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisNearCache.class);
+
+    /**
+     * 缓存redis中不存在的值时使用的占位符
+     */
+    private static final String NULL_VALUE = new String("");
+
+    /**
+     * 失效消息格式为：实例id + 分隔符 + key，用于忽略自己发出的消息
+     */
+    private static final char MESSAGE_SEPARATOR = '|';
+
+    private final RedisUtils redisUtils;
+
+    private final String channel;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * 按前缀长度降序排列，添加规则时整体替换
+     */
+    private volatile List<Rule> rules = Collections.emptyList();
+
+    /**
+     * 每次失效都会加1，读redis前后该值不一致说明期间可能有写入，读到的值不能放进缓存
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    private RedisSubscriber subscriber;
+
+    public RedisNearCache(RedisUtils redisUtils, String channel) {
+        this.redisUtils = redisUtils;
+        this.channel = channel;
+    }
+
+    /**
+     * 添加一条缓存规则，key以prefix开头的才会被缓存，多条规则都匹配时使用前缀最长的
+     *
+     * @param prefix     key前缀
+     * @param maxSize    最多缓存的key个数
+     * @param ttlSeconds 本地缓存的存活时间，单位秒，作为丢失失效消息时的兜底
+     */
+    public synchronized RedisNearCache addRule(String prefix, int maxSize, long ttlSeconds) {
+
+        List<Rule> newRules = new ArrayList<>(rules);
+        newRules.add(new Rule(prefix, new LocalLruCache<>(maxSize, ttlSeconds * 1000)));
+        newRules.sort((a, b) -> b.prefix.length() - a.prefix.length());
+        rules = newRules;
+        return this;
+
+    }
+
+    /**
+     * 开始订阅失效频道
+     */
+    public synchronized void start() {
+
+        if (subscriber == null) {
+            //(重新)订阅成功前可能错过了失效消息，统一清空一次
+            subscriber = new RedisSubscriber(redisUtils, channel, this::onMessage, this::clear);
+            subscriber.start();
+        }
+
+    }
+
+    @Override
+    public synchronized void close() {
+
+        if (subscriber != null) {
+            subscriber.close();
+            subscriber = null;
+        }
+        clear();
+
+    }
+
+    /**
+     * 清空所有本地缓存
+     */
+    public void clear() {
+
+        sequence.incrementAndGet();
+        for (Rule rule : rules) {
+            rule.cache.clear();
+        }
+
+    }
+
+    public long getHitCount() {
+        return rules.stream().mapToLong(rule -> rule.cache.getHitCount()).sum();
+    }
+
+    public long getMissCount() {
+        return rules.stream().mapToLong(rule -> rule.cache.getMissCount()).sum();
+    }
+
+    /**
+     * 是否有规则匹配该key
+     */
+    public boolean matches(String key) {
+        return key != null && findCache(key) != null;
+    }
+
+    long sequence() {
+        return sequence.get();
+    }
+
+    /*########################  读  ################################*/
+
+    /**
+     * 查询本地缓存的string值，未缓存时返回null，缓存的是redis中不存在的值时返回NULL_VALUE
+     */
+    String getValue(String key) {
+
+        Entry entry = getEntry(key);
+        return entry == null ? null : entry.value;
+
+    }
+
+    String getField(String key, String field) {
+
+        Entry entry = getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        Map<String, String> all = entry.all;
+        if (all != null) {
+            String value = all.get(field);
+            return value == null ? NULL_VALUE : value;
+        }
+        return entry.fields.get(field);
+
+    }
+
+    Map<String, String> getAll(String key) {
+
+        Entry entry = getEntry(key);
+        return entry == null ? null : entry.all;
+
+    }
+
+    static boolean isNull(String value) {
+        return value == NULL_VALUE;
+    }
+
+    /*########################  回填  ################################*/
+
+    void putValue(String key, String value, long expectSequence) {
+        fill(key, expectSequence, entry -> entry.value = value == null ? NULL_VALUE : value);
+    }
+
+    void putField(String key, String field, String value, long expectSequence) {
+        fill(key, expectSequence, entry -> entry.fields.put(field, value == null ? NULL_VALUE : value));
+    }
+
+    void putAll(String key, Map<String, String> all, long expectSequence) {
+        fill(key, expectSequence, entry -> entry.all = Collections.unmodifiableMap(new HashMap<>(all)));
+    }
+
+    /*########################  失效  ################################*/
+
+    /**
+     * 删除本地缓存，并通知其它实例删除
+     */
+    void invalidate(String... keys) {
+        invalidate(Arrays.asList(keys));
+    }
+
+    void invalidate(Collection<String> keys) {
+
+        List<String> matched = new ArrayList<>();
+        for (String key : keys) {
+            if (key != null) {
+                LocalLruCache<String, Entry> cache = findCache(key);
+                if (cache != null) {
+                    sequence.incrementAndGet();
+                    cache.remove(key);
+                    matched.add(key);
+                }
+            }
+        }
+        if (matched.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = redisUtils.getJedis()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (String key : matched) {
+                pipeline.publish(channel, instanceId + MESSAGE_SEPARATOR + key);
+            }
+            pipeline.sync();
+        } catch (RuntimeException e) {
+            //发布失败时其它实例只能等本地缓存过期
+            log.warn("publish near cache invalidation of {} keys failed", matched.size(), e);
+        }
+
+    }
+
+    private void onMessage(String message) {
+
+        int index = message.indexOf(MESSAGE_SEPARATOR);
+        if (index < 0 || index == instanceId.length() && message.startsWith(instanceId)) {
+            return;
+        }
+        String key = message.substring(index + 1);
+        LocalLruCache<String, Entry> cache = findCache(key);
+        if (cache != null) {
+            sequence.incrementAndGet();
+            cache.remove(key);
+        }
+
+    }
+
+    private Entry getEntry(String key) {
+
+        LocalLruCache<String, Entry> cache = findCache(key);
+        return cache == null ? null : cache.get(key);
+
+    }
+
+    private void fill(String key, long expectSequence, Consumer<Entry> action) {
+
+        LocalLruCache<String, Entry> cache = findCache(key);
+        if (cache == null || sequence.get() != expectSequence) {
+            return;
+        }
+        action.accept(cache.putIfAbsent(key, new Entry()));
+        //回填的同时发生了失效，回填的值可能是旧的，丢弃
+        if (sequence.get() != expectSequence) {
+            cache.remove(key);
+        }
+
+    }
+
+    private LocalLruCache<String, Entry> findCache(String key) {
+
+        for (Rule rule : rules) {
+            if (key.startsWith(rule.prefix)) {
+                return rule.cache;
+            }
+        }
+        return null;
+
+    }
+
+    private static final class Rule {
+
+        private final String prefix;
+
+        private final LocalLruCache<String, Entry> cache;
+
+        Rule(String prefix, LocalLruCache<String, Entry> cache) {
+            this.prefix = prefix;
+            this.cache = cache;
+        }
+    }
+
+    /**
+     * 一个redis key在本地缓存的内容
+     */
+    private static final class Entry {
+
+        /**
+         * get读到的值
+         */
+        private volatile String value;
+
+        /**
+         * hget读到的值
+         */
+        private final Map<String, String> fields = new ConcurrentHashMap<>();
+
+        /**
+         * hgetAll读到的值
+         */
+        private volatile Map<String, String> all;
+    }
+}
@@ -0,0 +1,264 @@
+package com.wuhao.redis.utils;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 10:40
+ * @Description: 单key读请求合并器。并发的get/hget先进入队列，由分发线程在一个很短的时间窗口内攒成一批，
+ * 在一个连接上用MGET + pipeline一次发送，再把结果分发回各个调用线程，从而减少连接池的争用
+ * @Version: 1.0
+ **/
+final class RedisReadCoalescer implements Closeable {
+
+    private final RedisUtils redisUtils;
+
+    /**
+     * 收到第一个请求后最多再等待多久来攒批，单位纳秒
+     */
+    private final long windowNanos;
+
+    /**
+     * 一批最多合并的请求数
+     */
+    private final int maxBatchSize;
+
+    /**
+     * 调用线程最多等待多久，单位纳秒，避免分发线程异常时调用线程一直阻塞
+     */
+    private final long waitNanos;
+
+    private final BlockingQueue<Read> queue = new LinkedBlockingQueue<>();
+
+    private final List<Thread> dispatchers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    /**
+     * @param timeoutMillis 调用线程最多等待的时间(不含攒批的时间窗口)，通常取socket超时时间
+     */
+    RedisReadCoalescer(RedisUtils redisUtils, long windowMicros, int maxBatchSize, int threads, long timeoutMillis) {
+
+        if (maxBatchSize <= 0 || threads <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("maxBatchSize, threads and timeoutMillis must be positive");
+        }
+        this.redisUtils = redisUtils;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(windowMicros, 0));
+        this.maxBatchSize = maxBatchSize;
+        this.waitNanos = windowNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::dispatch, "redis-read-coalescer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            dispatchers.add(thread);
+        }
+
+    }
+
+    String get(String key) {
+        return submit(new Read(key, null));
+    }
+
+    String hget(String key, String field) {
+        return submit(new Read(key, field));
+    }
+
+    /**
+     * 停止分发线程，等它们处理完手上的一批后，让还在排队的请求以异常结束
+     */
+    @Override
+    public void close() {
+
+        running = false;
+        for (Thread thread : dispatchers) {
+            thread.interrupt();
+        }
+        boolean interrupted = false;
+        for (Thread thread : dispatchers) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Read read;
+        while ((read = queue.poll()) != null) {
+            read.future.completeExceptionally(new RejectedExecutionException("redis read coalescer is closed"));
+        }
+
+    }
+
+    private String submit(Read read) {
+
+        if (!running) {
+            throw new RejectedExecutionException("redis read coalescer is closed");
+        }
+        queue.add(read);
+        //close()可能在上面的检查之后已经清空了队列，此时要自己把请求取出来，否则没有线程会处理它
+        if (!running && queue.removeIf(r -> r == read)) {
+            throw new RejectedExecutionException("redis read coalescer is closed");
+        }
+        try {
+            return read.future.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            queue.removeIf(r -> r == read);
+            Thread.currentThread().interrupt();
+            throw new JedisException(e);
+        } catch (TimeoutException e) {
+            queue.removeIf(r -> r == read);
+            throw new JedisConnectionException("coalesced read of " + read.key + " timed out");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new JedisException(cause);
+        }
+
+    }
+
+    private void dispatch() {
+
+        List<Read> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    Read next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    for (Read read : batch) {
+                        read.future.completeExceptionally(new RejectedExecutionException("redis read coalescer is closed"));
+                    }
+                    return;
+                }
+            }
+            try {
+                flush(batch);
+            } catch (RuntimeException e) {
+                //拆分、建立pipeline等失败时让这一批请求以异常结束，分发线程继续工作。已经完成的请求不受影响
+                for (Read read : batch) {
+                    read.future.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+
+    }
+
+    private void flush(List<Read> batch) {
+
+        //相同的key/field只查一次，string类型的key合并成一条MGET
+        Map<String, List<Read>> gets = new LinkedHashMap<>();
+        Map<Read, List<Read>> hgets = new LinkedHashMap<>();
+        for (Read read : batch) {
+            if (read.field == null) {
+                gets.computeIfAbsent(read.key, k -> new ArrayList<>()).add(read);
+            } else {
+                hgets.computeIfAbsent(read, k -> new ArrayList<>()).add(read);
+            }
+        }
+        //集群模式下MGET只能包含同一个slot的key，按分片拆成多条
+        RedisBatch pipeline = redisUtils.batch();
+        List<List<String>> shards = gets.isEmpty() ? Collections.emptyList() : redisUtils.splitByShard(gets.keySet());
+        List<CompletableFuture<List<String>>> values = new ArrayList<>(shards.size());
+        for (List<String> keys : shards) {
+            values.add(pipeline.mGet(keys.toArray(new String[0])));
+        }
+        Map<Read, CompletableFuture<String>> fieldValues = new LinkedHashMap<>();
+        for (Read read : hgets.keySet()) {
+            fieldValues.put(read, pipeline.hget(read.key, read.field));
+        }
+        try {
+            pipeline.execute();
+        } catch (RuntimeException e) {
+            //没有结果的命令已经以异常结束，下面统一转给等待的请求
+        }
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<String> keys = shards.get(shard);
+            values.get(shard).whenComplete((result, error) -> {
+                for (int i = 0; i < keys.size(); i++) {
+                    List<Read> reads = gets.get(keys.get(i));
+                    if (error != null) {
+                        reads.forEach(read -> read.future.completeExceptionally(error));
+                    } else {
+                        String value = result.get(i);
+                        reads.forEach(read -> read.future.complete(value));
+                    }
+                }
+            });
+        }
+        fieldValues.forEach((read, future) -> future.whenComplete((value, error) -> {
+            List<Read> reads = hgets.get(read);
+            if (error != null) {
+                reads.forEach(r -> r.future.completeExceptionally(error));
+            } else {
+                reads.forEach(r -> r.future.complete(value));
+            }
+        }));
+
+    }
+
+    /**
+     * 一个待合并的读请求，field为null表示get，否则表示hget
+     */
+    private static final class Read {
+
+        private final String key;
+
+        private final String field;
+
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        Read(String key, String field) {
+            this.key = key;
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Read)) {
+                return false;
+            }
+            Read read = (Read) o;
+            return key.equals(read.key) && Objects.equals(field, read.field);
+
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, field);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.wuhao.redis.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 11:20
+ * @Description: 在一个独立的连接(不占用连接池)上订阅某个频道，连接断开后自动重连
+ * @Version: 1.0
+ **/
+public final class RedisSubscriber implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisSubscriber.class);
+
+    /**
+     * 连接断开后多久重连，单位毫秒
+     */
+    private static final long RECONNECT_INTERVAL = 1000L;
+
+    private final RedisUtils redisUtils;
+
+    private final String channel;
+
+    private final Consumer<String> onMessage;
+
+    private final Runnable onSubscribe;
+
+    private final JedisPubSub pubSub = new JedisPubSub() {
+        @Override
+        public void onMessage(String channel, String message) {
+
+            try {
+                onMessage.accept(message);
+            } catch (RuntimeException e) {
+                log.warn("handle redis message of channel {} failed", channel, e);
+            }
+
+        }
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+
+            if (onSubscribe != null) {
+                onSubscribe.run();
+            }
+
+        }
+    };
+
+    private volatile boolean running;
+
+    private volatile Jedis jedis;
+
+    private Thread thread;
+
+    /**
+     * @param redisUtils  用于创建独立连接
+     * @param channel     订阅的频道
+     * @param onMessage   收到消息时的回调
+     * @param onSubscribe 每次(重新)订阅成功时的回调，断线期间可能丢失消息，可以在这里做补偿，可为null
+     */
+    public RedisSubscriber(RedisUtils redisUtils, String channel, Consumer<String> onMessage, Runnable onSubscribe) {
+        this.redisUtils = redisUtils;
+        this.channel = channel;
+        this.onMessage = onMessage;
+        this.onSubscribe = onSubscribe;
+    }
+
+    public synchronized void start() {
+
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::subscribe, "redis-subscriber-" + channel);
+        thread.setDaemon(true);
+        thread.start();
+
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public synchronized void close() {
+
+        running = false;
+        if (pubSub.isSubscribed()) {
+            try {
+                pubSub.unsubscribe();
+            } catch (RuntimeException e) {
+                log.debug("unsubscribe channel {} failed", channel, e);
+            }
+        }
+        Jedis current = jedis;
+        if (current != null) {
+            current.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+
+    }
+
+    private void subscribe() {
+
+        while (running) {
+            try (Jedis connection = redisUtils.newDedicatedJedis()) {
+                jedis = connection;
+                if (!running) {
+                    return;
+                }
+                connection.subscribe(pubSub, channel);
+            } catch (RuntimeException e) {
+                if (running) {
+                    log.warn("subscribe redis channel {} failed, retry in {}ms", channel, RECONNECT_INTERVAL, e);
+                }
+            } finally {
+                jedis = null;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+    }
+}
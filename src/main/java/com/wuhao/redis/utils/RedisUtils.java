@@ -1,13 +1,51 @@
 package com.wuhao.redis.utils;
 
 
+import com.wuhao.redis.codec.Codecs;
+import com.wuhao.redis.codec.CompressionCodec;
+import com.wuhao.redis.codec.RedisCodec;
+import com.wuhao.redis.metrics.RedisCommandListener;
+import com.wuhao.redis.route.RedisRouter;
+import com.wuhao.redis.route.SingleNodeRouter;
+import com.wuhao.redis.script.LuaScript;
+import com.wuhao.redis.script.ScriptRegistry;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.BitOP;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 import redis.clients.jedis.Tuple;
-
+import redis.clients.jedis.exceptions.JedisAskDataException;
+import redis.clients.jedis.exceptions.JedisClusterMaxRedirectionsException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.util.Pool;
+import redis.clients.util.SafeEncoder;
+
+import java.io.Closeable;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 
 /**
  * Copyright 2022 skyworth
@@ -17,15 +55,134 @@ import java.util.*;
  * @Description: redis工具类
  * @Version: 1.0
  **/
-public final class RedisUtils {
+public final class RedisUtils implements Closeable {
 
     /*
     除了该工具类提供的方法外，还可以在外面调用getJedis()方法，获取到jedis实例后，调用它原生的api来操作
      */
-    private final JedisPool jedisPool;
+    private final RedisRouter router;
+
+    /**
+     * 批量操作时每个pipeline最多发送的命令数
+     */
+    private int batchChunkSize = 1000;
+
+    /**
+     * 批量删除时一条UNLINK最多删除的key数
+     */
+    private int deleteChunkSize = 500;
+
+    /**
+     * 异步操作的工作线程数
+     */
+    private int asyncThreads = 4;
+
+    /**
+     * 异步操作排队的最大命令数
+     */
+    private int asyncQueueCapacity = 10000;
+
+    /**
+     * 异步操作，第一次调用async()时创建
+     */
+    private volatile AsyncRedisUtils async;
+
+    /**
+     * 读请求合并器，为null表示未开启合并
+     */
+    private volatile RedisReadCoalescer readCoalescer;
+
+    /**
+     * 近端缓存，为null表示未开启
+     */
+    private volatile RedisNearCache nearCache;
+
+    /**
+     * String类型的值的压缩编解码器，为null表示未开启压缩
+     */
+    private volatile CompressionCodec<String> valueCodec;
+
+    /**
+     * getOrLoad的实现
+     */
+    private final RedisCacheLoader cacheLoader = new RedisCacheLoader(this);
+
+    /**
+     * 集群模式下并行地向多个节点发送pipeline，第一次需要时创建
+     */
+    private volatile ExecutorService fanOutExecutor;
+
+    /**
+     * 命令执行的监听器，为null表示不统计
+     */
+    private volatile RedisCommandListener commandListener;
+
+    /**
+     * 单节点时用于创建非默认库的连接池，集群等模式下为null
+     */
+    private final String host;
+
+    private final int port;
+
+    private final int timeout;
+
+    private final String password;
+
+    private final int database;
+
+    private final GenericObjectPoolConfig poolConfig;
+
+    /**
+     * 非默认库的连接池，key为库号，第一次使用该库时创建
+     */
+    private final ConcurrentMap<Integer, JedisPool> databasePools = new ConcurrentHashMap<>();
+
+    /**
+     * 非默认库连接池的最大连接数，key为库号
+     */
+    private final Map<Integer, Integer> databasePoolMaxTotal = new ConcurrentHashMap<>();
+
+    private static final Logger log = LoggerFactory.getLogger(RedisUtils.class);
 
     static final Long OPERATE_SUCCESS = 1L;
 
+    /**
+     * 多key命令跨节点时复制出的临时key的过期时间，单位毫秒，正常情况下执行完就会删除
+     */
+    private static final long TEMP_KEY_MILLIS = 60000L;
+
+    /**
+     * 生成与某个key在同一节点上的临时key的最大尝试次数
+     */
+    private static final int MAX_TEMP_KEY_ATTEMPTS = 1000;
+
+    /**
+     * scan系列方法默认每页的大小
+     */
+    public static final int DEFAULT_SCAN_COUNT = 100;
+
+    /**
+     * 一条UNLINK最多删除的key数，受lua中unpack的参数个数限制
+     */
+    static final int MAX_DELETE_CHUNK_SIZE = 5000;
+
+    /**
+     * 集群模式下一个命令最多跟随的MOVED、ASK重定向次数
+     */
+    static final int MAX_REDIRECTIONS = 5;
+
+    /**
+     * 只读命令，配置了从节点时可以发往从节点
+     */
+    static final Set<String> READ_COMMANDS = new HashSet<>(Arrays.asList(
+            "exists", "ttl", "type", "get", "mget", "strlen",
+            "lrange", "lindex", "llen",
+            "hget", "hmget", "hgetall", "hexists", "hkeys", "hvals",
+            "smembers", "sismember", "scard", "srandmember", "sinter", "sunion", "sdiff",
+            "zrange", "zrevrange", "zcard", "zcount", "zrank", "zrevrank", "zrangebyscore", "zrevrangebyscore", "zscore",
+            "getbit", "bitcount", "pfcount",
+            "scan", "hscan", "sscan", "zscan"));
+
     /**
      * 定义获取锁的lua脚本
      */
@@ -36,979 +193,2629 @@ public final class RedisUtils {
      */
     static final String UNLOCK_LUA_SCRIPT = "if redis.call('get',KEYS[1]) == ARGV[1] then return redis.call('del',KEYS[1]) else return -1 end";
 
+    static final LuaScript LOCK_SCRIPT = new LuaScript("redisUtils.lock", LOCK_LUA_SCRIPT);
+
+    static final LuaScript UNLOCK_SCRIPT = new LuaScript("redisUtils.unlock", UNLOCK_LUA_SCRIPT);
+
+    /**
+     * 当前线程在readFromMaster中的嵌套层数，大于0时只读命令也发往主节点
+     */
+    private static final ThreadLocal<int[]> MASTER_READS = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final ScriptRegistry scriptRegistry = new ScriptRegistry();
+
     /**
-     * 获取jedis对象，并选择redis库。jedis默认是0号库，可传入1-16之间的数选择库存放数据
+     * 获取jedis对象，并选择redis库。jedis默认是0号库，可传入0-16之间的数选择库存放数据
      * 原则上使用一个redis库存放数据，通过特定的key的命令规则来区分不同的数据就行了。
+     * 非默认库的连接来自该库单独的连接池，不会对共用的连接执行select，也不会影响下一个使用该连接的调用方。
+     * 集群模式下返回任意一个主节点的连接，只能用于不涉及key的命令；使用路由(集群、哨兵、主从、分片)时只能取得构造时配置的库
      *
      * @param index redis库号。使用可变参数的目的就是该参数可传可不传。
      * @return 返回jedis对象
      */
     public Jedis getJedis(int... index) {
 
-        Jedis jedis = jedisPool.getResource();
+        Pool<Jedis> pool = router.route(null, false);
         if (index != null && index.length > 0) {
-            if (index[0] > 0 && index[0] <= 16) {
-                jedis.select(index[0]);
+            if (index[0] >= 0 && index[0] <= 16 && index[0] != database) {
+                pool = getDatabasePool(index[0]);
             }
         }
-        return jedis;
+        return borrow(pool);
 
     }
 
-    /*########################  key的操作  ################################*/
-
-
     /**
-     * 删除一个或多个key
-     *
-     * @param key 一个或多个key
+     * 从连接池获取一个连接，获取不到时从fallback获取
      */
-    public Long del(String... key) {
+    private Jedis borrow(Pool<Jedis> pool, Pool<Jedis> fallback) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.del(key);
+        try {
+            return borrow(pool);
+        } catch (JedisConnectionException e) {
+            if (fallback == pool) {
+                throw e;
+            }
+            log.debug("borrow connection from replica failed, use master", e);
+            return borrow(fallback);
         }
 
     }
 
     /**
-     * 批量删除
-     *
-     * @param keyList 要删除的key的集合
+     * 从连接池获取一个连接，开启统计时记录等待的时间
      */
-    public void mDel(List<String> keyList) {
+    private Jedis borrow(Pool<Jedis> pool) {
 
-        Jedis jedis = getJedis();
-        //获取pipeline
-        Pipeline pipeline = jedis.pipelined();
-        for (String key : keyList) {
-            pipeline.del(key);
+        RedisCommandListener listener = commandListener;
+        if (listener == null) {
+            return pool.getResource();
+        }
+        long start = System.nanoTime();
+        try {
+            Jedis jedis = pool.getResource();
+            listener.onBorrow(System.nanoTime() - start, null);
+            return jedis;
+        } catch (RuntimeException e) {
+            listener.onBorrow(System.nanoTime() - start, e);
+            throw e;
         }
-        //执行结果同步，这样才能保证结果的正确性。实际上不执行该方法也执行了上面的命令，但是结果确不一定完全正确。
-        //注意
-        pipeline.sync();
-        //关闭连接
-        jedis.close();
 
     }
 
     /**
-     * 判断某个key是否还存在
+     * 从连接池获取一个连接执行操作，用完后归还。工具类中所有的单个命令都通过该方法执行，
+     * 开启统计时会记录命令的耗时和错误
      *
-     * @param key key
-     */
-    public Boolean exists(String key) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.exists(key);
+     * @param command 命令名，用于统计
+     * @param key     操作的key，决定命令发往哪个节点，也用于统计，可以为null
+     * @param action  要执行的操作
+     */
+    public <T> T execute(String command, String key, Function<Jedis, T> action) {
+
+        Pool<Jedis> master = router.route(key, false);
+        if (READ_COMMANDS.contains(command) && !isMasterRead()) {
+            Pool<Jedis> replica = router.route(key, true);
+            if (replica != master) {
+                try {
+                    return execute(replica, command, key, action);
+                } catch (JedisConnectionException e) {
+                    //从节点不可用时退回到主节点，只读命令重试是安全的
+                    log.debug("read {} from replica failed, retry on master", command, e);
+                }
+            }
         }
+        return execute(master, command, key, action);
 
     }
 
     /**
-     * 设置某个key的过期时间，单位秒
-     *
-     * @param key     key
-     * @param seconds 过期时间秒
+     * 在主节点上执行一段读操作，期间当前线程的只读命令都不会发往从节点，可以嵌套。
+     * 从节点有复制延迟，刚写入的值要立即读到、或者读到的值会被缓存下来时使用
      */
-    public void expire(String key, int seconds) {
+    public <T> T readFromMaster(Supplier<T> reads) {
 
-        try (Jedis jedis = getJedis()) {
-            jedis.expire(key, seconds);
+        int[] depth = MASTER_READS.get();
+        depth[0]++;
+        try {
+            return reads.get();
+        } finally {
+            depth[0]--;
         }
 
     }
 
+    private static boolean isMasterRead() {
+        return MASTER_READS.get()[0] > 0;
+    }
+
     /**
-     * 设置某个key的过期时间，单位秒
-     *
-     * @param key     key
-     * @param seconds 过期时间秒
+     * 只读命令使用的连接池，在readFromMaster中时为主节点
      */
-    public void expire(String key, Long seconds) {
-
-        try (Jedis jedis = getJedis()) {
-            jedis.expire(key, seconds.intValue());
-        }
-
+    private Pool<Jedis> readPool(String key) {
+        return router.route(key, !isMasterRead());
     }
 
     /**
-     * 设置某个key的过期时间，单位毫秒
-     *
-     * @param key     key
-     * @param seconds 过期时间秒
+     * 在指定的连接池上执行操作。集群模式下收到MOVED时刷新slot的分布，收到ASK时先发送ASKING，然后到目标节点重试
      */
-    public void expireAt(String key, long seconds) {
+    <T> T execute(Pool<Jedis> pool, String command, String key, Function<Jedis, T> action) {
 
-        try (Jedis jedis = getJedis()) {
-            jedis.expireAt(key, seconds);
+        boolean asking = false;
+        for (int redirections = 0; ; redirections++) {
+            try {
+                return execute(pool, asking, command, key, action);
+            } catch (JedisRedirectionException e) {
+                if (redirections >= MAX_REDIRECTIONS) {
+                    throw new JedisClusterMaxRedirectionsException("too many cluster redirections for key " + key, e);
+                }
+                asking = e instanceof JedisAskDataException;
+                if (!asking) {
+                    router.refresh();
+                }
+                pool = router.node(e.getTargetNode());
+            }
         }
 
     }
 
-    /**
-     * 查看某个key还有几秒过期，-1表示永不过期 ，-2表示已过期
-     */
-    public Long ttl(String key) {
+    private <T> T execute(Pool<Jedis> pool, boolean asking, String command, String key, Function<Jedis, T> action) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.ttl(key);
+        try (Jedis jedis = borrow(pool)) {
+            if (asking) {
+                jedis.asking();
+            }
+            RedisCommandListener listener = commandListener;
+            if (listener == null) {
+                return action.apply(jedis);
+            }
+            long start = System.nanoTime();
+            try {
+                T result = action.apply(jedis);
+                listener.onCommand(command, key, System.nanoTime() - start, null);
+                return result;
+            } catch (RuntimeException e) {
+                listener.onCommand(command, key, System.nanoTime() - start, e);
+                throw e;
+            }
         }
 
     }
 
     /**
-     * 查看某个key对应的value的类型
+     * 记录一次不是通过execute执行的命令，如pipeline
      */
-    public String type(String key) {
+    void recordCommand(String command, String key, long startNanos, Throwable error) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.type(key);
+        RedisCommandListener listener = commandListener;
+        if (listener != null) {
+            listener.onCommand(command, key, System.nanoTime() - startNanos, error);
         }
 
     }
 
-    /*########################  string(字符串)的操作  ####################*/
+    /**
+     * 设置命令执行的监听器，传入null表示不再统计
+     */
+    public void setCommandListener(RedisCommandListener commandListener) {
+        this.commandListener = commandListener;
+    }
 
     /**
-     * 获取某个key的value，类型要对，只能value是string的才能获取
+     * 所有连接池中正在被使用的连接数
      */
-    public String get(String key) {
+    public int getActiveConnections() {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.get(key);
+        int active = 0;
+        for (Pool<Jedis> pool : router.pools()) {
+            active += pool.getNumActive();
         }
+        for (JedisPool pool : databasePools.values()) {
+            active += pool.getNumActive();
+        }
+        return active;
 
     }
 
     /**
-     * 设置某个key的value
+     * 所有连接池中空闲的连接数
      */
-    public String set(String key, String value) {
+    public int getIdleConnections() {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.set(key, value);
+        int idle = 0;
+        for (Pool<Jedis> pool : router.pools()) {
+            idle += pool.getNumIdle();
+        }
+        for (JedisPool pool : databasePools.values()) {
+            idle += pool.getNumIdle();
         }
+        return idle;
 
     }
 
     /**
-     * 设置某个key的value
+     * 所有连接池中正在等待获取连接的线程数
      */
-    public String set(String key, String value, int expireSeconds) {
+    public int getWaitingThreads() {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.setex(key, expireSeconds, value);
+        int waiters = 0;
+        for (Pool<Jedis> pool : router.pools()) {
+            waiters += pool.getNumWaiters();
         }
+        for (JedisPool pool : databasePools.values()) {
+            waiters += pool.getNumWaiters();
+        }
+        return waiters;
 
     }
 
     /**
-     * 设置某个key的value
+     * 检查redis是否可用，集群模式下检查所有的主节点
+     *
+     * @return 所有节点都返回PONG时为true
+     * @throws JedisException 获取不到连接或连接断开
      */
-    public String set(String key, String value, Long expireSeconds) {
+    public boolean ping() {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.setex(key, expireSeconds.intValue(), value);
+        for (Pool<Jedis> pool : router.masters()) {
+            if (!"PONG".equals(execute(pool, "ping", null, Jedis::ping))) {
+                return false;
+            }
         }
+        return true;
 
     }
 
-    public String set(String key, String value, String nxxx, String expx, long time) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.set(key, value, nxxx, expx, time);
+    /**
+     * 预热默认库的连接池(集群模式下为每个节点的连接池)：并行地建立connections个连接(TCP连接、AUTH、SELECT)并PING一次，然后全部放回池中，
+     * 避免启动后的第一波请求都要建立新连接。放回后能保留的空闲连接数受maxIdle限制，
+     * 要让连接池在运行中也保持这些连接，需要同时设置连接池的minIdle
+     *
+     * @param connections 每个连接池预热的连接数，不超过连接池的最大连接数
+     * @param parallelism 同时建立连接的线程数
+     * @return 预热成功的连接数
+     */
+    public int warmUp(int connections, int parallelism) {
+
+        Collection<Pool<Jedis>> pools = router.pools();
+        int perPool = Math.min(connections, poolConfig.getMaxTotal());
+        int total = perPool * pools.size();
+        if (total <= 0) {
+            return 0;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, total)), r -> {
+            Thread thread = new Thread(r, "redis-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Jedis>> futures = new ArrayList<>(total);
+        for (Pool<Jedis> pool : pools) {
+            for (int i = 0; i < perPool; i++) {
+                //每个连接都先拿在手里，等全部建立后再一起放回，否则还没执行的任务会复用已经放回的连接
+                futures.add(executor.submit(() -> {
+                    Jedis jedis = borrow(pool);
+                    try {
+                        jedis.ping();
+                        return jedis;
+                    } catch (RuntimeException e) {
+                        jedis.close();
+                        throw e;
+                    }
+                }));
+            }
+        }
+        executor.shutdown();
+        List<Jedis> established = new ArrayList<>(total);
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<Jedis> future : futures) {
+            //被中断时也要等到所有的连接建立完，否则这些连接就泄漏了
+            while (true) {
+                try {
+                    established.add(future.get());
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    continue;
+                }
+                break;
+            }
         }
+        established.forEach(Jedis::close);
+        int warmed = established.size();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            log.warn("warm up redis pool: {} of {} connections established", warmed, total, failure);
+        } else {
+            log.info("warm up redis pool: {} connections established", warmed);
+        }
+        return warmed;
 
     }
 
     /**
-     * 字符串后追加内容
-     *
-     * @param key           key
-     * @param appendContent 要追加的内容
+     * 设置某个库单独的连接池的最大连接数，需要在第一次使用该库之前设置，未设置的库与默认库的连接池配置一致
      */
-    public Long append(String key, String appendContent) {
+    public void setDatabasePoolMaxTotal(int index, int maxTotal) {
+        databasePoolMaxTotal.put(index, maxTotal);
+    }
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.append(key, appendContent);
+    /**
+     * 获取某个库的连接池，第一次使用时创建
+     */
+    private JedisPool getDatabasePool(int index) {
+
+        if (host == null) {
+            throw new IllegalStateException("select database " + index + " is only supported by a single redis node, this instance uses database " + database);
         }
+        return databasePools.computeIfAbsent(index, db -> {
+            GenericObjectPoolConfig config = poolConfig.clone();
+            Integer maxTotal = databasePoolMaxTotal.get(db);
+            if (maxTotal != null) {
+                config.setMaxTotal(maxTotal);
+                config.setMaxIdle(Math.min(config.getMaxIdle(), maxTotal));
+            }
+            return new JedisPool(config, host, port, timeout, password, db);
+        });
 
     }
 
     /**
-     * 返回key的value的长度
+     * 把多key命令的key按分片拆开，同一分片的key可以放在一条命令中，单节点时只有一组
      */
-    public Long strLen(String key) {
+    List<List<String>> splitByShard(Collection<String> keys) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.strlen(key);
+        if (router.isSingleShard()) {
+            return Collections.singletonList(keys instanceof List ? (List<String>) keys : new ArrayList<>(keys));
         }
+        Map<Object, List<String>> shards = new LinkedHashMap<>();
+        for (String key : keys) {
+            shards.computeIfAbsent(router.shardOf(key), shard -> new ArrayList<>()).add(key);
+        }
+        return new ArrayList<>(shards.values());
 
     }
 
     /**
-     * value 加1 必
-     * 须是字符型数字
+     * 通过pipeline发送一批命令。命令按所在的节点分组，每组在一个连接上按chunkSize分段发送，多个节点的组并行发送。
+     * 某组出现连接异常时该组剩下的命令以异常结束，所有组都发送完后再抛出第一个异常。
+     * 集群模式下收到MOVED、ASK的命令以异常结束(调用方重试即可)，同时刷新slot的分布
      */
-    public Long incr(String key) {
+    void sendPipelined(List<PipelineOperations.Command<?>> commands, int chunkSize) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.incr(key);
+        //只有全部是只读命令时才发往从节点，否则同一批中先写后读的命令可能读不到刚写入的数据
+        boolean readOnly = !isMasterRead();
+        for (PipelineOperations.Command<?> command : commands) {
+            readOnly &= command.readOnly;
+        }
+        Map<Pool<Jedis>, List<PipelineOperations.Command<?>>> groups = new LinkedHashMap<>();
+        RuntimeException failure = null;
+        for (PipelineOperations.Command<?> command : commands) {
+            try {
+                groups.computeIfAbsent(router.route(command.key, readOnly), pool -> new ArrayList<>()).add(command);
+            } catch (RuntimeException e) {
+                command.future.completeExceptionally(e);
+                failure = e;
+            }
+        }
+        try {
+            forEachNode(groups, (pool, group) -> sendPipelined(pool, router.route(group.get(0).key, false), group, chunkSize));
+        } catch (RuntimeException e) {
+            failure = failure == null ? e : failure;
+        }
+        if (failure != null) {
+            throw failure;
         }
 
     }
 
     /**
-     * value
-     * 须是字符型数字
+     * 对每个节点执行一个操作，第一个节点在调用线程中执行，其它节点并行执行，全部执行完后抛出第一个异常
      */
-    public Long incr(String key, int num) {
+    <V> void forEachNode(Map<Pool<Jedis>, V> groups, BiConsumer<Pool<Jedis>, V> action) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.incrBy(key, num);
+        List<Future<?>> futures = new ArrayList<>(groups.size());
+        Map.Entry<Pool<Jedis>, V> first = null;
+        for (Map.Entry<Pool<Jedis>, V> group : groups.entrySet()) {
+            if (first == null) {
+                first = group;
+            } else {
+                futures.add(fanOutExecutor().submit(() -> action.accept(group.getKey(), group.getValue())));
+            }
+        }
+        RuntimeException failure = null;
+        if (first != null) {
+            try {
+                action.accept(first.getKey(), first.getValue());
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            //被中断时也要等到所有的节点执行完，否则调用方返回时还有操作没有结束
+            while (true) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new JedisException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    continue;
+                }
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
         }
 
     }
 
     /**
-     * value 减1   必须是字符型数字
+     * 获取处理某个key的连接池
      */
-    public Long decr(String key) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.decr(key);
-        }
+    /**
+     * 在key所在的节点上发布的消息，RedisSubscriber能否收到。分片模式下不在默认节点上的key需要通过publish()另外发布
+     */
+    public boolean isPublishVisible(String key) {
+        return router.isPublishVisible(key);
+    }
 
+    Pool<Jedis> route(String key) {
+        return router.route(key, false);
     }
 
     /**
-     * value 加increment
+     * @param master pool是从节点时，获取不到连接就改用主节点
      */
-    public Long incrBy(String key, int increment) {
+    private void sendPipelined(Pool<Jedis> pool, Pool<Jedis> master, List<PipelineOperations.Command<?>> commands, int chunkSize) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.incrBy(key, increment);
+        int done = 0;
+        boolean redirected = false;
+        try (Jedis jedis = borrow(pool, master)) {
+            while (done < commands.size()) {
+                int end = Math.min(done + chunkSize, commands.size());
+                long start = System.nanoTime();
+                try {
+                    redirected |= PipelineOperations.send(jedis, commands.subList(done, end), this::invalidateNearCache);
+                } catch (RuntimeException e) {
+                    recordCommand("pipeline", null, start, e);
+                    throw e;
+                }
+                recordCommand("pipeline", null, start, null);
+                done = end;
+            }
+        } catch (RuntimeException e) {
+            //出现连接异常时，剩下没有结果的命令全部以异常结束，避免调用方一直拿不到结果
+            for (int i = done; i < commands.size(); i++) {
+                commands.get(i).future.completeExceptionally(e);
+            }
+            throw e;
+        }
+        if (redirected) {
+            router.refresh();
         }
 
     }
 
-    public Double incrByFloat(String key, double increment) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.incrByFloat(key, increment);
+    private ExecutorService fanOutExecutor() {
 
+        ExecutorService executor = fanOutExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = fanOutExecutor;
+                if (executor == null) {
+                    //线程都在忙时由调用线程自己发送，不会无限制地创建线程，也不会因为排队而死锁
+                    executor = new ThreadPoolExecutor(0, Math.max(1, poolConfig.getMaxTotal()), 60, TimeUnit.SECONDS,
+                            new SynchronousQueue<>(), r -> {
+                        Thread thread = new Thread(r, "redis-fan-out");
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+                    fanOutExecutor = executor;
+                }
+            }
         }
+        return executor;
+
     }
 
     /**
-     * value 加increment
+     * 创建一个批量操作，排队的命令在execute()时通过pipeline发送，N个命令只需要约1次网络往返
      */
-    public Long incrBy(String key, Long increment) {
+    public RedisBatch batch() {
+        return new RedisBatch(this, batchChunkSize);
+    }
+
+    /**
+     * 获取异步操作，所有命令返回CompletableFuture，同一时刻排队的命令会合并到一个pipeline中发送
+     */
+    public AsyncRedisUtils async() {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.incrBy(key, increment);
+        AsyncRedisUtils result = async;
+        if (result == null) {
+            synchronized (this) {
+                result = async;
+                if (result == null) {
+                    result = new AsyncRedisUtils(this, asyncThreads, asyncQueueCapacity, batchChunkSize);
+                    async = result;
+                }
+            }
         }
+        return result;
 
     }
 
     /**
-     * value 减increment
+     * 设置异步操作的工作线程数和排队的最大命令数，需要在第一次调用async()之前设置
      */
-    public Long decrBy(String key, int increment) {
+    public void setAsyncExecutor(int threads, int queueCapacity) {
+        this.asyncThreads = threads;
+        this.asyncQueueCapacity = queueCapacity;
+    }
+
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.decrBy(key, increment);
+    public void setBatchChunkSize(int batchChunkSize) {
+
+        if (batchChunkSize <= 0) {
+            throw new IllegalArgumentException("batchChunkSize must be positive");
         }
+        this.batchChunkSize = batchChunkSize;
 
     }
 
     /**
-     * 给某个key设置过期时间和value，成功返回OK
+     * 开启单key读请求合并：并发的get/hget在windowMicros微秒内最多攒maxBatchSize个，在一个连接上一次发送
      *
-     * @param key     key
-     * @param seconds 过期时间秒
-     * @param value   设置的值
+     * @param windowMicros 攒批的时间窗口，单位微秒，0表示只合并已经在排队的请求
+     * @param maxBatchSize 一批最多合并的请求数
+     * @param threads      分发线程数，每个分发线程同一时刻只占用一个连接
      */
-    public String setEx(String key, int seconds, String value) {
+    public void enableReadCoalescing(long windowMicros, int maxBatchSize, int threads) {
+        enableReadCoalescing(windowMicros, maxBatchSize, threads, timeout);
+    }
+
+    /**
+     * 开启单key读请求合并
+     *
+     * @param timeoutMillis 调用线程等待合并结果的最长时间(不含攒批的时间窗口)，通常取socket超时时间，
+     *                      小于等于0时使用jedis默认的socket超时时间
+     */
+    public synchronized void enableReadCoalescing(long windowMicros, int maxBatchSize, int threads, long timeoutMillis) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.setex(key, seconds, value);
+        RedisReadCoalescer old = readCoalescer;
+        readCoalescer = new RedisReadCoalescer(this, windowMicros, maxBatchSize, threads, timeoutMillis > 0 ? timeoutMillis : Protocol.DEFAULT_TIMEOUT);
+        if (old != null) {
+            old.close();
         }
 
     }
 
-    /*########################  list(列表)的操作  #######################*/
-
     /**
-     * 从左边向列表中添加值
+     * 关闭单key读请求合并
      */
-    public void lPush(String key, String str) {
+    public synchronized void disableReadCoalescing() {
 
-        try (Jedis jedis = getJedis()) {
-            jedis.lpush(key, str);
+        if (readCoalescer != null) {
+            readCoalescer.close();
+            readCoalescer = null;
         }
 
     }
 
     /**
-     * 从左边向列表中添加值
+     * 开启近端缓存，命中缓存规则的key的get/hget/hgetAll会优先读本地缓存
      */
-    public void lPushAll(String key, String... strings) {
+    public synchronized void enableNearCache(RedisNearCache nearCache) {
 
-        try (Jedis jedis = getJedis()) {
-            jedis.lpush(key, strings);
+        RedisNearCache old = this.nearCache;
+        nearCache.start();
+        this.nearCache = nearCache;
+        if (old != null && old != nearCache) {
+            old.close();
         }
 
     }
 
-    public void rPushAll(String key, String... strings) {
+    public RedisNearCache getNearCache() {
+        return nearCache;
+    }
 
-        try (Jedis jedis = getJedis()) {
-            jedis.rpush(key, strings);
-        }
+    /**
+     * 开启值压缩：set/setEx/mSet/hset/hmset写入的值编码后不小于thresholdBytes字节时先压缩再写入，
+     * get/mGet/hget/hmget/hgetAll/hvals/hscan以及pipeline中对应的命令读取时自动解压，小的值不受影响。
+     * 压缩后的值不能再用append/strLen等按字节操作的命令，也不能在lua脚本中直接使用；
+     * 关闭压缩后已经压缩的值不会再被解压，需要先重新写入
+     *
+     * @param algorithm      压缩算法
+     * @param thresholdBytes 值的UTF-8字节数不小于这个值时才压缩
+     */
+    public void enableCompression(CompressionCodec.Algorithm algorithm, int thresholdBytes) {
+        valueCodec = new CompressionCodec<>(Codecs.STRING, algorithm, thresholdBytes);
+    }
 
+    /**
+     * 关闭值压缩
+     */
+    public void disableCompression() {
+        valueCodec = null;
     }
 
     /**
-     * 从右边向列表中添加值
+     * String类型的值的压缩编解码器，未开启压缩时为null
      */
-    public void rPush(String key, String str) {
+    public CompressionCodec<String> getValueCodec() {
+        return valueCodec;
+    }
 
-        try (Jedis jedis = getJedis()) {
-            jedis.rpush(key, str);
-        }
+    /**
+     * 设置getOrLoad的选项
+     *
+     * @param earlyRefreshBeta 过期前提前刷新的激进程度，越大越早刷新，通常取1，0表示不提前刷新
+     * @param ttlJitter        过期时间的随机抖动比例，实际过期时间在ttl * (1 - ttlJitter)到ttl之间，0表示不抖动
+     * @param lockWaitMillis   多个实例之间通过分布式锁互斥加载时，等待其它实例加载的最长时间，单位毫秒，0表示不使用分布式锁
+     */
+    public void setLoadOptions(double earlyRefreshBeta, double ttlJitter, long lockWaitMillis) {
+        cacheLoader.setOptions(earlyRefreshBeta, ttlJitter, lockWaitMillis);
+    }
+
+    /**
+     * 创建一个不属于连接池的独立连接，用于订阅等会长时间占用连接的场景，用完需要自己关闭
+     */
+    Jedis newDedicatedJedis() {
+        return router.connect();
+    }
 
+    /**
+     * 创建一个不属于连接池的独立连接，连到key所在的节点，用于阻塞读取等会长时间占用连接的场景，用完需要自己关闭
+     */
+    public Jedis newDedicatedJedis(String key) {
+        return router.connect(key);
     }
 
     /**
-     * 从左边取出一个列表中的值
+     * 释放连接池等资源，spring容器关闭时会自动调用
      */
-    public String lPop(String key) {
+    @Override
+    public void close() {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.lpop(key);
+        if (async != null) {
+            async.close();
+        }
+        disableReadCoalescing();
+        if (nearCache != null) {
+            nearCache.close();
+        }
+        router.close();
+        databasePools.values().forEach(JedisPool::close);
+        ExecutorService executor = fanOutExecutor;
+        if (executor != null) {
+            executor.shutdown();
         }
 
     }
 
-    /**
-     * 从右边取出一个列表中的值
-     */
-    public String rPop(String key) {
+    void invalidateNearCache(String... keys) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.rpop(key);
+        RedisNearCache cache = nearCache;
+        if (cache != null && keys != null) {
+            cache.invalidate(keys);
         }
 
     }
 
-    /**
-     * 取出列表中指定范围内的值，0 到 -1 表示全部
-     */
-    public List<String> lRange(String key, int startIndex, int endIndex) {
+    void invalidateNearCache(Collection<String> keys) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.lrange(key, startIndex, endIndex);
+        RedisNearCache cache = nearCache;
+        if (cache != null && keys != null) {
+            cache.invalidate(keys);
         }
 
     }
 
+    /*########################  key的操作  ################################*/
+
+
+    /**
+     * 删除一个或多个key，在redis的主线程中释放内存，删除大key请使用unlink
+     *
+     * @param key 一个或多个key
+     */
+    public Long del(String... key) {
+
+        try {
+            List<List<String>> shards = splitByShard(Arrays.asList(key));
+            if (shards.size() <= 1) {
+                return execute("del", firstKey(key), jedis -> jedis.del(key));
+            }
+            //集群模式下每个slot一条DEL，多个节点并行发送
+            RedisBatch batch = batch();
+            List<CompletableFuture<Long>> futures = new ArrayList<>(shards.size());
+            for (List<String> keys : shards) {
+                String[] shardKeys = keys.toArray(new String[0]);
+                futures.add(batch.add(shardKeys[0], p -> p.del(shardKeys), Collections.emptyList()));
+            }
+            batch.execute();
+            long deleted = 0;
+            for (CompletableFuture<Long> future : futures) {
+                deleted += future.join();
+            }
+            return deleted;
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 删除一个或多个key，内存在redis的后台线程中释放，删除大key时不会阻塞redis。redis 4.0以下退回到DEL
+     *
+     * @param key 一个或多个key
+     * @return 实际删除的key数
+     */
+    public Long unlink(String... key) {
+
+        if (key.length == 0) {
+            return 0L;
+        }
+        return mDelCount(Arrays.asList(key));
+
+    }
+
+    /**
+     * 批量删除，key按deleteChunkSize分段，每段一条UNLINK，分批通过pipeline发送
+     *
+     * @param keyList 要删除的key的集合
+     */
+    public void mDel(List<String> keyList) {
+        mDelCount(keyList);
+    }
+
+    /**
+     * 同mDel，返回实际删除的key数
+     *
+     * @param keyList 要删除的key的集合
+     * @return 实际删除的key数
+     */
+    public long mDelCount(List<String> keyList) {
+        return mDelCount(keyList, 1, null);
+    }
+
+    /**
+     * 批量删除，key按deleteChunkSize分段，每段一条UNLINK，分批通过pipeline发送
+     *
+     * @param keyList     要删除的key的集合
+     * @param parallelism 同时使用的连接数，大于1时会另外启动parallelism-1个线程，不超过连接池的最大连接数
+     * @param progress    每批删除后回调目前已删除的总数，可能在不同的线程中调用，可以为null
+     * @return 实际删除的key数
+     */
+    public long mDelCount(List<String> keyList, int parallelism, LongConsumer progress) {
+        return bulkDelete(RedisBulkDeleter.partition(keyList, deleteChunkSize), parallelism, progress);
+    }
+
+    /**
+     * 通过SCAN找到匹配的key并分批删除，不会像KEYS一样阻塞redis。删除期间新写入的匹配的key不一定会被删除
+     *
+     * @param match 匹配规则，如session:*
+     * @return 实际删除的key数
+     */
+    public long delByPattern(String match) {
+        return delByPattern(match, 1, null);
+    }
+
+    /**
+     * 通过SCAN找到匹配的key并分批删除，不会像KEYS一样阻塞redis。删除期间新写入的匹配的key不一定会被删除
+     *
+     * @param match       匹配规则，如session:*
+     * @param parallelism 同时使用的连接数，SCAN本身是串行的，并行的只是删除
+     * @param progress    每批删除后回调目前已删除的总数，可能在不同的线程中调用，可以为null
+     * @return 实际删除的key数
+     */
+    public long delByPattern(String match, int parallelism, LongConsumer progress) {
+
+        if (match == null || match.isEmpty()) {
+            throw new IllegalArgumentException("match must not be empty");
+        }
+        ScanIterator<String> keys = scan(match, Math.max(deleteChunkSize, DEFAULT_SCAN_COUNT));
+        return bulkDelete(RedisBulkDeleter.partition(keys, deleteChunkSize), parallelism, progress);
+
+    }
+
+    private long bulkDelete(Iterator<List<String>> chunks, int parallelism, LongConsumer progress) {
+
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        int pipelineChunks = Math.max(1, batchChunkSize / deleteChunkSize);
+        RedisBulkDeleter deleter = new RedisBulkDeleter(this, chunks, pipelineChunks, progress);
+        return deleter.run(Math.min(parallelism, poolConfig.getMaxTotal()));
+
+    }
+
+    public int getDeleteChunkSize() {
+        return deleteChunkSize;
+    }
+
+    /**
+     * 设置批量删除时一条UNLINK最多删除的key数
+     */
+    public void setDeleteChunkSize(int deleteChunkSize) {
+
+        if (deleteChunkSize <= 0 || deleteChunkSize > MAX_DELETE_CHUNK_SIZE) {
+            throw new IllegalArgumentException("deleteChunkSize must be between 1 and " + MAX_DELETE_CHUNK_SIZE);
+        }
+        this.deleteChunkSize = deleteChunkSize;
+
+    }
+
+    /**
+     * 判断某个key是否还存在
+     *
+     * @param key key
+     */
+    public Boolean exists(String key) {
+
+        return execute("exists", key, jedis -> jedis.exists(key));
+
+    }
+
+    /**
+     * 设置某个key的过期时间，单位秒
+     *
+     * @param key     key
+     * @param seconds 过期时间秒
+     */
+    public void expire(String key, int seconds) {
+
+        execute("expire", key, jedis -> jedis.expire(key, seconds));
+
+    }
+
+    /**
+     * 设置某个key的过期时间，单位秒
+     *
+     * @param key     key
+     * @param seconds 过期时间秒
+     */
+    public void expire(String key, Long seconds) {
+
+        execute("expire", key, jedis -> jedis.expire(key, seconds.intValue()));
+
+    }
+
+    /**
+     * 设置某个key的过期时间，单位毫秒
+     *
+     * @param key     key
+     * @param seconds 过期时间秒
+     */
+    public void expireAt(String key, long seconds) {
+
+        execute("expireat", key, jedis -> jedis.expireAt(key, seconds));
+
+    }
+
+    /**
+     * 查看某个key还有几秒过期，-1表示永不过期 ，-2表示已过期
+     */
+    public Long ttl(String key) {
+
+        return execute("ttl", key, jedis -> jedis.ttl(key));
+
+    }
+
+    /**
+     * 查看某个key对应的value的类型
+     */
+    public String type(String key) {
+
+        return execute("type", key, jedis -> jedis.type(key));
+
+    }
+
+    /*########################  string(字符串)的操作  ####################*/
+
+    /**
+     * 获取某个key的value，类型要对，只能value是string的才能获取
+     */
+    public String get(String key) {
+
+        RedisNearCache cache = nearCache;
+        if (cache == null || !cache.matches(key)) {
+            return doGet(key);
+        }
+        String cached = cache.getValue(key);
+        if (cached != null) {
+            return RedisNearCache.isNull(cached) ? null : cached;
+        }
+        long sequence = cache.sequence();
+        //从节点可能还没有复制到失效前的写入，读到的旧值会一直缓存到下次失效，所以回填时从主节点读
+        String value = readFromMaster(() -> doGet(key));
+        cache.putValue(key, value, sequence);
+        return value;
+
+    }
+
+    private String doGet(String key) {
+
+        RedisReadCoalescer coalescer = readCoalescer;
+        //合并器在自己的线程中读取，要求从主节点读时直接读取
+        if (coalescer != null && !isMasterRead()) {
+            try {
+                return coalescer.get(key);
+            } catch (RejectedExecutionException e) {
+                //合并器刚被关闭或替换，直接读取
+            }
+        }
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return get(key, codec);
+        }
+        return execute("get", key, jedis -> jedis.get(key));
+
+    }
+
+    /**
+     * 一次获取多个key的value，结果顺序与key的顺序一致，不存在的key对应null
+     */
+    public List<String> mGet(String... keys) {
+
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return mGet(codec, keys);
+        }
+        return mGetByShard(keys, shardKeys -> execute("mget", firstKey(shardKeys), jedis -> jedis.mget(shardKeys)), RedisBatch::mGet);
+
+    }
+
+    /**
+     * 按分片执行MGET，结果按key的顺序合并。只有一个分片时直接执行，否则每个slot一条MGET，多个节点并行发送
+     *
+     * @param direct    直接执行一条MGET
+     * @param pipelined 往pipeline中加入一条MGET
+     */
+    private <T> List<T> mGetByShard(String[] keys, Function<String[], List<T>> direct,
+                                    BiFunction<RedisBatch, String[], CompletableFuture<List<T>>> pipelined) {
+
+        List<List<String>> shards = splitByShard(Arrays.asList(keys));
+        if (shards.size() <= 1) {
+            return direct.apply(keys);
+        }
+        RedisBatch batch = batch();
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(shards.size());
+        for (List<String> shardKeys : shards) {
+            futures.add(pipelined.apply(batch, shardKeys.toArray(new String[0])));
+        }
+        batch.execute();
+        Map<String, T> values = new HashMap<>(keys.length * 2);
+        for (int i = 0; i < shards.size(); i++) {
+            List<String> shardKeys = shards.get(i);
+            List<T> shardValues = futures.get(i).join();
+            for (int j = 0; j < shardKeys.size(); j++) {
+                values.put(shardKeys.get(j), shardValues.get(j));
+            }
+        }
+        List<T> result = new ArrayList<>(keys.length);
+        for (String key : keys) {
+            result.add(values.get(key));
+        }
+        return result;
+
+    }
+
+    private static String firstKey(String[] keys) {
+        return keys.length == 0 ? null : keys[0];
+    }
+
+    private static String[] toKeysValues(Map<String, String> kvMap, Collection<String> keys) {
+
+        String[] keysValues = new String[keys.size() * 2];
+        int i = 0;
+        for (String key : keys) {
+            keysValues[i++] = key;
+            keysValues[i++] = kvMap.get(key);
+        }
+        return keysValues;
+
+    }
+
+    private static byte[][] toKeysValues(Map<String, String> kvMap, Collection<String> keys, RedisCodec<String> codec) {
+
+        byte[][] keysValues = new byte[keys.size() * 2][];
+        int i = 0;
+        for (String key : keys) {
+            keysValues[i++] = SafeEncoder.encode(key);
+            keysValues[i++] = codec.encode(kvMap.get(key));
+        }
+        return keysValues;
+
+    }
+
+    /**
+     * 一次设置多个key的value，集群模式下不同slot的key分别设置
+     */
+    public String mSet(Map<String, String> kvMap) {
+
+        if (kvMap.isEmpty()) {
+            return null;
+        }
+        List<List<String>> shards = splitByShard(kvMap.keySet());
+        CompressionCodec<String> codec = valueCodec;
+        try {
+            if (shards.size() <= 1) {
+                if (codec != null) {
+                    byte[][] keysValues = toKeysValues(kvMap, kvMap.keySet(), codec);
+                    return execute("mset", shards.get(0).get(0), jedis -> jedis.mset(keysValues));
+                }
+                String[] keysValues = toKeysValues(kvMap, kvMap.keySet());
+                return execute("mset", keysValues[0], jedis -> jedis.mset(keysValues));
+            }
+            //集群模式下每个slot一条MSET，只保证同一个slot内的key是原子设置的
+            RedisBatch batch = batch();
+            List<CompletableFuture<String>> futures = new ArrayList<>(shards.size());
+            for (List<String> keys : shards) {
+                if (codec != null) {
+                    byte[][] keysValues = toKeysValues(kvMap, keys, codec);
+                    futures.add(batch.add(keys.get(0), p -> p.mset(keysValues), Collections.emptyList()));
+                } else {
+                    String[] keysValues = toKeysValues(kvMap, keys);
+                    futures.add(batch.add(keysValues[0], p -> p.mset(keysValues), Collections.emptyList()));
+                }
+            }
+            batch.execute();
+            String result = null;
+            for (CompletableFuture<String> future : futures) {
+                result = future.join();
+            }
+            return result;
+        } finally {
+            invalidateNearCache(kvMap.keySet());
+        }
+
+    }
+
+    /**
+     * 设置某个key的value
+     */
+    public String set(String key, String value) {
+
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return set(key, value, codec);
+        }
+        try {
+            return execute("set", key, jedis -> jedis.set(key, value));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 设置某个key的value
+     */
+    public String set(String key, String value, int expireSeconds) {
+
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return set(key, value, expireSeconds, codec);
+        }
+        try {
+            return execute("setex", key, jedis -> jedis.setex(key, expireSeconds, value));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 设置某个key的value
+     */
+    public String set(String key, String value, Long expireSeconds) {
+
+        return set(key, value, expireSeconds.intValue());
+
+    }
+
+    public String set(String key, String value, String nxxx, String expx, long time) {
+
+        CompressionCodec<String> codec = valueCodec;
+        byte[] encoded = codec == null ? null : codec.encode(value);
+        try {
+            return execute("set", key, jedis -> encoded == null ? jedis.set(key, value, nxxx, expx, time)
+                    : jedis.set(SafeEncoder.encode(key), encoded, SafeEncoder.encode(nxxx), SafeEncoder.encode(expx), time));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 字符串后追加内容
+     *
+     * @param key           key
+     * @param appendContent 要追加的内容
+     */
+    public Long append(String key, String appendContent) {
+
+        try {
+            return execute("append", key, jedis -> jedis.append(key, appendContent));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 返回key的value的长度
+     */
+    public Long strLen(String key) {
+
+        return execute("strlen", key, jedis -> jedis.strlen(key));
+
+    }
+
+    /**
+     * value 加1 必
+     * 须是字符型数字
+     */
+    public Long incr(String key) {
+
+        try {
+            return execute("incr", key, jedis -> jedis.incr(key));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * value
+     * 须是字符型数字
+     */
+    public Long incr(String key, int num) {
+
+        try {
+            return execute("incrby", key, jedis -> jedis.incrBy(key, num));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * value 减1   必须是字符型数字
+     */
+    public Long decr(String key) {
+
+        try {
+            return execute("decr", key, jedis -> jedis.decr(key));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * value 加increment
+     */
+    public Long incrBy(String key, int increment) {
+
+        try {
+            return execute("incrby", key, jedis -> jedis.incrBy(key, increment));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    public Double incrByFloat(String key, double increment) {
+
+        try {
+            return execute("incrbyfloat", key, jedis -> jedis.incrByFloat(key, increment));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * value 加increment
+     */
+    public Long incrBy(String key, Long increment) {
+
+        try {
+            return execute("incrby", key, jedis -> jedis.incrBy(key, increment));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * value 减increment
+     */
+    public Long decrBy(String key, int increment) {
+
+        try {
+            return execute("decrby", key, jedis -> jedis.decrBy(key, increment));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 给某个key设置过期时间和value，成功返回OK
+     *
+     * @param key     key
+     * @param seconds 过期时间秒
+     * @param value   设置的值
+     */
+    public String setEx(String key, int seconds, String value) {
+
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return set(key, value, seconds, codec);
+        }
+        try {
+            return execute("setex", key, jedis -> jedis.setex(key, seconds, value));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /*########################  list(列表)的操作  #######################*/
+
+    /**
+     * 从左边向列表中添加值
+     */
+    public void lPush(String key, String str) {
+
+        execute("lpush", key, jedis -> jedis.lpush(key, str));
+
+    }
+
+    /**
+     * 从左边向列表中添加值
+     */
+    public void lPushAll(String key, String... strings) {
+
+        execute("lpush", key, jedis -> jedis.lpush(key, strings));
+
+    }
+
+    public void rPushAll(String key, String... strings) {
+
+        execute("rpush", key, jedis -> jedis.rpush(key, strings));
+
+    }
+
+    /**
+     * 从右边向列表中添加值
+     */
+    public void rPush(String key, String str) {
+
+        execute("rpush", key, jedis -> jedis.rpush(key, str));
+
+    }
+
+    /**
+     * 从左边取出一个列表中的值
+     */
+    public String lPop(String key) {
+
+        return execute("lpop", key, jedis -> jedis.lpop(key));
+
+    }
+
+    /**
+     * 从右边取出一个列表中的值
+     */
+    public String rPop(String key) {
+
+        return execute("rpop", key, jedis -> jedis.rpop(key));
+
+    }
+
+    /**
+     * 取出列表中指定范围内的值，0 到 -1 表示全部
+     */
+    public List<String> lRange(String key, int startIndex, int endIndex) {
+
+        return execute("lrange", key, jedis -> jedis.lrange(key, startIndex, endIndex));
+
+    }
+
+    /**
+     * 返回某列表指定索引位置的值
+     */
+    public String lIndex(String key, int index) {
+
+        return execute("lindex", key, jedis -> jedis.lindex(key, index));
+
+    }
+
+    /**
+     * 返回某列表的长度
+     */
+    public Long lLen(String key) {
+
+        return execute("llen", key, jedis -> jedis.llen(key));
+
+    }
+
+    /**
+     * 给某列表指定位置设置为指定的值
+     */
+    public String lSet(String key, Long index, String str) {
+
+        return execute("lset", key, jedis -> jedis.lset(key, index, str));
+
+    }
+
+    /**
+     * 对列表进行剪裁，保留指定闭区间的元素(索引位置也会重排)
+     */
+    public void ltrim(String key, Integer startIndex, Integer endIndex) {
+
+        execute("ltrim", key, jedis -> jedis.ltrim(key, startIndex, endIndex));
+
+    }
+
+    /**
+     * 从列表的左边阻塞弹出一个元素
+     */
+    public List<String> blpop(String key, Integer timeout) {
+
+        return execute("blpop", key, jedis -> jedis.blpop(timeout, key));
+
+    }
+
+    /**
+     * 从列表的右边阻塞弹出一个元素
+     */
+    public List<String> brpop(String key, Integer timeout) {
+
+        return execute("brpop", key, jedis -> jedis.brpop(timeout, key));
+
+    }
+
+    /*########################  hash(哈希表)的操作  #######################*/
+    //hset hget hmset hmget hgetall hdel hkeys hvals hexists hincrby
+
+    /**
+     * 给某个hash表设置一个键值对
+     */
+    public void hset(String key, String field, String value) {
+
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            hset(key, field, value, codec);
+            return;
+        }
+        try {
+            execute("hset", key, jedis -> jedis.hset(key, field, value));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 取出某个hash表中某个field对应的value
+     */
+    public String hget(String key, String field) {
+
+        RedisNearCache cache = nearCache;
+        if (cache == null || !cache.matches(key)) {
+            return doHget(key, field);
+        }
+        String cached = cache.getField(key, field);
+        if (cached != null) {
+            return RedisNearCache.isNull(cached) ? null : cached;
+        }
+        long sequence = cache.sequence();
+        String value = readFromMaster(() -> doHget(key, field));
+        cache.putField(key, field, value, sequence);
+        return value;
+
+    }
+
+    private String doHget(String key, String field) {
+
+        RedisReadCoalescer coalescer = readCoalescer;
+        //合并器在自己的线程中读取，要求从主节点读时直接读取
+        if (coalescer != null && !isMasterRead()) {
+            try {
+                return coalescer.hget(key, field);
+            } catch (RejectedExecutionException e) {
+                //合并器刚被关闭或替换，直接读取
+            }
+        }
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return hget(key, field, codec);
+        }
+        return execute("hget", key, jedis -> jedis.hget(key, field));
+
+    }
+
+    /**
+     * 某个hash表设置一个或多个键值对
+     */
+    public void hmset(String key, Map<String, String> kvMap) {
+
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            hmset(key, kvMap, codec);
+            return;
+        }
+        try {
+            execute("hmset", key, jedis -> jedis.hmset(key, kvMap));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 取出某个hash表中任意多个key对应的value的集合
+     */
+    public List<String> hmget(String key, String... fields) {
+
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return hmget(key, codec, fields);
+        }
+        return execute("hmget", key, jedis -> jedis.hmget(key, fields));
+
+    }
+
+    /**
+     * 取出某个hash表中所有的键值对
+     * 大的hash表请使用hscan按页遍历
+     */
+    public Map<String, String> hgetAll(String key) {
+
+        RedisNearCache cache = nearCache;
+        Map<String, String> cached = cache == null ? null : cache.getAll(key);
+        if (cached != null) {
+            return new HashMap<>(cached);
+        }
+        CompressionCodec<String> codec = valueCodec;
+        if (cache == null) {
+            return codec != null ? hgetAll(key, codec) : execute("hgetall", key, jedis -> jedis.hgetAll(key));
+        }
+        long sequence = cache.sequence();
+        Map<String, String> value = readFromMaster(() -> codec != null ? hgetAll(key, codec) : execute("hgetall", key, jedis -> jedis.hgetAll(key)));
+        cache.putAll(key, value, sequence);
+        return value;
+
+    }
+
+    /**
+     * 一次取出多个hash表中所有的键值对，通过pipeline发送
+     */
+    public Map<String, Map<String, String>> mHgetAll(List<String> keys) {
+
+        RedisBatch batch = batch();
+        Map<String, CompletableFuture<Map<String, String>>> futures = new LinkedHashMap<>();
+        for (String key : keys) {
+            futures.put(key, batch.hgetAll(key));
+        }
+        batch.execute();
+        Map<String, Map<String, String>> result = new LinkedHashMap<>();
+        futures.forEach((key, future) -> result.put(key, future.join()));
+        return result;
+
+    }
+
+    /**
+     * 判断某个hash表中的某个key是否存在
+     */
+    public Boolean hexists(String key, String field) {
+
+        return execute("hexists", key, jedis -> jedis.hexists(key, field));
+
+    }
+
+    /**
+     * 返回某个hash表中所有的key
+     * 大的hash表请使用hscan按页遍历
+     */
+    public Set<String> hkeys(String key) {
+
+        return execute("hkeys", key, jedis -> jedis.hkeys(key));
+
+    }
+
+    /**
+     * 返回某个hash表中所有的value
+     * 大的hash表请使用hscan按页遍历
+     */
+    public List<String> hvals(String key) {
+
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return execute("hvals", key, jedis -> decodeList(jedis.hvals(SafeEncoder.encode(key)), codec));
+        }
+        return execute("hvals", key, jedis -> jedis.hvals(key));
+
+    }
+
+    /**
+     * 删除某个hash表中的一个或多个键值对
+     */
+    public Long hdel(String key, String... fields) {
+
+        try {
+            return execute("hdel", key, jedis -> jedis.hdel(key, fields));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 给某个hash表中的某个field的value增加多少
+     */
+    public Long hincrBy(String key, String field, Long increment) {
+
+        try {
+            return execute("hincrby", key, jedis -> jedis.hincrBy(key, field, increment));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 给某个hash表中的某个field的value增加多少
+     */
+    public Long hincrBy(String key, String field, Integer increment) {
+
+        try {
+            return execute("hincrby", key, jedis -> jedis.hincrBy(key, field, increment));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /**
+     * 给某个hash表中的某个field的value增加多少
+     */
+    public Long hdecrBy(String key, String field, Integer increment) {
+
+        try {
+            return execute("hincrby", key, jedis -> jedis.hincrBy(key, field, -increment));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    public Double hincrByFloat(String key, String field, Double increment) {
+
+        try {
+            return execute("hincrbyfloat", key, jedis -> jedis.hincrByFloat(key, field, increment));
+        } finally {
+            invalidateNearCache(key);
+        }
+
+    }
+
+    /*########################  set(集合)的操作  ###########################*/
+
+    /**
+     * 往set集合中添加一个或多个元素
+     */
+    public Long sadd(String key, String... members) {
+
+        return execute("sadd", key, jedis -> jedis.sadd(key, members));
+
+    }
+
     /**
-     * 返回某列表指定索引位置的值
+     * 返回set集合中的所有元素，顺序与加入时的顺序一致
+     * 大的集合请使用sscan按页遍历
      */
-    public String lIndex(String key, int index) {
+    public Set<String> smembers(String key) {
+
+        return execute("smembers", key, jedis -> jedis.smembers(key));
+
+    }
+
+    /**
+     * 判断集合中是否存在某个元素
+     */
+    public Boolean sismember(String key, String member) {
+
+        return execute("sismember", key, jedis -> jedis.sismember(key, member));
+
+    }
+
+    /**
+     * 返回set集合的长度
+     */
+    public Long scard(String key) {
+
+        return execute("scard", key, jedis -> jedis.scard(key));
+
+    }
+
+    /**
+     * 删除set集合中指定的一个或多个元素
+     */
+    public Long srem(String key, String... members) {
+
+        return execute("srem", key, jedis -> jedis.srem(key, members));
+
+    }
+
+    /**
+     * 将key1中的元素key1Member移动到key2中
+     */
+    public Long smove(String key1, String key2, String key1Member) {
+
+        return execute("smove", key1, jedis -> jedis.smove(key1, key2, key1Member));
+
+    }
+
+    /**
+     * 随机查询返回集合中的指定个数的元素（若count为负数，返回的元素可能会重复）
+     */
+    public List<String> srandmember(String key, int count) {
+
+        return execute("srandmember", key, jedis -> jedis.srandmember(key, count));
+
+    }
+
+    /**
+     * 从set集合中随机弹出指定个数个元素
+     *
+     * @param key   key
+     * @param count 要弹出的个数
+     * @return 随机弹出的元素
+     */
+    public Set<String> spop(String key, int count) {
+
+        return execute("spop", key, jedis -> jedis.spop(key, count));
+
+    }
+
+    /**
+     * 集合分布在多个分片时不能在redis中计算，通过pipeline取出每个集合的所有元素，由调用方在本地计算。
+     * 都在同一个分片时返回null
+     */
+    private List<Set<String>> membersAcrossShards(String[] setKeys) {
+
+        if (splitByShard(Arrays.asList(setKeys)).size() <= 1) {
+            return null;
+        }
+        RedisBatch batch = batch();
+        List<CompletableFuture<Set<String>>> futures = new ArrayList<>(setKeys.length);
+        for (String key : setKeys) {
+            futures.add(batch.smembers(key));
+        }
+        batch.execute();
+        List<Set<String>> members = new ArrayList<>(setKeys.length);
+        for (CompletableFuture<Set<String>> future : futures) {
+            members.add(new HashSet<>(future.join()));
+        }
+        return members;
+
+    }
+
+    /**
+     * 求交集，返回多个set集合相交的部分。集群模式下不在同一个slot的集合会取回本地计算
+     */
+    public Set<String> sinter(String... setKeys) {
+
+        List<Set<String>> members = membersAcrossShards(setKeys);
+        if (members == null) {
+            return execute("sinter", firstKey(setKeys), jedis -> jedis.sinter(setKeys));
+        }
+        Set<String> result = members.get(0);
+        for (int i = 1; i < members.size(); i++) {
+            result.retainAll(members.get(i));
+        }
+        return result;
+
+    }
+
+    /**
+     * 求并集，求几个set集合的并集（因为set中不会有重复的元素，合并后的集合也不会有重复的元素）。
+     * 集群模式下不在同一个slot的集合会取回本地计算
+     */
+    public Set<String> sunion(String... setKeys) {
+
+        List<Set<String>> members = membersAcrossShards(setKeys);
+        if (members == null) {
+            return execute("sunion", firstKey(setKeys), jedis -> jedis.sunion(setKeys));
+        }
+        Set<String> result = members.get(0);
+        for (int i = 1; i < members.size(); i++) {
+            result.addAll(members.get(i));
+        }
+        return result;
+
+    }
+
+    /**
+     * 求差集，求几个集合之间的差集。集群模式下不在同一个slot的集合会取回本地计算
+     */
+    public Set<String> sdiff(String... setKeys) {
+
+        List<Set<String>> members = membersAcrossShards(setKeys);
+        if (members == null) {
+            return execute("sdiff", firstKey(setKeys), jedis -> jedis.sdiff(setKeys));
+        }
+        Set<String> result = members.get(0);
+        for (int i = 1; i < members.size(); i++) {
+            result.removeAll(members.get(i));
+        }
+        return result;
+
+    }
+
+
+    /*########################  zset(有序集合)的操作  #######################*/
+
+    /**
+     * 添加一个元素到zset
+     */
+    public Long zadd(String key, double score, String member) {
+
+        return execute("zadd", key, jedis -> jedis.zadd(key, score, member));
+
+    }
+
+    /**
+     * 添加一个或多个元素到zset
+     */
+    public Long zadd(String key, Map<String, Double> memberScores) {
+
+        return execute("zadd", key, jedis -> jedis.zadd(key, memberScores));
+
+    }
+
+    /**
+     * 查询指定闭区间的元素（根据分数升序）
+     * （0,-1表示全部）
+     */
+    public Set<String> zrange(String key, long start, long end) {
+
+        return execute("zrange", key, jedis -> jedis.zrange(key, start, end));
+
+    }
+
+    /**
+     * 一次查询多个zset指定闭区间的元素（根据分数升序），通过pipeline发送
+     */
+    public Map<String, Set<String>> mZrange(List<String> keys, long start, long end) {
+
+        RedisBatch batch = batch();
+        Map<String, CompletableFuture<Set<String>>> futures = new LinkedHashMap<>();
+        for (String key : keys) {
+            futures.put(key, batch.zrange(key, start, end));
+        }
+        batch.execute();
+        Map<String, Set<String>> result = new LinkedHashMap<>();
+        futures.forEach((key, future) -> result.put(key, future.join()));
+        return result;
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.lindex(key, index);
+    }
+
+    /**
+     * 一次查询多个zset中同一个元素的分数，通过pipeline发送
+     */
+    public Map<String, Double> mZscore(List<String> keys, String member) {
+
+        RedisBatch batch = batch();
+        Map<String, CompletableFuture<Double>> futures = new LinkedHashMap<>();
+        for (String key : keys) {
+            futures.put(key, batch.zscore(key, member));
         }
+        batch.execute();
+        Map<String, Double> result = new LinkedHashMap<>();
+        futures.forEach((key, future) -> result.put(key, future.join()));
+        return result;
+
+    }
+
+    /**
+     * 查询指定闭区间的元素，带着分数
+     * （0,-1表示全部）
+     */
+    public Set<Tuple> zrangeWithScores(String key, long start, long end) {
+
+        return execute("zrange", key, jedis -> jedis.zrangeWithScores(key, start, end));
+
+    }
+
+    /**
+     * 查询指定索引闭区间的元素（根据分数降序）
+     * （0,-1表示全部）
+     */
+    public Set<String> zrevrange(String key, long start, long end) {
+
+        return execute("zrevrange", key, jedis -> jedis.zrevrange(key, start, end));
+
+    }
+
+    /**
+     * 查询指定索引闭区间的元素，带着分数（根据分数降序）
+     * （0,-1表示全部）
+     */
+    public Set<Tuple> zrevrangeWithScores(String key, long start, long end) {
+
+        return execute("zrevrange", key, jedis -> jedis.zrevrangeWithScores(key, start, end));
+
+    }
+
+    /**
+     * 返回有序集合(zset)中的元素个数
+     */
+    public Long zcard(String key) {
+
+        return execute("zcard", key, jedis -> jedis.zcard(key));
+
+    }
+
+    /**
+     * 返回指定分数区间的元素个数（闭区间）
+     */
+    public Long zcount(String key, Long startScore, Long endScore) {
+
+        return execute("zcount", key, jedis -> jedis.zcount(key, startScore, endScore));
+
+    }
+
+    /**
+     * 返回某元素在集合中的排名（根据分数降序排列时）
+     */
+    public Long zrevrank(String key, String member) {
+
+        return execute("zrevrank", key, jedis -> jedis.zrevrank(key, member));
+
+    }
+
+    /**
+     * 返回某元素在集合中的排名（根据分数升序排列时）
+     */
+    public Long zrank(String key, String member) {
+
+        return execute("zrank", key, jedis -> jedis.zrank(key, member));
+
+    }
+
+    /**
+     * 升序查询指定分数闭区间的元素
+     */
+    public Set<String> zrangeByScore(String key, double min, double max) {
+
+        return execute("zrangebyscore", key, jedis -> jedis.zrangeByScore(key, min, max));
+
+    }
+
+    /**
+     * 升序查询指定分数闭区间的元素，并指定偏移量
+     */
+    public Set<String> zrangeByScore(String key, double min, double max, int offset, int size) {
+
+        return execute("zrangebyscore", key, jedis -> jedis.zrangeByScore(key, min, max, offset, size));
+
+    }
+
+    /**
+     * 升序查询指定分数闭区间的元素，带着分数
+     */
+    public Set<Tuple> zrangeByScoreWithScores(String key, double min, double max) {
+
+        return execute("zrangebyscore", key, jedis -> jedis.zrangeByScoreWithScores(key, min, max));
+
+    }
+
+    /**
+     * 升序查询指定分数闭区间的元素，并指定偏移量，带着分数
+     */
+    public Set<Tuple> zrangeByScoreWithScores(String key, double min, double max, int offset, int size) {
+
+        return execute("zrangebyscore", key, jedis -> jedis.zrangeByScoreWithScores(key, min, max, offset, size));
+
+    }
+
+    /**
+     * 降序查询指定分数闭区间的元素
+     */
+    public Set<String> zrevrangebyscore(String key, double max, double min) {
+
+        return execute("zrevrangebyscore", key, jedis -> jedis.zrevrangeByScore(key, max, min));
+
+    }
+
+    /**
+     * 降序查询指定分数闭区间的元素，并指定偏移量
+     */
+    public Set<String> zrevrangebyscore(String key, double max, double min, int offset, int size) {
+
+        return execute("zrevrangebyscore", key, jedis -> jedis.zrevrangeByScore(key, max, min, offset, size));
+
+    }
+
+    /**
+     * 降序查询指定分数闭区间的元素，并带着分数
+     */
+    public Set<Tuple> zrevrangeByScoreWithScores(String key, double max, double min) {
+
+        return execute("zrevrangebyscore", key, jedis -> jedis.zrevrangeByScoreWithScores(key, max, min));
+
+    }
+
+    /**
+     * 降序查询指定分数闭区间的元素，并指定偏移量，带着分数
+     */
+    public Set<Tuple> zrevrangeByScoreWithScores(String key, double max, double min, int offset, int size) {
+
+        return execute("zrevrangebyscore", key, jedis -> jedis.zrevrangeByScoreWithScores(key, min, max, offset, size));
 
     }
 
     /**
-     * 返回某列表的长度
+     * 有序集合中指定删除一或多个元素
      */
-    public Long lLen(String key) {
+    public Long zrem(String key, String... member) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.llen(key);
-        }
+        return execute("zrem", key, jedis -> jedis.zrem(key, member));
 
     }
 
     /**
-     * 给某列表指定位置设置为指定的值
+     * 分数升序排名时，删除指定索引区间的元素
      */
-    public String lSet(String key, Long index, String str) {
+    public Long zremrangebyrank(String key, long start, long end) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.lset(key, index, str);
-        }
+        return execute("zremrangebyrank", key, jedis -> jedis.zremrangeByRank(key, start, end));
 
     }
 
     /**
-     * 对列表进行剪裁，保留指定闭区间的元素(索引位置也会重排)
+     * 分数升序排名时，删除指定分数区间的元素
      */
-    public void ltrim(String key, Integer startIndex, Integer endIndex) {
+    public Long zremrangeByScore(String key, long min, long max) {
 
-        try (Jedis jedis = getJedis()) {
-            jedis.ltrim(key, startIndex, endIndex);
-        }
+        return execute("zremrangebyscore", key, jedis -> jedis.zremrangeByScore(key, min, max));
 
     }
 
     /**
-     * 从列表的左边阻塞弹出一个元素
+     * 查询有序集合中某元素的分数
      */
-    public List<String> blpop(String key, Integer timeout) {
+    public Double zscore(String key, String member) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.blpop(timeout, key);
-        }
+        return execute("zscore", key, jedis -> jedis.zscore(key, member));
 
     }
 
     /**
-     * 从列表的右边阻塞弹出一个元素
+     * 给有序集合中某元素的分数增加(正数)或减少(负数)
      */
-    public List<String> brpop(String key, Integer timeout) {
+    public Double zincrby(String key, double score, String member) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.brpop(timeout, key);
-        }
+        return execute("zincrby", key, jedis -> jedis.zincrby(key, score, member));
 
     }
 
-    /*########################  hash(哈希表)的操作  #######################*/
-    //hset hget hmset hmget hgetall hdel hkeys hvals hexists hincrby
+    /*########################  bitmap(位图)和HyperLogLog的操作  #######################*/
 
     /**
-     * 给某个hash表设置一个键值对
+     * 设置某一位的值
+     *
+     * @return 这一位原来的值
      */
-    public void hset(String key, String field, String value) {
+    public Boolean setBit(String key, long offset, boolean value) {
 
-        try (Jedis jedis = getJedis()) {
-            jedis.hset(key, field, value);
+        try {
+            return execute("setbit", key, jedis -> jedis.setbit(key, offset, value));
+        } finally {
+            invalidateNearCache(key);
         }
 
     }
 
     /**
-     * 取出某个hash表中某个field对应的value
+     * 获取某一位的值，key不存在或超出长度时为false
      */
-    public String hget(String key, String field) {
+    public Boolean getBit(String key, long offset) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hget(key, field);
-        }
+        return execute("getbit", key, jedis -> jedis.getbit(key, offset));
 
     }
 
     /**
-     * 某个hash表设置一个或多个键值对
+     * 统计值为1的位数
      */
-    public void hmset(String key, Map<String, String> kvMap) {
+    public Long bitCount(String key) {
 
-        try (Jedis jedis = getJedis()) {
-            jedis.hmset(key, kvMap);
-        }
+        return execute("bitcount", key, jedis -> jedis.bitcount(key));
 
     }
 
     /**
-     * 取出某个hash表中任意多个key对应的value的集合
+     * 统计第start到end个字节(包含end，可以为负数表示倒数)中值为1的位数
      */
-    public List<String> hmget(String key, String... fields) {
+    public Long bitCount(String key, long start, long end) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hmget(key, fields);
-        }
+        return execute("bitcount", key, jedis -> jedis.bitcount(key, start, end));
 
     }
 
     /**
-     * 取出某个hash表中所有的键值对
+     * 对多个位图做AND/OR/XOR/NOT运算，结果保存到destKey。集群或分片模式下不在destKey所在节点的位图会先复制过去
+     *
+     * @return 结果的字节数
      */
-    public Map<String, String> hgetAll(String key) {
+    public Long bitOp(BitOP op, String destKey, String... srcKeys) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hgetAll(key);
+        try {
+            return colocated(destKey, srcKeys, keys -> execute("bitop", destKey, jedis -> jedis.bitop(op, destKey, keys)));
+        } finally {
+            invalidateNearCache(destKey);
         }
 
     }
 
     /**
-     * 判断某个hash表中的某个key是否存在
+     * 往HyperLogLog中添加元素，大量添加时请使用activityBuffer()在本地攒批
+     *
+     * @return 估算的基数是否发生了变化
      */
-    public Boolean hexists(String key, String field) {
+    public Boolean pfadd(String key, String... elements) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hexists(key, field);
+        try {
+            return execute("pfadd", key, jedis -> jedis.pfadd(key, elements) == 1);
+        } finally {
+            invalidateNearCache(key);
         }
 
     }
 
     /**
-     * 返回某个hash表中所有的key
+     * 估算一个或多个HyperLogLog合并后的基数(误差约0.81%)，多个key不在同一个节点时先复制到第一个key所在的节点
      */
-    public Set<String> hkeys(String key) {
+    public long pfcount(String... keys) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hkeys(key);
+        if (keys.length == 1) {
+            return execute("pfcount", keys[0], jedis -> jedis.pfcount(keys[0]));
         }
+        return colocated(keys[0], keys, colocatedKeys -> execute("pfcount", keys[0], jedis -> jedis.pfcount(colocatedKeys)));
 
     }
 
     /**
-     * 返回某个hash表中所有的value
+     * 把多个HyperLogLog合并到destKey(destKey原有的元素保留)，不在destKey所在节点的key会先复制过去
      */
-    public List<String> hvals(String key) {
+    public String pfmerge(String destKey, String... sourceKeys) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hvals(key);
+        try {
+            return colocated(destKey, sourceKeys, keys -> execute("pfmerge", destKey, jedis -> jedis.pfmerge(destKey, keys)));
+        } finally {
+            invalidateNearCache(destKey);
         }
 
     }
 
     /**
-     * 删除某个hash表中的一个或多个键值对
+     * 创建一个写缓冲，在本地攒批HyperLogLog的添加和位图的置位，满maxPending个或每隔flushIntervalMillis用变长参数的命令批量写入
      */
-    public Long hdel(String key, String... fields) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.hdel(key, fields);
-        }
-
+    public RedisActivityBuffer activityBuffer(int maxPending, long flushIntervalMillis) {
+        return new RedisActivityBuffer(this, maxPending, flushIntervalMillis);
     }
 
     /**
-     * 给某个hash表中的某个field的value增加多少
+     * 多key命令要求所有key在同一个节点(集群模式下同一个slot)。不在anchor所在节点的key先复制成anchor节点上的临时key，
+     * 执行action后删除，只适用于字符串类型的值(位图、HyperLogLog)
      */
-    public Long hincrBy(String key, String field, Long increment) {
+    private <T> T colocated(String anchor, String[] keys, Function<String[], T> action) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hincrBy(key, field, increment);
+        if (router.isSingleShard()) {
+            return action.apply(keys);
+        }
+        Object shard = router.shardOf(anchor);
+        String[] colocatedKeys = keys.clone();
+        List<String> tempKeys = new ArrayList<>();
+        try {
+            for (int i = 0; i < keys.length; i++) {
+                if (shard.equals(router.shardOf(keys[i]))) {
+                    continue;
+                }
+                String key = keys[i];
+                byte[] value = execute("get", key, jedis -> jedis.get(SafeEncoder.encode(key)));
+                String tempKey = tempKeyNear(anchor, shard);
+                tempKeys.add(tempKey);
+                //不存在的key用一个不存在的临时key代替，语义不变
+                if (value != null) {
+                    execute("set", tempKey, jedis -> jedis.set(SafeEncoder.encode(tempKey), value,
+                            SafeEncoder.encode("NX"), SafeEncoder.encode("PX"), TEMP_KEY_MILLIS));
+                }
+                colocatedKeys[i] = tempKey;
+            }
+            return action.apply(colocatedKeys);
+        } finally {
+            if (!tempKeys.isEmpty()) {
+                del(tempKeys.toArray(new String[0]));
+            }
         }
 
     }
 
     /**
-     * 给某个hash表中的某个field的value增加多少
+     * 生成一个与anchor在同一个节点上的临时key，优先使用相同的hash tag
      */
-    public Long hincrBy(String key, String field, Integer increment) {
+    private String tempKeyNear(String anchor, Object shard) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hincrBy(key, field, increment);
+        String tag = hashTagOf(anchor);
+        for (int i = 0; i < MAX_TEMP_KEY_ATTEMPTS; i++) {
+            String tempKey = (i == 0 ? "{" + tag + "}" : tag) + ":tmp:" + UUID.randomUUID();
+            if (shard.equals(router.shardOf(tempKey))) {
+                return tempKey;
+            }
         }
+        throw new IllegalStateException("cannot find a temporary key on the node of " + anchor);
 
     }
 
-    /**
-     * 给某个hash表中的某个field的value增加多少
-     */
-    public Long hdecrBy(String key, String field, Integer increment) {
+    private static String hashTagOf(String key) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hincrBy(key, field, -increment);
+        int start = key.indexOf('{');
+        if (start >= 0) {
+            int end = key.indexOf('}', start + 1);
+            if (end > start + 1) {
+                return key.substring(start + 1, end);
+            }
         }
+        return key;
 
     }
 
-    public Double hincrByFloat(String key, String field, Double increment) {
+    /*########################  scan(游标遍历)的操作  #######################*/
+    //以下方法返回的迭代器按需一页一页地从redis取数据，每页之间归还连接，用于代替大集合上的keys/hgetAll/hkeys/hvals/smembers/zrange(0, -1)
+
+    /**
+     * 遍历匹配的key
+     *
+     * 集群模式下依次遍历每个主节点
+     *
+     * @param match 匹配规则，如user:*，为null时遍历所有的key
+     * @param count 每页的大小，只是给redis的建议值，实际返回的个数可能多也可能少
+     */
+    public ScanIterator<String> scan(String match, int count) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.hincrByFloat(key, field, increment);
+        ScanParams params = scanParams(match, count);
+        List<Pool<Jedis>> nodes = new ArrayList<>(router.masters());
+        if (nodes.size() == 1) {
+            //游标只在同一个节点上有效，整个遍历过程固定使用一个节点
+            Pool<Jedis> pool = readPool(null);
+            return new ScanIterator<>(cursor -> execute(pool, "scan", null, jedis -> jedis.scan(cursor, params)));
         }
+        return new ScanIterator<>(cursor -> scanNodes(nodes, cursor, params));
 
     }
 
-    /*########################  set(集合)的操作  ###########################*/
+    /**
+     * 遍历匹配的key，每页大约DEFAULT_SCAN_COUNT个
+     */
+    public ScanIterator<String> scan(String match) {
+        return scan(match, DEFAULT_SCAN_COUNT);
+    }
 
     /**
-     * 往set集合中添加一个或多个元素
+     * 遍历hash表中field匹配的键值对
+     *
+     * @param match field的匹配规则，为null时遍历所有
+     * @param count 每页的大小
      */
-    public Long sadd(String key, String... members) {
+    public ScanIterator<Map.Entry<String, String>> hscan(String key, String match, int count) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.sadd(key, members);
+        ScanParams params = scanParams(match, count);
+        Pool<Jedis> pool = readPool(key);
+        CompressionCodec<String> codec = valueCodec;
+        if (codec != null) {
+            return new ScanIterator<>(cursor -> {
+                ScanResult<Map.Entry<byte[], byte[]>> page = execute(pool, "hscan", key,
+                        jedis -> jedis.hscan(SafeEncoder.encode(key), SafeEncoder.encode(cursor), params));
+                List<Map.Entry<String, String>> entries = new ArrayList<>(page.getResult().size());
+                for (Map.Entry<byte[], byte[]> entry : page.getResult()) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(SafeEncoder.encode(entry.getKey()), codec.decode(entry.getValue())));
+                }
+                return new ScanResult<>(page.getCursorAsBytes(), entries);
+            });
         }
+        return new ScanIterator<>(cursor -> execute(pool, "hscan", key, jedis -> jedis.hscan(key, cursor, params)));
 
     }
 
     /**
-     * 返回set集合中的所有元素，顺序与加入时的顺序一致
+     * 遍历hash表中所有的键值对
      */
-    public Set<String> smembers(String key) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.smembers(key);
-        }
-
+    public ScanIterator<Map.Entry<String, String>> hscan(String key) {
+        return hscan(key, null, DEFAULT_SCAN_COUNT);
     }
 
     /**
-     * 判断集合中是否存在某个元素
+     * 遍历set集合中匹配的元素
+     *
+     * @param match 元素的匹配规则，为null时遍历所有
+     * @param count 每页的大小
      */
-    public Boolean sismember(String key, String member) {
+    public ScanIterator<String> sscan(String key, String match, int count) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.sismember(key, member);
-        }
+        ScanParams params = scanParams(match, count);
+        Pool<Jedis> pool = readPool(key);
+        return new ScanIterator<>(cursor -> execute(pool, "sscan", key, jedis -> jedis.sscan(key, cursor, params)));
 
     }
 
     /**
-     * 返回set集合的长度
+     * 遍历set集合中所有的元素
      */
-    public Long scard(String key) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.scard(key);
-        }
-
+    public ScanIterator<String> sscan(String key) {
+        return sscan(key, null, DEFAULT_SCAN_COUNT);
     }
 
     /**
-     * 删除set集合中指定的一个或多个元素
+     * 遍历有序集合中匹配的元素和分数，不保证按分数排序
+     *
+     * @param match 元素的匹配规则，为null时遍历所有
+     * @param count 每页的大小
      */
-    public Long srem(String key, String... members) {
+    public ScanIterator<Tuple> zscan(String key, String match, int count) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.srem(key, members);
-        }
+        ScanParams params = scanParams(match, count);
+        Pool<Jedis> pool = readPool(key);
+        return new ScanIterator<>(cursor -> execute(pool, "zscan", key, jedis -> jedis.zscan(key, cursor, params)));
 
     }
 
     /**
-     * 将key1中的元素key1Member移动到key2中
+     * 遍历有序集合中所有的元素和分数，不保证按分数排序
      */
-    public Long smove(String key1, String key2, String key1Member) {
+    public ScanIterator<Tuple> zscan(String key) {
+        return zscan(key, null, DEFAULT_SCAN_COUNT);
+    }
+
+    private static ScanParams scanParams(String match, int count) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.smove(key1, key2, key1Member);
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
         }
+        ScanParams params = new ScanParams().count(count);
+        if (match != null) {
+            params.match(match);
+        }
+        return params;
 
     }
 
     /**
-     * 随机查询返回集合中的指定个数的元素（若count为负数，返回的元素可能会重复）
+     * 集群模式下依次遍历每个主节点，游标的格式为"节点序号:节点上的游标"，一个节点遍历完后从下一个节点的0开始
      */
-    public List<String> srandmember(String key, int count) {
+    private ScanResult<String> scanNodes(List<Pool<Jedis>> nodes, String cursor, ScanParams params) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.srandmember(key, count);
+        int node = 0;
+        String nodeCursor = cursor;
+        int separator = cursor.indexOf(':');
+        if (separator > 0) {
+            node = Integer.parseInt(cursor.substring(0, separator));
+            nodeCursor = cursor.substring(separator + 1);
+        }
+        String start = nodeCursor;
+        ScanResult<String> result = execute(nodes.get(node), "scan", null, jedis -> jedis.scan(start, params));
+        String next = result.getStringCursor();
+        if (!ScanParams.SCAN_POINTER_START.equals(next)) {
+            next = node + ":" + next;
+        } else if (node + 1 < nodes.size()) {
+            next = (node + 1) + ":" + ScanParams.SCAN_POINTER_START;
         }
+        return new ScanResult<>(next, result.getResult());
 
     }
 
+    /*########################  缓存加载  #######################*/
+
     /**
-     * 从set集合中随机弹出指定个数个元素
+     * 读取缓存，不存在时调用loader加载并写入，同一个key的并发加载只会执行一次。
+     * loader返回null时不写入缓存，直接返回null
      *
-     * @param key   key
-     * @param count 要弹出的个数
-     * @return 随机弹出的元素
+     * @param ttlSeconds 过期时间，单位秒，小于等于0表示不过期
      */
-    public Set<String> spop(String key, int count) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.spop(key, count);
-        }
-
+    public String getOrLoad(String key, int ttlSeconds, Supplier<String> loader) {
+        CompressionCodec<String> codec = valueCodec;
+        return getOrLoad(key, ttlSeconds, codec != null ? codec : Codecs.STRING, loader);
     }
 
     /**
-     * 求交集，返回多个set集合相交的部分
+     * 读取缓存并解码，不存在时调用loader加载并编码写入。同一个key的并发加载只会执行一次，
+     * 快过期时会有一个请求提前重新加载，其它请求继续返回旧值，见setLoadOptions
+     *
+     * @param ttlSeconds 过期时间，单位秒，小于等于0表示不过期
      */
-    public Set<String> sinter(String... setKeys) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.sinter(setKeys);
-        }
-
+    public <T> T getOrLoad(String key, int ttlSeconds, RedisCodec<T> codec, Supplier<T> loader) {
+        return cacheLoader.getOrLoad(key, ttlSeconds, codec, loader);
     }
 
+    /*########################  编解码(二进制)的操作  #######################*/
+    //以下方法直接读写字节，由codec负责对象与字节之间的转换，省掉String和UTF-8字节之间的来回转换
+
     /**
-     * 求并集，求几个set集合的并集（因为set中不会有重复的元素，合并后的集合也不会有重复的元素）
+     * 获取某个key的value并解码，key不存在时返回null
      */
-    public Set<String> sunion(String... setKeys) {
+    public <T> T get(String key, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.sunion(setKeys);
-        }
+        return execute("get", key, jedis -> decode(jedis.get(SafeEncoder.encode(key)), codec));
 
     }
 
     /**
-     * 求差集，求几个集合之间的差集
+     * 编码后设置某个key的value
      */
-    public Set<String> sdiff(String... setKeys) {
+    public <T> String set(String key, T value, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.sdiff(setKeys);
+        byte[] encoded = codec.encode(value);
+        try {
+            return execute("set", key, jedis -> jedis.set(SafeEncoder.encode(key), encoded));
+        } finally {
+            invalidateNearCache(key);
         }
 
     }
 
-
-    /*########################  zset(有序集合)的操作  #######################*/
-
     /**
-     * 添加一个元素到zset
+     * 编码后设置某个key的value和过期时间
      */
-    public Long zadd(String key, double score, String member) {
+    public <T> String set(String key, T value, int expireSeconds, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zadd(key, score, member);
+        byte[] encoded = codec.encode(value);
+        try {
+            return execute("setex", key, jedis -> jedis.setex(SafeEncoder.encode(key), expireSeconds, encoded));
+        } finally {
+            invalidateNearCache(key);
         }
 
     }
 
     /**
-     * 添加一个或多个元素到zset
+     * key不存在时编码后设置value和过期时间
+     *
+     * @param expireSeconds 过期时间，单位秒，小于等于0表示不过期
+     * @return 设置成功时为true，key已经存在时为false
      */
-    public Long zadd(String key, Map<String, Double> memberScores) {
+    public <T> boolean setIfAbsent(String key, T value, int expireSeconds, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zadd(key, memberScores);
+        try {
+            String result = execute("set", key, jedis -> expireSeconds > 0
+                    ? jedis.set(SafeEncoder.encode(key), codec.encode(value), SafeEncoder.encode("NX"), SafeEncoder.encode("EX"), expireSeconds)
+                    : jedis.set(SafeEncoder.encode(key), codec.encode(value), SafeEncoder.encode("NX")));
+            return "OK".equals(result);
+        } finally {
+            invalidateNearCache(key);
         }
 
     }
 
     /**
-     * 查询指定闭区间的元素（根据分数升序）
-     * （0,-1表示全部）
+     * 一次获取多个key的value并解码，结果顺序与key的顺序一致，不存在的key对应null
      */
-    public Set<String> zrange(String key, long start, long end) {
+    public <T> List<T> mGet(RedisCodec<T> codec, String... keys) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrange(key, start, end);
-        }
+        return mGetByShard(keys, shardKeys -> execute("mget", firstKey(shardKeys), jedis -> decodeList(jedis.mget(SafeEncoder.encodeMany(shardKeys)), codec)),
+                (batch, shardKeys) -> batch.read(shardKeys[0], p -> p.mget(SafeEncoder.encodeMany(shardKeys)))
+                        .thenApply(values -> decodeList(values, codec)));
 
     }
 
     /**
-     * 查询指定闭区间的元素，带着分数
-     * （0,-1表示全部）
+     * 取出某个hash表中某个field对应的value并解码
      */
-    public Set<Tuple> zrangeWithScores(String key, long start, long end) {
+    public <T> T hget(String key, String field, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrangeWithScores(key, start, end);
-        }
+        return execute("hget", key, jedis -> decode(jedis.hget(SafeEncoder.encode(key), SafeEncoder.encode(field)), codec));
 
     }
 
     /**
-     * 查询指定索引闭区间的元素（根据分数降序）
-     * （0,-1表示全部）
+     * 编码后给某个hash表设置一个键值对
      */
-    public Set<String> zrevrange(String key, long start, long end) {
+    public <T> void hset(String key, String field, T value, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrevrange(key, start, end);
+        byte[] encoded = codec.encode(value);
+        try {
+            execute("hset", key, jedis -> jedis.hset(SafeEncoder.encode(key), SafeEncoder.encode(field), encoded));
+        } finally {
+            invalidateNearCache(key);
         }
 
     }
 
     /**
-     * 查询指定索引闭区间的元素，带着分数（根据分数降序）
-     * （0,-1表示全部）
+     * 编码后给某个hash表设置一个或多个键值对
      */
-    public Set<Tuple> zrevrangeWithScores(String key, long start, long end) {
+    public <T> void hmset(String key, Map<String, T> kvMap, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrevrangeWithScores(key, start, end);
+        Map<byte[], byte[]> encoded = new HashMap<>(kvMap.size() * 4 / 3 + 1);
+        kvMap.forEach((field, value) -> encoded.put(SafeEncoder.encode(field), codec.encode(value)));
+        try {
+            execute("hmset", key, jedis -> jedis.hmset(SafeEncoder.encode(key), encoded));
+        } finally {
+            invalidateNearCache(key);
         }
 
     }
 
     /**
-     * 返回有序集合(zset)中的元素个数
+     * 取出某个hash表中任意多个field对应的value并解码
      */
-    public Long zcard(String key) {
+    public <T> List<T> hmget(String key, RedisCodec<T> codec, String... fields) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zcard(key);
-        }
+        return execute("hmget", key, jedis -> decodeList(jedis.hmget(SafeEncoder.encode(key), SafeEncoder.encodeMany(fields)), codec));
 
     }
 
     /**
-     * 返回指定分数区间的元素个数（闭区间）
+     * 取出某个hash表中所有的键值对并解码value
      */
-    public Long zcount(String key, Long startScore, Long endScore) {
+    public <T> Map<String, T> hgetAll(String key, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zcount(key, startScore, endScore);
-        }
+        Map<byte[], byte[]> values;
+        values = execute("hgetall", key, jedis -> jedis.hgetAll(SafeEncoder.encode(key)));
+        Map<String, T> result = new HashMap<>(values.size() * 4 / 3 + 1);
+        values.forEach((field, value) -> result.put(SafeEncoder.encode(field), codec.decode(value)));
+        return result;
 
     }
 
     /**
-     * 返回某元素在集合中的排名（根据分数降序排列时）
+     * 编码后从左边向列表中添加值
      */
-    public Long zrevrank(String key, String member) {
+    public <T> Long lPushAll(String key, List<T> values, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrevrank(key, member);
-        }
+        return execute("lpush", key, jedis -> jedis.lpush(SafeEncoder.encode(key), encodeArray(values, codec)));
 
     }
 
     /**
-     * 返回某元素在集合中的排名（根据分数升序排列时）
+     * 编码后从右边向列表中添加值
      */
-    public Long zrank(String key, String member) {
+    public <T> Long rPushAll(String key, List<T> values, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrank(key, member);
-        }
+        return execute("rpush", key, jedis -> jedis.rpush(SafeEncoder.encode(key), encodeArray(values, codec)));
 
     }
 
     /**
-     * 升序查询指定分数闭区间的元素
+     * 从左边取出一个列表中的值并解码
      */
-    public Set<String> zrangeByScore(String key, double min, double max) {
+    public <T> T lPop(String key, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrangeByScore(key, min, max);
-        }
+        return execute("lpop", key, jedis -> decode(jedis.lpop(SafeEncoder.encode(key)), codec));
 
     }
 
     /**
-     * 升序查询指定分数闭区间的元素，并指定偏移量
+     * 从右边取出一个列表中的值并解码
      */
-    public Set<String> zrangeByScore(String key, double min, double max, int offset, int size) {
+    public <T> T rPop(String key, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrangeByScore(key, min, max, offset, size);
-        }
+        return execute("rpop", key, jedis -> decode(jedis.rpop(SafeEncoder.encode(key)), codec));
 
     }
 
     /**
-     * 升序查询指定分数闭区间的元素，带着分数
+     * 取出列表中指定范围内的值并解码，0 到 -1 表示全部
      */
-    public Set<Tuple> zrangeByScoreWithScores(String key, double min, double max) {
+    public <T> List<T> lRange(String key, long startIndex, long endIndex, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrangeByScoreWithScores(key, min, max);
-        }
+        return execute("lrange", key, jedis -> decodeList(jedis.lrange(SafeEncoder.encode(key), startIndex, endIndex), codec));
 
     }
 
     /**
-     * 升序查询指定分数闭区间的元素，并指定偏移量，带着分数
+     * 编码后往set集合中添加一个或多个元素
      */
-    public Set<Tuple> zrangeByScoreWithScores(String key, double min, double max, int offset, int size) {
+    public <T> Long sadd(String key, List<T> members, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrangeByScoreWithScores(key, min, max, offset, size);
-        }
+        return execute("sadd", key, jedis -> jedis.sadd(SafeEncoder.encode(key), encodeArray(members, codec)));
 
     }
 
     /**
-     * 降序查询指定分数闭区间的元素
+     * 返回set集合中的所有元素并解码
      */
-    public Set<String> zrevrangebyscore(String key, double max, double min) {
+    public <T> Set<T> smembers(String key, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrevrangeByScore(key, max, min);
+        Set<byte[]> members;
+        members = execute("smembers", key, jedis -> jedis.smembers(SafeEncoder.encode(key)));
+        Set<T> result = new HashSet<>(members.size() * 4 / 3 + 1);
+        for (byte[] member : members) {
+            result.add(codec.decode(member));
         }
+        return result;
 
     }
 
     /**
-     * 降序查询指定分数闭区间的元素，并指定偏移量
+     * 编码后添加一个元素到zset
      */
-    public Set<String> zrevrangebyscore(String key, double max, double min, int offset, int size) {
+    public <T> Long zadd(String key, double score, T member, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrevrangeByScore(key, max, min, offset, size);
-        }
+        return execute("zadd", key, jedis -> jedis.zadd(SafeEncoder.encode(key), score, codec.encode(member)));
 
     }
 
     /**
-     * 降序查询指定分数闭区间的元素，并带着分数
+     * 查询指定闭区间的元素（根据分数升序）并解码，结果按分数升序排列
      */
-    public Set<Tuple> zrevrangeByScoreWithScores(String key, double max, double min) {
+    public <T> List<T> zrange(String key, long start, long end, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrevrangeByScoreWithScores(key, max, min);
-        }
+        return execute("zrange", key, jedis -> decodeList(jedis.zrange(SafeEncoder.encode(key), start, end), codec));
 
     }
 
     /**
-     * 降序查询指定分数闭区间的元素，并指定偏移量，带着分数
+     * 升序查询指定分数闭区间的元素并解码，结果按分数升序排列
      */
-    public Set<Tuple> zrevrangeByScoreWithScores(String key, double max, double min, int offset, int size) {
+    public <T> List<T> zrangeByScore(String key, double min, double max, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrevrangeByScoreWithScores(key, min, max, offset, size);
-        }
+        return execute("zrangebyscore", key, jedis -> decodeList(jedis.zrangeByScore(SafeEncoder.encode(key), min, max), codec));
 
     }
 
     /**
-     * 有序集合中指定删除一或多个元素
+     * 查询有序集合中某元素的分数
      */
-    public Long zrem(String key, String... member) {
+    public <T> Double zscore(String key, T member, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zrem(key, member);
-        }
+        return execute("zscore", key, jedis -> jedis.zscore(SafeEncoder.encode(key), codec.encode(member)));
 
     }
 
     /**
-     * 分数升序排名时，删除指定索引区间的元素
+     * 有序集合中删除一个元素
      */
-    public Long zremrangebyrank(String key, long start, long end) {
+    public <T> Long zrem(String key, T member, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zremrangeByRank(key, start, end);
-        }
+        return execute("zrem", key, jedis -> jedis.zrem(SafeEncoder.encode(key), codec.encode(member)));
 
     }
 
-    /**
-     * 分数升序排名时，删除指定分数区间的元素
-     */
-    public Long zremrangeByScore(String key, long min, long max) {
+    private static <T> T decode(byte[] bytes, RedisCodec<T> codec) {
+        return bytes == null ? null : codec.decode(bytes);
+    }
+
+    private static <T> List<T> decodeList(Collection<byte[]> values, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zremrangeByScore(key, min, max);
+        List<T> result = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            result.add(decode(value, codec));
         }
+        return result;
 
     }
 
-    /**
-     * 查询有序集合中某元素的分数
-     */
-    public Double zscore(String key, String member) {
+    private static <T> byte[][] encodeArray(List<T> values, RedisCodec<T> codec) {
 
-        try (Jedis jedis = getJedis()) {
-            return jedis.zscore(key, member);
+        byte[][] encoded = new byte[values.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = codec.encode(values.get(i));
         }
+        return encoded;
 
     }
 
+    /*########################  发布订阅 相关  #######################*/
+
     /**
-     * 给有序集合中某元素的分数增加(正数)或减少(负数)
+     * 往频道发布一条消息，订阅请使用RedisSubscriber
+     *
+     * @return 收到消息的订阅者数量
      */
-    public Double zincrby(String key, double score, String member) {
-
-        try (Jedis jedis = getJedis()) {
-            return jedis.zincrby(key, score, member);
-        }
-
+    public Long publish(String channel, String message) {
+        return execute("publish", null, jedis -> jedis.publish(channel, message));
     }
 
     /*########################  lock 相关  #######################*/
@@ -1017,20 +2824,7 @@ public final class RedisUtils {
      * 获取一把锁
      */
     public boolean lock(String key, String lockValue, int expire) {
-
-        if (key == null || lockValue == null) {
-            return false;
-        }
-        try (Jedis jedis = getJedis()) {
-            List<String> args = new ArrayList<>();
-            args.add(lockValue);
-            args.add(String.valueOf(expire));
-            Object res = jedis.eval(LOCK_LUA_SCRIPT, Collections.singletonList(key), args);
-            return res != null && res.equals(OPERATE_SUCCESS);
-        } catch (Exception e) {
-            return false;
-        }
-
+        return lock(key, lockValue, (long) expire);
     }
 
     /**
@@ -1041,11 +2835,8 @@ public final class RedisUtils {
         if (key == null || lockValue == null) {
             return false;
         }
-        try (Jedis jedis = getJedis()) {
-            List<String> args = new ArrayList<>();
-            args.add(lockValue);
-            args.add(String.valueOf(expire));
-            Object res = jedis.eval(LOCK_LUA_SCRIPT, Collections.singletonList(key), args);
+        try {
+            Object res = execute("evalsha", key, jedis -> scriptRegistry.eval(jedis, LOCK_SCRIPT, 1, key, lockValue, String.valueOf(expire)));
             return res != null && res.equals(OPERATE_SUCCESS);
         } catch (Exception e) {
             return false;
@@ -1058,8 +2849,8 @@ public final class RedisUtils {
         if (key == null || lockValue == null) {
             return false;
         }
-        try (Jedis jedis = getJedis()) {
-            Object res = jedis.eval(UNLOCK_LUA_SCRIPT, Collections.singletonList(key), Collections.singletonList(lockValue));
+        try {
+            Object res = execute("evalsha", key, jedis -> scriptRegistry.eval(jedis, UNLOCK_SCRIPT, 1, key, lockValue));
             return res != null && res.equals(OPERATE_SUCCESS);
         } catch (Exception e) {
             return false;
@@ -1067,11 +2858,95 @@ public final class RedisUtils {
 
     }
 
+    /*########################  lua脚本 相关  #######################*/
+
+    /**
+     * 脚本注册表，可以往里面注册自己的脚本后通过evalScript按名称执行
+     */
+    public ScriptRegistry getScriptRegistry() {
+        return scriptRegistry;
+    }
+
+    /**
+     * 按名称执行已注册的脚本
+     */
+    public Object evalScript(String name, List<String> keys, List<String> args) {
+        return evalScript(scriptRegistry.get(name), keys, args);
+    }
+
+    /**
+     * 执行脚本，通过EVALSHA发送，redis中没有该脚本时自动加载
+     */
+    public Object evalScript(LuaScript script, List<String> keys, List<String> args) {
+
+        return execute("evalsha", keys.isEmpty() ? null : keys.get(0), jedis -> scriptRegistry.eval(jedis, script, keys, args));
+
+    }
+
+    /**
+     * 执行脚本，params前keyCount个为KEYS，其余为ARGV
+     */
+    public Object evalScript(LuaScript script, int keyCount, String... params) {
+
+        return execute("evalsha", keyCount > 0 ? params[0] : null, jedis -> scriptRegistry.eval(jedis, script, keyCount, params));
+
+    }
+
+    /**
+     * 把所有注册的脚本预先加载到redis(集群模式下为每个主节点)中，失败时不影响使用，执行时会再次加载
+     */
+    public void loadScripts() {
+
+        try {
+            for (Pool<Jedis> pool : router.masters()) {
+                try (Jedis jedis = borrow(pool)) {
+                    scriptRegistry.loadAll(jedis);
+                }
+            }
+        } catch (JedisException e) {
+            log.warn("load lua scripts into redis failed, they will be loaded on first use", e);
+        }
+
+    }
+
     /**
      * 私有化构造器，不让实例化对象
      */
     public RedisUtils(final GenericObjectPoolConfig poolConfig, final String host, int port, int timeout, final String password, int database) {
-        this.jedisPool = new JedisPool(poolConfig, host, port, timeout, password, database);
+        this(new SingleNodeRouter(poolConfig, host, port, timeout, password, database), poolConfig, host, port, timeout, password, database);
+    }
+
+    /**
+     * 使用指定的路由，如集群。此时不能通过getJedis(index)选择其它的库
+     *
+     * @param poolConfig 路由中每个连接池的配置，用于限制并行的线程数
+     */
+    public RedisUtils(RedisRouter router, GenericObjectPoolConfig poolConfig) {
+        this(router, poolConfig, 0);
+    }
+
+    /**
+     * 使用指定的路由，路由中的连接池使用database库。getJedis(index)只能取得这个库
+     *
+     * @param poolConfig 路由中每个连接池的配置，用于限制并行的线程数
+     * @param database   路由中的连接池使用的库，集群模式下只能为0
+     */
+    public RedisUtils(RedisRouter router, GenericObjectPoolConfig poolConfig, int database) {
+        this(router, poolConfig, null, 0, 0, null, database);
+    }
+
+    private RedisUtils(RedisRouter router, GenericObjectPoolConfig poolConfig, String host, int port, int timeout, String password, int database) {
+
+        this.router = router;
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+        this.password = password;
+        this.database = database;
+        this.poolConfig = poolConfig;
+        scriptRegistry.register(LOCK_SCRIPT);
+        scriptRegistry.register(UNLOCK_SCRIPT);
+        scriptRegistry.register(RedisBulkDeleter.UNLINK_SCRIPT);
 
     }
 }
@@ -0,0 +1,94 @@
+package com.wuhao.redis.utils;
+
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-16 19:00
+ * @Description: 基于SCAN/HSCAN/SSCAN/ZSCAN游标的迭代器，每次只从redis取一页(大约COUNT个元素)，
+ * 取完一页后立即归还连接，遍历大集合时内存占用只与一页的大小有关，也不会长时间阻塞redis。
+ * 注意SCAN的语义：遍历期间被修改的集合中，元素可能重复返回，遍历开始后新增的元素可能返回也可能不返回
+ * @Version: 1.0
+ **/
+public final class ScanIterator<T> implements Iterator<T> {
+
+    /**
+     * 根据游标取一页
+     */
+    private final Function<String, ScanResult<T>> scanner;
+
+    private String cursor = ScanParams.SCAN_POINTER_START;
+
+    private boolean finished;
+
+    private Iterator<T> page = Collections.emptyIterator();
+
+    ScanIterator(Function<String, ScanResult<T>> scanner) {
+        this.scanner = scanner;
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        //一页可能是空的(MATCH过滤掉了所有元素)，需要继续取下一页，直到游标回到0
+        while (!page.hasNext() && !finished) {
+            page = fetch().iterator();
+        }
+        return page.hasNext();
+
+    }
+
+    @Override
+    public T next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+
+    }
+
+    /**
+     * 按页遍历，返回当前页剩下的元素或者下一页，遍历结束时返回空集合。可以和next()混用
+     */
+    public List<T> nextPage() {
+
+        if (!hasNext()) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>();
+        page.forEachRemaining(result::add);
+        return result;
+
+    }
+
+    /**
+     * 转换成顺序的Stream，同样是按需一页一页地取
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private List<T> fetch() {
+
+        ScanResult<T> result = scanner.apply(cursor);
+        cursor = result.getStringCursor();
+        finished = ScanParams.SCAN_POINTER_START.equals(cursor);
+        return result.getResult();
+
+    }
+}
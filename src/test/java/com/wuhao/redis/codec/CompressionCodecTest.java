@@ -0,0 +1,101 @@
+package com.wuhao.redis.codec;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 19:00
+ * @Description: 压缩编解码器的编解码、转义，以及不经过编解码器写入、恰好以0xFF开头的值
+ * @Version: 1.0
+ **/
+public class CompressionCodecTest {
+
+    private static final String TEXT = repeat("compressible redis value ", 40);
+
+    @Test
+    public void compressedValuesRoundTrip() {
+
+        for (CompressionCodec.Algorithm algorithm : CompressionCodec.Algorithm.values()) {
+            CompressionCodec<String> codec = new CompressionCodec<>(Codecs.STRING, algorithm, 64);
+            byte[] encoded = codec.encode(TEXT);
+
+            assertTrue(encoded.length < TEXT.length());
+            assertTrue(CompressionCodec.isCompressed(encoded));
+            assertEquals(TEXT, codec.decode(encoded));
+        }
+
+    }
+
+    @Test
+    public void smallValuesAreStoredAsIs() {
+
+        CompressionCodec<String> codec = new CompressionCodec<>(Codecs.STRING, CompressionCodec.Algorithm.DEFLATE, 64);
+
+        assertArrayEquals("short".getBytes(StandardCharsets.UTF_8), codec.encode("short"));
+        assertEquals("short", codec.decode("short".getBytes(StandardCharsets.UTF_8)));
+
+    }
+
+    @Test
+    public void encodedValueStartingWithMarkerIsEscaped() {
+
+        CompressionCodec<byte[]> codec = new CompressionCodec<>(Codecs.BYTES, CompressionCodec.Algorithm.DEFLATE, 64);
+        byte[] value = {(byte) 0xFF, 1, 0, 0, 0, 100, 0x78, 0x01};
+
+        byte[] encoded = codec.encode(value);
+        assertEquals(value.length + 2, encoded.length);
+        assertArrayEquals(value, codec.decode(encoded));
+
+    }
+
+    @Test
+    public void foreignValuesStartingWithMarkerAreReturnedAsIs() {
+
+        //SETBIT写满前8位的bitmap，以及算法字节、长度、压缩数据头不合理的值
+        byte[][] values = {
+                {(byte) 0xFF},
+                {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF},
+                bitmap((byte) 0xFF, (byte) 0x01, 4096),
+                bitmap((byte) 0xFF, (byte) 0x02, 4096),
+                {(byte) 0xFF, 1, 0, 0, 0, 4, 0x78, 0x01, 0, 0},
+                {(byte) 0xFF, 1, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x78, 0x01, 0, 0},
+                {(byte) 0xFF, 2, 0, 0, 1, 0, 0x78, 0x01, 0, 0},
+                {(byte) 0xFF, 7, 0, 0, 1, 0, 0x78, 0x01, 0, 0}
+        };
+        for (byte[] value : values) {
+            assertFalse(Arrays.toString(value), CompressionCodec.isCompressed(value));
+            assertArrayEquals(value, CompressionCodec.decompress(value));
+        }
+
+    }
+
+    private static byte[] bitmap(byte first, byte second, int length) {
+
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) 0xFF);
+        bytes[0] = first;
+        bytes[1] = second;
+        return bytes;
+
+    }
+
+    private static String repeat(String text, int times) {
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+
+    }
+}
@@ -0,0 +1,148 @@
+package com.wuhao.redis.lock;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import com.wuhao.redis.utils.RedisUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 11:00
+ * @Description: 分布式锁的重入、看门狗续期、跨分片唤醒等待者
+ * @Version: 1.0
+ **/
+public class RedisLockFactoryTest {
+
+    private RedisUtils redisUtils;
+
+    private RedisLockFactory factory;
+
+    @After
+    public void tearDown() {
+
+        if (factory != null) {
+            factory.close();
+        }
+        if (redisUtils != null) {
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void reentrantLockIsReleasedByTheLastUnlock() {
+
+        redisUtils = RedisTestSupport.standalone();
+        factory = new RedisLockFactory(redisUtils, "test:lock:channel", 30000);
+        String name = "test:lock:" + UUID.randomUUID();
+        RedisLock lock = factory.getLock(name);
+
+        lock.lock();
+        lock.lock();
+        assertEquals(2, lock.getHoldCount());
+        lock.unlock();
+        assertTrue(redisUtils.exists(name));
+        lock.unlock();
+        assertFalse(redisUtils.exists(name));
+        assertFalse(lock.isHeldByCurrentThread());
+
+    }
+
+    @Test
+    public void watchdogRenewsLockBeyondItsTimeout() throws InterruptedException {
+
+        redisUtils = RedisTestSupport.standalone();
+        factory = new RedisLockFactory(redisUtils, "test:lock:channel", 300);
+        String name = "test:lock:" + UUID.randomUUID();
+        RedisLock lock = factory.getLock(name);
+
+        lock.lock();
+        try {
+            Thread.sleep(1000);
+            assertTrue(redisUtils.exists(name));
+        } finally {
+            lock.unlock();
+        }
+        assertFalse(redisUtils.exists(name));
+
+    }
+
+    @Test
+    public void lockRejectedByClosedFactoryIsReleased() {
+
+        redisUtils = RedisTestSupport.standalone();
+        factory = new RedisLockFactory(redisUtils, "test:lock:channel", 30000);
+        String name = "test:lock:" + UUID.randomUUID();
+        factory.close();
+
+        try {
+            factory.getLock(name).lock();
+            fail("closed factory should reject watchdog locks");
+        } catch (RejectedExecutionException expected) {
+            assertFalse(redisUtils.exists(name));
+        }
+
+    }
+
+    @Test
+    public void waiterOnAnotherShardIsWokenUpByUnlock() throws Exception {
+
+        redisUtils = RedisTestSupport.sharded();
+        factory = new RedisLockFactory(redisUtils, "test:lock:channel", 30000);
+        //锁所在的节点和订阅连接的节点不同
+        String name;
+        do {
+            name = "test:lock:" + UUID.randomUUID();
+        } while (redisUtils.isPublishVisible(name));
+        RedisLock lock = factory.getLock(name);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> owner = CompletableFuture.runAsync(() -> {
+            lock.lock();
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        //先让等待者订阅并进入等待，再释放锁
+        CompletableFuture<Long> waiter = CompletableFuture.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                if (!lock.tryLock(20, TimeUnit.SECONDS)) {
+                    return -1L;
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            lock.unlock();
+            return System.currentTimeMillis() - start;
+        });
+        Thread.sleep(500);
+        release.countDown();
+        owner.get(5, TimeUnit.SECONDS);
+
+        //没有收到通知时要等到锁过期(30秒)或者超时才会醒来
+        long waited = waiter.get(25, TimeUnit.SECONDS);
+        assertTrue("waiter was not notified, waited " + waited + "ms", waited >= 0 && waited < 5000);
+
+    }
+}
@@ -0,0 +1,147 @@
+package com.wuhao.redis.queue;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import com.wuhao.redis.utils.RedisUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 21:00
+ * @Description: 延迟队列按redis的时钟到期、并发拉取时每个消息只被取到一次、被线程池拒绝的消息放回队列
+ * @Version: 1.0
+ **/
+public class RedisDelayedQueueTest {
+
+    private final String name = "test:delayed:" + UUID.randomUUID();
+
+    private RedisUtils redisUtils;
+
+    private RedisDelayedQueue queue;
+
+    @Before
+    public void setUp() {
+
+        redisUtils = RedisTestSupport.standalone();
+        queue = new RedisQueueFactory(redisUtils, 30000).getDelayedQueue(name);
+
+    }
+
+    @After
+    public void tearDown() {
+
+        if (queue != null) {
+            queue.close();
+        }
+        if (redisUtils != null) {
+            redisUtils.del(name);
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void itemsBecomeDueAfterTheirDelay() throws InterruptedException {
+
+        queue.schedule("later", 300, TimeUnit.MILLISECONDS);
+        assertEquals(Collections.emptyList(), queue.pollDue(10));
+
+        Thread.sleep(400);
+        assertEquals(Collections.singletonList("later"), queue.pollDue(10));
+        assertEquals(0, queue.size());
+
+    }
+
+    @Test
+    public void absoluteDueTimeUsesTheRedisClock() {
+
+        List<String> time = redisUtils.execute("time", null, jedis -> jedis.time());
+        long now = Long.parseLong(time.get(0)) * 1000 + Long.parseLong(time.get(1)) / 1000;
+        queue.schedule("due", now - 1);
+        queue.schedule("not due", now + 60000);
+
+        assertEquals(Collections.singletonList("due"), queue.pollDue(10));
+        assertTrue(queue.cancel("not due"));
+
+    }
+
+    @Test
+    public void concurrentPollersClaimEachItemOnce() throws Exception {
+
+        int count = 500;
+        for (int i = 0; i < count; i++) {
+            queue.schedule("item" + i, 0, TimeUnit.MILLISECONDS);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    List<String> claimed = new ArrayList<>();
+                    List<String> items;
+                    while (!(items = queue.pollDue(7)).isEmpty()) {
+                        claimed.addAll(items);
+                    }
+                    return claimed;
+                }));
+            }
+            List<String> all = new ArrayList<>();
+            for (Future<List<String>> future : futures) {
+                all.addAll(future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(count, all.size());
+            assertEquals(count, new HashSet<>(all).size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+    @Test
+    public void rejectedItemsArePutBack() throws InterruptedException {
+
+        AtomicInteger attempts = new AtomicInteger();
+        Set<String> handled = ConcurrentHashMap.newKeySet();
+        CountDownLatch done = new CountDownLatch(2);
+        //第一次拒绝执行，之后在拉取线程中直接执行
+        queue.consume(task -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw new RejectedExecutionException("busy");
+            }
+            task.run();
+        }, 10, 1000, item -> {
+            if (handled.add(item)) {
+                done.countDown();
+            }
+        });
+        queue.schedule("a", 0, TimeUnit.MILLISECONDS);
+        queue.schedule("b", 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), handled);
+        assertEquals(0, queue.size());
+
+    }
+}
@@ -0,0 +1,106 @@
+package com.wuhao.redis.queue;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import com.wuhao.redis.utils.RedisUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 21:00
+ * @Description: 可靠队列的出队、确认、重新入队，以及宕机实例和本实例遗留的处理中消息的恢复
+ * @Version: 1.0
+ **/
+public class RedisReliableQueueTest {
+
+    private static final long PROCESSING_TIMEOUT = 200;
+
+    private final String name = "test:queue:" + UUID.randomUUID();
+
+    private RedisUtils redisUtils;
+
+    @Before
+    public void setUp() {
+        redisUtils = RedisTestSupport.standalone();
+    }
+
+    @After
+    public void tearDown() {
+
+        if (redisUtils != null) {
+            redisUtils.del(name);
+            redisUtils.delByPattern("{" + name + "}*");
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void pollAckAndRequeue() {
+
+        RedisReliableQueue queue = new RedisQueueFactory(redisUtils, PROCESSING_TIMEOUT).getQueue(name);
+        queue.offer("a", "b", "c");
+
+        assertEquals(Arrays.asList("a", "b"), queue.poll(2));
+        assertEquals(1, queue.ack(Collections.singletonList("a")));
+        assertEquals(1, queue.requeue(Collections.singletonList("b")));
+        assertEquals(2, queue.size());
+
+        List<String> items = queue.poll(10);
+        assertEquals(Arrays.asList("c", "b"), items);
+        assertEquals(2, queue.ack(items));
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.ack(items));
+
+    }
+
+    @Test
+    public void itemsOfDeadConsumerAreRecovered() throws InterruptedException {
+
+        RedisReliableQueue dead = new RedisQueueFactory(redisUtils, PROCESSING_TIMEOUT).getQueue(name);
+        RedisReliableQueue alive = new RedisQueueFactory(redisUtils, PROCESSING_TIMEOUT).getQueue(name);
+        dead.offer("a", "b");
+        assertEquals(2, dead.poll(2).size());
+
+        //心跳还没有超时
+        assertEquals(0, alive.recover());
+        Thread.sleep(PROCESSING_TIMEOUT + 100);
+        assertEquals(2, alive.recover());
+        assertEquals(2, alive.size());
+        assertEquals(0, alive.recover());
+
+    }
+
+    @Test
+    public void orphansOfThisConsumerAreRecovered() throws InterruptedException {
+
+        RedisReliableQueue queue = new RedisQueueFactory(redisUtils, PROCESSING_TIMEOUT).getQueue(name);
+        queue.offer("working");
+        assertEquals(Collections.singletonList("working"), queue.poll(1));
+        //模拟出队的结果在网络上丢失：消息在处理中列表里，但本实例不知道
+        redisUtils.execute("lpush", name, jedis -> jedis.lpush(queue.getProcessingKey(), "lost"));
+
+        //两次检查都不在处理才移回，两次检查至少间隔processingTimeoutMillis
+        Thread.sleep(PROCESSING_TIMEOUT + 50);
+        assertEquals(0, queue.recoverOrphans());
+        assertEquals(0, queue.recoverOrphans());
+        Thread.sleep(PROCESSING_TIMEOUT + 50);
+        assertEquals(1, queue.recoverOrphans());
+
+        assertEquals(Collections.singletonList("lost"), redisUtils.lRange(name, 0, -1));
+        assertTrue(redisUtils.lRange(queue.getProcessingKey(), 0, -1).contains("working"));
+        assertEquals(1, queue.ack(Collections.singletonList("working")));
+
+    }
+}
@@ -0,0 +1,48 @@
+package com.wuhao.redis.route;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.util.Pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 16:00
+ * @Description: 集群路由刷新时不再使用的连接池不能立即关闭
+ * @Version: 1.0
+ **/
+public class ClusterRouterTest {
+
+    @Test
+    public void refreshRetiresUnusedPoolInsteadOfClosingIt() throws InterruptedException {
+
+        ClusterRouter router = new ClusterRouter(RedisTestSupport.clusterSeeds(), RedisTestSupport.poolConfig(), 3000, null);
+        try {
+            //模拟通过MOVED临时访问的节点，刷新后不在对应关系中
+            Pool<Jedis> temporary = router.node(RedisTestSupport.standaloneNode());
+            Jedis borrowed = temporary.getResource();
+            Thread.sleep(150);
+            router.refresh();
+
+            assertFalse(router.pools().contains(temporary));
+            assertFalse(temporary.isClosed());
+            assertEquals("PONG", borrowed.ping());
+            borrowed.close();
+            try (Jedis jedis = temporary.getResource()) {
+                assertEquals("PONG", jedis.ping());
+            }
+
+            router.close();
+            assertTrue(temporary.isClosed());
+        } finally {
+            router.close();
+        }
+
+    }
+}
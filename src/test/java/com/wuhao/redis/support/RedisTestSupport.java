@@ -0,0 +1,143 @@
+package com.wuhao.redis.support;
+
+import com.wuhao.redis.route.RedisRouter;
+import com.wuhao.redis.route.ReplicaReadPolicy;
+import com.wuhao.redis.route.ReplicaRouter;
+import com.wuhao.redis.route.ShardedRouter;
+import com.wuhao.redis.route.SingleNodeRouter;
+import com.wuhao.redis.utils.RedisUtils;
+import org.junit.Assume;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 11:00
+ * @Description: 测试用的redis连接。默认连接本机6379，分片测试默认使用本机6500、6501两个节点，集群测试默认使用本机7000所在的集群，
+ * 可以通过-Dredis.test.host、-Dredis.test.port、-Dredis.test.shards=host:port,host:port、
+ * -Dredis.test.cluster=host:port(集群的任意节点)修改。
+ * 连不上时跳过测试，没有redis的环境下mvn test仍然可以通过
+ * @Version: 1.0
+ **/
+public final class RedisTestSupport {
+
+    private static final String HOST = System.getProperty("redis.test.host", "127.0.0.1");
+
+    private static final int PORT = Integer.getInteger("redis.test.port", 6379);
+
+    private static final String SHARDS = System.getProperty("redis.test.shards", "127.0.0.1:6500,127.0.0.1:6501");
+
+    private static final String CLUSTER = System.getProperty("redis.test.cluster", "127.0.0.1:7000");
+
+    private static final int TIMEOUT = 3000;
+
+    private RedisTestSupport() {
+    }
+
+    /**
+     * 连接单节点redis，连不上时跳过当前测试
+     */
+    public static RedisUtils standalone() {
+
+        assumeReachable(new HostAndPort(HOST, PORT));
+        return new RedisUtils(poolConfig(), HOST, PORT, TIMEOUT, null, 0);
+
+    }
+
+    /**
+     * 连接单节点redis的路由，连不上时跳过当前测试
+     */
+    public static RedisRouter standaloneRouter() {
+
+        HostAndPort node = standaloneNode();
+        return new SingleNodeRouter(poolConfig(), node.getHost(), node.getPort(), TIMEOUT, null, 0);
+
+    }
+
+    /**
+     * 连接两个独立节点组成的分片，连不上时跳过当前测试
+     */
+    public static RedisUtils sharded() {
+        return sharded(0);
+    }
+
+    /**
+     * 连接两个独立节点组成的分片并使用database库，连不上时跳过当前测试
+     */
+    public static RedisUtils sharded(int database) {
+
+        List<HostAndPort> nodes = new ArrayList<>();
+        for (String node : SHARDS.split(",")) {
+            HostAndPort hostAndPort = HostAndPort.parseString(node.trim());
+            assumeReachable(hostAndPort);
+            nodes.add(hostAndPort);
+        }
+        JedisPoolConfig poolConfig = poolConfig();
+        return new RedisUtils(new ShardedRouter(poolConfig, nodes, TIMEOUT, null, database, 160, true), poolConfig, database);
+
+    }
+
+    /**
+     * 从节点是另一个独立节点的主从模式，主节点上的写入永远不会出现在"从节点"上，用于判断读操作发往了哪个节点。
+     * 主节点默认为本机6500，连不上时跳过当前测试
+     */
+    public static RedisUtils detachedReplica() {
+
+        HostAndPort master = HostAndPort.parseString(SHARDS.split(",")[0].trim());
+        HostAndPort replica = standaloneNode();
+        assumeReachable(master);
+        JedisPoolConfig poolConfig = poolConfig();
+        return new RedisUtils(new ReplicaRouter(poolConfig, master, Collections.singletonList(replica), TIMEOUT, null, 0,
+                ReplicaReadPolicy.ROUND_ROBIN), poolConfig);
+
+    }
+
+    /**
+     * 集群的种子节点，连不上时跳过当前测试
+     */
+    public static Set<HostAndPort> clusterSeeds() {
+
+        HostAndPort seed = HostAndPort.parseString(CLUSTER);
+        assumeReachable(seed);
+        return Collections.singleton(seed);
+
+    }
+
+    /**
+     * 单节点redis的地址，连不上时跳过当前测试
+     */
+    public static HostAndPort standaloneNode() {
+
+        HostAndPort node = new HostAndPort(HOST, PORT);
+        assumeReachable(node);
+        return node;
+
+    }
+
+    public static JedisPoolConfig poolConfig() {
+
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(32);
+        poolConfig.setMaxIdle(32);
+        return poolConfig;
+
+    }
+
+    private static void assumeReachable(HostAndPort node) {
+
+        try (Jedis jedis = new Jedis(node.getHost(), node.getPort(), 500)) {
+            jedis.ping();
+        } catch (RuntimeException e) {
+            Assume.assumeNoException("redis " + node + " is not reachable", e);
+        }
+
+    }
+}
@@ -0,0 +1,147 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 20:00
+ * @Description: 异步操作：一个工作线程内按入队顺序执行、队列满和关闭时拒绝命令
+ * @Version: 1.0
+ **/
+public class AsyncRedisUtilsTest {
+
+    private final String key = "test:async:" + UUID.randomUUID();
+
+    private RedisUtils redisUtils;
+
+    private AsyncRedisUtils async;
+
+    @Before
+    public void setUp() {
+        redisUtils = RedisTestSupport.standalone();
+    }
+
+    @After
+    public void tearDown() {
+
+        if (async != null) {
+            async.close();
+        }
+        if (redisUtils != null) {
+            redisUtils.del(key);
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void commandsOfOneWorkerRunInQueueOrder() throws Exception {
+
+        async = new AsyncRedisUtils(redisUtils, 1, 10000, 16);
+        List<CompletableFuture<Long>> lengths = new ArrayList<>();
+        List<CompletableFuture<Long>> direct = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            lengths.add(async.rPush(key, String.valueOf(i)));
+            if (i % 50 == 49) {
+                //不能放进pipeline的命令要看到排在它前面的所有写入
+                direct.add(async.execute(r -> r.execute("llen", key, jedis -> jedis.llen(key))));
+            }
+        }
+
+        for (int i = 0; i < lengths.size(); i++) {
+            assertEquals(i + 1, lengths.get(i).get(5, TimeUnit.SECONDS).longValue());
+        }
+        for (int i = 0; i < direct.size(); i++) {
+            assertEquals(50L * (i + 1), direct.get(i).get(5, TimeUnit.SECONDS).longValue());
+        }
+        List<String> values = async.lRange(key, 0, -1).get(5, TimeUnit.SECONDS);
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(String.valueOf(i), values.get(i));
+        }
+
+    }
+
+    @Test
+    public void fullQueueRejectsCommands() throws Exception {
+
+        async = new AsyncRedisUtils(redisUtils, 1, 1, 16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> blocking = async.execute(r -> {
+            started.countDown();
+            await(release);
+            return null;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> queued = async.set(key, "queued");
+        assertRejected(async.set(key, "rejected"));
+        release.countDown();
+
+        blocking.get(5, TimeUnit.SECONDS);
+        assertEquals("OK", queued.get(5, TimeUnit.SECONDS));
+
+    }
+
+    @Test
+    public void closeRejectsQueuedAndNewCommands() throws Exception {
+
+        async = new AsyncRedisUtils(redisUtils, 1, 100, 16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        async.execute(r -> {
+            started.countDown();
+            await(release);
+            return null;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = async.set(key, "queued");
+
+        async.close();
+        release.countDown();
+
+        assertRejected(queued);
+        assertRejected(async.set(key, "after close"));
+        assertEquals(0, async.pendingCount());
+
+    }
+
+    private static void assertRejected(CompletableFuture<?> future) throws Exception {
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("command should be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+    }
+
+    private static void await(CountDownLatch latch) {
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+}
@@ -0,0 +1,112 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 18:00
+ * @Description: getOrLoad的并发加载和提前刷新
+ * @Version: 1.0
+ **/
+public class RedisCacheLoaderTest {
+
+    private RedisUtils redisUtils;
+
+    private String key;
+
+    @Before
+    public void setUp() {
+
+        redisUtils = RedisTestSupport.standalone();
+        key = "test:loader:" + UUID.randomUUID();
+
+    }
+
+    @After
+    public void tearDown() {
+
+        if (redisUtils != null) {
+            redisUtils.del(key);
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> redisUtils.getOrLoad(key, 60, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        }));
+        while (loads.get() == 0) {
+            Thread.sleep(5);
+        }
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> redisUtils.getOrLoad(key, 60, () -> {
+            loads.incrementAndGet();
+            return "other";
+        }));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals("value", first.get(5, TimeUnit.SECONDS));
+        assertEquals("value", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+
+    }
+
+    @Test
+    public void missDoesNotWaitForEarlyRefresh() throws Exception {
+
+        //提前刷新的概率接近1
+        redisUtils.setLoadOptions(1e9, 0, 0);
+        assertEquals("v1", redisUtils.getOrLoad(key, 60, () -> "v1"));
+
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> refresh = CompletableFuture.supplyAsync(() -> redisUtils.getOrLoad(key, 60, () -> {
+            refreshing.countDown();
+            await(release);
+            return "v2";
+        }));
+        assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+        redisUtils.del(key);
+
+        //刷新还没有结束，未命中的请求自己加载，不能拿到刷新的结果(刷新放弃时为null)
+        CompletableFuture<String> miss = CompletableFuture.supplyAsync(() -> redisUtils.getOrLoad(key, 60, () -> "miss"));
+        try {
+            assertEquals("miss", miss.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+        assertEquals("v2", refresh.get(5, TimeUnit.SECONDS));
+
+    }
+
+    private static void await(CountDownLatch latch) {
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+}
@@ -0,0 +1,73 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 14:00
+ * @Description: 近端缓存与pipeline写入的配合：结果完成时近端缓存中的旧值必须已经失效
+ * @Version: 1.0
+ **/
+public class RedisNearCacheTest {
+
+    private RedisUtils redisUtils;
+
+    @Before
+    public void setUp() {
+
+        redisUtils = RedisTestSupport.standalone();
+        redisUtils.enableNearCache(new RedisNearCache(redisUtils, "test:near:channel").addRule("test:near:", 100, 60));
+
+    }
+
+    @After
+    public void tearDown() {
+
+        if (redisUtils != null) {
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void batchWriteIsVisibleWhenFutureCompletes() {
+
+        String key = "test:near:" + UUID.randomUUID();
+        redisUtils.set(key, "old");
+        assertEquals("old", redisUtils.get(key));
+
+        RedisBatch batch = redisUtils.batch();
+        CompletableFuture<String> seen = batch.set(key, "new").thenApply(ok -> redisUtils.get(key));
+        batch.execute();
+
+        assertEquals("new", seen.join());
+        redisUtils.del(key);
+
+    }
+
+    @Test
+    public void asyncWriteIsVisibleWhenFutureCompletes() throws Exception {
+
+        String key = "test:near:" + UUID.randomUUID();
+        redisUtils.set(key, "old");
+        assertEquals("old", redisUtils.get(key));
+
+        //回调在完成结果的线程中同步执行，此时读到的必须是新值
+        CompletableFuture<String> seen = redisUtils.async().set(key, "new").thenApply(ok -> redisUtils.get(key));
+
+        assertEquals("new", seen.get(5, TimeUnit.SECONDS));
+        redisUtils.del(key);
+
+    }
+}
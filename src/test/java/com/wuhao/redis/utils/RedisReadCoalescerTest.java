@@ -0,0 +1,206 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.route.RedisRouter;
+import com.wuhao.redis.support.RedisTestSupport;
+import org.junit.After;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 20:00
+ * @Description: 读请求合并：并发读取的结果、一批读取失败后分发线程继续工作、合并器关闭和替换时的读取
+ * @Version: 1.0
+ **/
+public class RedisReadCoalescerTest {
+
+    private final String prefix = "test:coalesce:" + UUID.randomUUID() + ":";
+
+    private RedisUtils redisUtils;
+
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (redisUtils != null) {
+            redisUtils.disableReadCoalescing();
+            redisUtils.delByPattern(prefix + "*");
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void concurrentReadsGetTheirOwnValues() throws Exception {
+
+        redisUtils = RedisTestSupport.standalone();
+        prepare(20);
+        redisUtils.enableReadCoalescing(500, 64, 2);
+
+        List<Future<?>> futures = readConcurrently(2000);
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+    }
+
+    @Test
+    public void dispatcherSurvivesFailedFlush() {
+
+        FaultyRouter router = new FaultyRouter(RedisTestSupport.standaloneRouter());
+        redisUtils = new RedisUtils(router, RedisTestSupport.poolConfig());
+        prepare(1);
+        redisUtils.enableReadCoalescing(0, 16, 1);
+
+        router.failing.set(true);
+        try {
+            redisUtils.get(prefix + 0);
+            fail("flush should fail");
+        } catch (IllegalStateException expected) {
+            //一批读取失败
+        }
+        router.failing.set(false);
+
+        assertEquals("value0", redisUtils.get(prefix + 0));
+        assertEquals("field0", redisUtils.hget(prefix + "hash", "f0"));
+
+    }
+
+    @Test
+    public void readsSurviveReplacingAndClosingTheCoalescer() throws Exception {
+
+        redisUtils = RedisTestSupport.standalone();
+        prepare(20);
+        redisUtils.enableReadCoalescing(200, 64, 2);
+
+        List<Future<?>> futures = readConcurrently(5000);
+        for (int i = 0; i < 20; i++) {
+            if (i % 2 == 0) {
+                redisUtils.enableReadCoalescing(200, 64, 2);
+            } else {
+                redisUtils.disableReadCoalescing();
+            }
+            Thread.sleep(5);
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+    }
+
+    private void prepare(int count) {
+
+        for (int i = 0; i < count; i++) {
+            redisUtils.set(prefix + i, "value" + i);
+            redisUtils.hset(prefix + "hash", "f" + i, "field" + i);
+        }
+
+    }
+
+    /**
+     * 并发地读取存在和不存在的key、field，每个读取都检查自己的结果
+     */
+    private List<Future<?>> readConcurrently(int reads) {
+
+        executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>(reads);
+        for (int i = 0; i < reads; i++) {
+            int n = i % 25;
+            boolean hash = i % 3 == 0;
+            futures.add(executor.submit(() -> {
+                if (hash) {
+                    String value = redisUtils.hget(prefix + "hash", "f" + n);
+                    if (n < 20) {
+                        assertEquals("field" + n, value);
+                    } else {
+                        assertNull(value);
+                    }
+                } else {
+                    String value = redisUtils.get(prefix + n);
+                    if (n < 20) {
+                        assertEquals("value" + n, value);
+                    } else {
+                        assertNull(value);
+                    }
+                }
+            }));
+        }
+        return futures;
+
+    }
+
+    /**
+     * failing为true时拆分分片失败，让合并器的一批读取整体失败
+     */
+    private static final class FaultyRouter implements RedisRouter {
+
+        private final RedisRouter delegate;
+
+        private final AtomicBoolean failing = new AtomicBoolean();
+
+        FaultyRouter(RedisRouter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Pool<Jedis> route(String key, boolean readOnly) {
+            return delegate.route(key, readOnly);
+        }
+
+        @Override
+        public Object shardOf(String key) {
+            return delegate.shardOf(key);
+        }
+
+        @Override
+        public boolean isSingleShard() {
+
+            if (failing.get()) {
+                throw new IllegalStateException("split by shard failed");
+            }
+            return delegate.isSingleShard();
+
+        }
+
+        @Override
+        public Collection<Pool<Jedis>> masters() {
+            return delegate.masters();
+        }
+
+        @Override
+        public Collection<Pool<Jedis>> pools() {
+            return delegate.pools();
+        }
+
+        @Override
+        public Jedis connect() {
+            return delegate.connect();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 15:00
+ * @Description: RedisUtils的基本操作
+ * @Version: 1.0
+ **/
+public class RedisUtilsTest {
+
+    private RedisUtils redisUtils;
+
+    @Before
+    public void setUp() {
+        redisUtils = RedisTestSupport.standalone();
+    }
+
+    @After
+    public void tearDown() {
+
+        if (redisUtils != null) {
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void mDelCountReturnsDeletedKeys() {
+
+        String prefix = "test:mdel:" + UUID.randomUUID() + ":";
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            keys.add(prefix + i);
+        }
+        for (int i = 0; i < 2000; i++) {
+            redisUtils.set(keys.get(i), "v");
+        }
+
+        assertEquals(2000, redisUtils.mDelCount(keys));
+        assertEquals(0, redisUtils.mDelCount(keys));
+
+    }
+
+    @Test
+    public void mDelRemovesAllKeys() {
+
+        String prefix = "test:mdel:" + UUID.randomUUID() + ":";
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            keys.add(prefix + i);
+            redisUtils.set(prefix + i, "v");
+        }
+
+        redisUtils.mDel(keys);
+        for (String key : keys) {
+            assertFalse(redisUtils.exists(key));
+        }
+
+    }
+
+    @Test
+    public void routerInstanceServesItsConfiguredDatabase() {
+
+        try (RedisUtils sharded = RedisTestSupport.sharded(2)) {
+            try (Jedis jedis = sharded.getJedis(2)) {
+                assertEquals(2, jedis.getDB().intValue());
+            }
+            try (Jedis jedis = sharded.getJedis()) {
+                assertEquals(2, jedis.getDB().intValue());
+            }
+            try {
+                sharded.getJedis(3).close();
+                fail("router based instance can not select another database");
+            } catch (IllegalStateException expected) {
+                //只能使用配置的库
+            }
+        }
+
+    }
+}
@@ -0,0 +1,73 @@
+package com.wuhao.redis.utils;
+
+import com.wuhao.redis.support.RedisTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Copyright 2022 skyworth
+ *
+ * @Author: wuhao
+ * @CreateTime: 2026-10-18 17:00
+ * @Description: 读到的值会被缓存下来的读操作必须从主节点读。"从节点"是一个不复制主节点的独立节点，读到值就说明读的是主节点
+ * @Version: 1.0
+ **/
+public class ReplicaReadTest {
+
+    private RedisUtils redisUtils;
+
+    private String key;
+
+    @Before
+    public void setUp() {
+
+        redisUtils = RedisTestSupport.detachedReplica();
+        key = "test:replica:" + UUID.randomUUID();
+        redisUtils.set(key, "value");
+
+    }
+
+    @After
+    public void tearDown() {
+
+        if (redisUtils != null) {
+            redisUtils.del(key);
+            redisUtils.close();
+        }
+
+    }
+
+    @Test
+    public void plainReadGoesToReplica() {
+        assertNull(redisUtils.get(key));
+    }
+
+    @Test
+    public void readFromMasterGoesToMaster() {
+
+        assertEquals("value", redisUtils.readFromMaster(() -> redisUtils.get(key)));
+        assertEquals("value", redisUtils.readFromMaster(() -> redisUtils.mGet(key).get(0)));
+
+    }
+
+    @Test
+    public void nearCacheIsFilledFromMaster() {
+
+        redisUtils.enableNearCache(new RedisNearCache(redisUtils, "test:near:channel").addRule("test:replica:", 100, 60));
+
+        assertEquals("value", redisUtils.get(key));
+        assertEquals("value", redisUtils.get(key));
+
+    }
+
+    @Test
+    public void getOrLoadReadsFromMaster() {
+        assertEquals("value", redisUtils.getOrLoad(key, 60, () -> "loaded"));
+    }
+}